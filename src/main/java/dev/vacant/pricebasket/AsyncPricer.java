@@ -0,0 +1,365 @@
+package dev.vacant.pricebasket;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Non-blocking facade for pricing item baskets.
+ * <p>
+ * Baskets are priced on a dedicated pool of threads with a bounded queue, so
+ * that callers (e.g. event-loop threads) never block on pricing. When the queue
+ * is full, pricing requests fail fast with a {@link RejectedExecutionException}
+ * instead of piling up. All baskets share the same immutable {@link Catalog}
+ * and {@link OfferPackage}.
+ * <p>
+ * Streams of baskets are priced through a {@link Publisher} that follows the
+ * Reactive Streams contract (the same one as {@code java.util.concurrent.Flow}
+ * in Java 9 and later): baskets are only pulled from the source, and priced,
+ * as the subscriber signals demand, and prices are emitted in the same order
+ * as their baskets. Streams are not failed when the queue is full: they stall
+ * until a pricing thread takes a basket from the queue, and then resume.
+ * <p>
+ * Every pricing thread keeps its own {@link PricingContext}, so only the
+ * resulting prices are allocated.
+ */
+public class AsyncPricer implements AutoCloseable {
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final Catalog catalog;
+    private final OfferPackage offerPackage;
+    private final ThreadPoolExecutor executor;
+    private final int maxInFlight;
+    private final Queue<PriceSubscription> stalled = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<PricingContext> contexts = ThreadLocal.withInitial(PricingContext::new);
+
+    /**
+     * Creates a new asynchronous pricer.
+     *
+     * @param catalog       The item catalog shared by all baskets.
+     * @param offerPackage  The package of special offers shared by all baskets.
+     * @param threads       The amount of pricing threads.
+     * @param queueCapacity The maximum amount of baskets waiting to be priced.
+     */
+    public AsyncPricer(Catalog catalog, OfferPackage offerPackage, int threads, int queueCapacity) {
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("queueCapacity must be positive");
+
+        String prefix = "pricer-" + POOL_COUNTER.incrementAndGet() + "-";
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, prefix + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        ) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable runnable) {
+                // A basket was taken from the queue, so stalled streams can resume
+                // for as long as there is room left in it
+                PriceSubscription subscription;
+                while (getQueue().remainingCapacity() > 0 && (subscription = stalled.poll()) != null)
+                    subscription.drain();
+            }
+        };
+        this.maxInFlight = threads;
+    }
+
+    /**
+     * Creates a new empty basket sharing the catalog and package of special
+     * offers of this pricer.
+     *
+     * @return The new basket.
+     */
+    public Basket newBasket() {
+        return new Basket(catalog, offerPackage);
+    }
+
+    /**
+     * Prices a basket asynchronously.
+     * <p>
+     * The basket must not be modified until the returned future completes.
+     *
+     * @param basket The basket to price.
+     * @return The future price of the basket.
+     */
+    public CompletableFuture<Basket.Price> price(Basket basket) {
+        requireNonNull(basket, "basket is required");
+        return submit(() -> priceOnThread(basket));
+    }
+
+    /**
+     * Prices a basket with the given items asynchronously. The basket is both
+     * filled and priced on the pricing threads.
+     *
+     * @param itemNames The name of every unit in the basket.
+     * @return The future price of the basket, which fails with an {@link
+     * IllegalArgumentException} if any of the items doesn't exist in the
+     * catalog.
+     */
+    public CompletableFuture<Basket.Price> price(Collection<String> itemNames) {
+        List<String> names = new ArrayList<>(requireNonNull(itemNames, "itemNames is required"));
+        return submit(() -> {
+            Basket basket = newBasket();
+            for (String name : names)
+                basket.addItem(name);
+            return priceOnThread(basket);
+        });
+    }
+
+    /**
+     * Creates a publisher of the prices of a stream of baskets.
+     * <p>
+     * Every subscription iterates over the baskets anew, pricing at most as
+     * many baskets concurrently as there are pricing threads and never more
+     * than the subscriber has requested.
+     *
+     * @param baskets The baskets to price.
+     * @return The publisher of the prices, in the same order as the baskets.
+     */
+    public Publisher<Basket.Price> priceAll(Iterable<? extends Basket> baskets) {
+        requireNonNull(baskets, "baskets is required");
+        return subscriber -> {
+            requireNonNull(subscriber, "subscriber is required");
+            PriceSubscription subscription = new PriceSubscription(subscriber, baskets.iterator());
+            subscriber.onSubscribe(subscription);
+        };
+    }
+
+    private Basket.Price priceOnThread(Basket basket) {
+        PricingContext context = contexts.get();
+        context.price(basket);
+        return context.toPrice();
+    }
+
+    /**
+     * Stops accepting new baskets, letting the ones already submitted finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private CompletableFuture<Basket.Price> submit(Callable<Basket.Price> pricing) {
+        CompletableFuture<Basket.Price> future = new CompletableFuture<>();
+        try {
+            execute(pricing, future);
+        } catch (RejectedExecutionException rejection) {
+            future.completeExceptionally(rejection);
+        }
+        return future;
+    }
+
+    /**
+     * Queues a pricing task that completes the future supplied.
+     *
+     * @throws RejectedExecutionException If the queue is full or the pricer
+     *                                    is closed.
+     */
+    private void execute(Callable<Basket.Price> pricing, CompletableFuture<Basket.Price> future) {
+        executor.execute(() -> {
+            try {
+                future.complete(pricing.call());
+            } catch (Exception | Error failure) {
+                future.completeExceptionally(failure);
+            }
+        });
+    }
+
+    /**
+     * Producer of a potentially unbounded sequence of items, published
+     * according to the demand received from its subscribers.
+     *
+     * @param <T> The type of the items published.
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Adds a subscriber, which will be signalled through {@link
+         * Subscriber#onSubscribe(Subscription)} before receiving any item.
+         *
+         * @param subscriber The subscriber to add.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of the items of a {@link Publisher}.
+     *
+     * @param <T> The type of the items received.
+     */
+    public interface Subscriber<T> {
+        /**
+         * Signals the start of a subscription. No items are received until
+         * they are requested through the subscription.
+         *
+         * @param subscription The new subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Receives the next item.
+         *
+         * @param item The item received.
+         */
+        void onNext(T item);
+
+        /**
+         * Signals that the subscription failed. No other signals follow.
+         *
+         * @param throwable The cause of the failure.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Signals that all of the items were received. No other signals
+         * follow.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a {@link Publisher} and one of its {@link Subscriber}s.
+     */
+    public interface Subscription {
+        /**
+         * Requests more items to be sent to the subscriber.
+         *
+         * @param n The amount of items requested, which must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stops sending items to the subscriber.
+         */
+        void cancel();
+    }
+
+    /**
+     * Subscription pricing baskets on demand. All interaction with the
+     * subscriber and the source of baskets happens inside {@link #drain()},
+     * which is never executed concurrently.
+     */
+    private class PriceSubscription implements Subscription {
+        private final Subscriber<? super Basket.Price> subscriber;
+        private final Iterator<? extends Basket> baskets;
+        private final Queue<CompletableFuture<Basket.Price>> inFlight = new ArrayDeque<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+        private Basket deferred;
+
+        PriceSubscription(Subscriber<? super Basket.Price> subscriber, Iterator<? extends Basket> baskets) {
+            this.subscriber = subscriber;
+            this.baskets = baskets;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested amount must be positive: " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (pendingDrains.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do {
+                if (!done)
+                    drainOnce();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainOnce() {
+            try {
+                while (!cancelled && invalidRequest == null) {
+                    CompletableFuture<Basket.Price> head = inFlight.peek();
+                    if (head != null && head.isDone() && requested.get() > 0) {
+                        inFlight.remove();
+                        Basket.Price price = head.join();
+                        requested.decrementAndGet();
+                        subscriber.onNext(price);
+                    } else if (inFlight.size() < maxInFlight
+                            && inFlight.size() < requested.get()
+                            && (deferred != null || baskets.hasNext())) {
+                        Basket basket = deferred != null
+                                ? deferred
+                                : requireNonNull(baskets.next(), "basket is required");
+                        CompletableFuture<Basket.Price> future = new CompletableFuture<>();
+                        try {
+                            execute(() -> priceOnThread(basket), future);
+                        } catch (RejectedExecutionException rejection) {
+                            if (executor.isShutdown())
+                                throw rejection;
+
+                            // Retried once a pricing thread takes a basket from the
+                            // queue, unless one already did before stalling
+                            deferred = basket;
+                            stalled.add(this);
+                            if (executor.getQueue().remainingCapacity() > 0)
+                                continue;
+                            return;
+                        }
+                        deferred = null;
+                        inFlight.add(future);
+                        future.whenComplete((price, failure) -> drain());
+                    } else {
+                        if (inFlight.isEmpty() && deferred == null && !baskets.hasNext()) {
+                            done = true;
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                }
+            } catch (CompletionException failure) {
+                terminate(failure.getCause());
+                return;
+            } catch (RuntimeException failure) {
+                terminate(failure);
+                return;
+            }
+
+            if (cancelled) {
+                done = true;
+                deferred = null;
+                inFlight.clear();
+            } else {
+                terminate(invalidRequest);
+            }
+        }
+
+        private void terminate(Throwable failure) {
+            done = true;
+            cancelled = true;
+            deferred = null;
+            inFlight.clear();
+            subscriber.onError(failure);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package dev.vacant.pricebasket;
+
+import java.util.Arrays;
+
+/**
+ * Index of item barcodes (GTINs) to the ordinals of the items in a catalog.
+ * <p>
+ * Barcodes are kept as numbers, so the different GTIN lengths (8, 12, 13 and
+ * 14 digits) of the same code are the same key once padded with zeros, as
+ * mandated by GS1. The entries are kept in two parallel arrays laid out as an
+ * open-addressing hash table with linear probing, so that looking up a barcode
+ * never allocates and usually touches a single slot.
+ */
+class BarcodeIndex {
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int[] ordinals;
+    private int size;
+
+    BarcodeIndex() {
+        this.keys = newKeys(16);
+        this.ordinals = new int[16];
+    }
+
+    /**
+     * Parses a barcode, checking its length and GS1 check digit.
+     *
+     * @param digits The digits of the barcode.
+     * @return The numeric value of the barcode, or {@code -1} if it is not a
+     * valid GTIN.
+     */
+    static long parse(String digits) {
+        int length = digits.length();
+        if (length != 8 && length != 12 && length != 13 && length != 14)
+            return -1;
+
+        long value = 0;
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+            // Weights alternate 3, 1, 3... from the digit left of the check digit
+            if (i < length - 1)
+                sum += (c - '0') * ((length - 1 - i) % 2 == 1 ? 3 : 1);
+        }
+        int checkDigit = digits.charAt(length - 1) - '0';
+        return (10 - sum % 10) % 10 == checkDigit ? value : -1;
+    }
+
+    /**
+     * Adds a barcode to the index.
+     *
+     * @param gtin    The numeric value of the barcode.
+     * @param ordinal The ordinal of the item with the barcode.
+     * @return The ordinal of the item the barcode was already added for, or
+     * {@code -1} if it was not in the index.
+     */
+    int put(long gtin, int ordinal) {
+        int existing = ordinalOf(gtin);
+        if (existing >= 0)
+            return existing;
+
+        // Keeps the load factor at or below 3/4
+        if ((size + 1) * 4L > keys.length * 3L)
+            resize(keys.length * 2);
+        insert(gtin, ordinal);
+        size++;
+        return -1;
+    }
+
+    /**
+     * Retrieves the ordinal of the item with a given barcode.
+     *
+     * @param gtin The numeric value of the barcode.
+     * @return The ordinal of the item, or {@code -1} if no item has the
+     * barcode.
+     */
+    int ordinalOf(long gtin) {
+        if (gtin < 0)
+            return -1;
+
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        int slot = indexFor(gtin, mask);
+        long key;
+        while ((key = keys[slot]) != EMPTY) {
+            if (key == gtin)
+                return ordinals[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the amount of barcodes in the index.
+     *
+     * @return The amount of barcodes.
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldOrdinals = ordinals;
+        keys = newKeys(capacity);
+        ordinals = new int[capacity];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY)
+                insert(oldKeys[slot], oldOrdinals[slot]);
+        }
+    }
+
+    private void insert(long gtin, int ordinal) {
+        int mask = keys.length - 1;
+        int slot = indexFor(gtin, mask);
+        while (keys[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        keys[slot] = gtin;
+        ordinals[slot] = ordinal;
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private static int indexFor(long gtin, int mask) {
+        // Barcodes of the same manufacturer share their leading digits
+        long hash = gtin * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
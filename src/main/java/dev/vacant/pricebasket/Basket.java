@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static java.util.Objects.requireNonNull;
 
@@ -13,11 +14,29 @@ import static java.util.Objects.requireNonNull;
  * A basket of items keeps track of the items a customer wants to purchase as
  * well as their amounts. It can then provide several pieces of metadata
  * surrounding that information (e.g. the subtotal of the items in the basket).
+ * <p>
+ * Baskets with many distinct items (e.g. wholesale orders) are priced in
+ * parallel on the common fork-join pool: the subtotal is summed in chunks and
+ * the offers are evaluated concurrently, their discounts still being applied in
+ * the order of the offers data file, so the price is the same as when priced
+ * sequentially. The amount of distinct items from which baskets are priced in
+ * parallel defaults to the {@value #PARALLEL_THRESHOLD_PROPERTY} system
+ * property (or {@value #DEFAULT_PARALLEL_THRESHOLD}), which must be a positive
+ * integer.
  */
 public class Basket {
+    private static final String PARALLEL_THRESHOLD_PROPERTY = "pricebasket.parallelThreshold";
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+    private static final int PARALLEL_THRESHOLD = parallelThresholdProperty();
+
     private final Map<ItemId, Integer> items;
     private final Catalog catalog;
     private final OfferPackage offerPackage;
+    private final LoyaltyProgram loyaltyProgram;
+    private LoyaltyProgram.Tier tier;
+    private List<CouponBook.Coupon> coupons = Collections.emptyList();
+    private int unitCount;
+    private int parallelThreshold = PARALLEL_THRESHOLD;
 
     /**
      * Creates a new basket for the item catalog supplied.
@@ -26,8 +45,21 @@ public class Basket {
      * @param offerPackage The package of special offer available.
      */
     public Basket(Catalog catalog, OfferPackage offerPackage) {
+        this(catalog, offerPackage, null);
+    }
+
+    /**
+     * Creates a new basket for the item catalog supplied, in which members of
+     * the loyalty program can be identified.
+     *
+     * @param catalog        The item catalog to use for this basket.
+     * @param offerPackage   The package of special offer available.
+     * @param loyaltyProgram The loyalty program of the shop, if any.
+     */
+    Basket(Catalog catalog, OfferPackage offerPackage, LoyaltyProgram loyaltyProgram) {
         this.catalog = requireNonNull(catalog, "catalog is required");
         this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.loyaltyProgram = loyaltyProgram;
         this.items = new HashMap<>();
     }
 
@@ -40,6 +72,7 @@ public class Basket {
     public Basket() throws IOException {
         this.catalog = new Catalog();
         this.offerPackage = new OfferPackage(catalog);
+        this.loyaltyProgram = null;
         this.items = new HashMap<>();
     }
 
@@ -52,9 +85,196 @@ public class Basket {
      */
     public void addItem(String name) {
         ItemId itemId = new ItemId(name);
-        if (catalog.getPriceFor(itemId) == null)
+        if (!addKnownItem(itemId))
             throw new IllegalArgumentException(itemId + " doesn't exist in the catalog");
-        items.compute(itemId, (id, amount) -> (amount == null ? 0 : amount) + 1);
+    }
+
+    /**
+     * Adds one unit of the item with the given name to the basket, reporting
+     * names that don't identify any item through the result instead of an
+     * exception. Suited for sources that often produce bad names, such as
+     * misreads at scanners.
+     *
+     * @param name The name of the item to add.
+     * @return The result of adding the item.
+     */
+    public AddResult tryAddItem(String name) {
+        requireNonNull(name, "name is required");
+        if (ItemId.isBlank(name))
+            return AddResult.BLANK_NAME;
+        return addKnownItem(new ItemId(name)) ? AddResult.ADDED : AddResult.UNKNOWN_ITEM;
+    }
+
+    /**
+     * Adds one unit of the item with the given barcode to the basket.
+     * <p>
+     * The item is resolved through the barcodes of the catalog (see {@link
+     * Catalog#withBarcodes(DataReader)}), without normalizing any names.
+     *
+     * @param gtin The numeric value of the item's barcode (GTIN).
+     * @throws IllegalArgumentException If no item exists in the catalog with
+     *                                  the given barcode.
+     */
+    public void addItem(long gtin) {
+        if (tryAddItem(gtin) != AddResult.ADDED)
+            throw new IllegalArgumentException("No item with barcode " + gtin + " exists in the catalog");
+    }
+
+    /**
+     * Adds one unit of the item with the given barcode to the basket,
+     * reporting barcodes that don't identify any item through the result
+     * instead of an exception.
+     *
+     * @param gtin The numeric value of the item's barcode (GTIN).
+     * @return The result of adding the item.
+     */
+    public AddResult tryAddItem(long gtin) {
+        ItemId itemId = catalog.getItemByBarcode(gtin);
+        if (itemId == null)
+            return AddResult.UNKNOWN_ITEM;
+        addItems(itemId, 1);
+        return AddResult.ADDED;
+    }
+
+    private boolean addKnownItem(ItemId itemId) {
+        if (catalog.getPriceFor(itemId) == null)
+            return false;
+        addItems(itemId, 1);
+        return true;
+    }
+
+    /**
+     * Identifies the customer purchasing the items, so that the basket is
+     * priced with the prices and special offers of their loyalty tier.
+     * Customers that are not members of the loyalty program get the regular
+     * prices and special offers.
+     *
+     * @param memberId The ID of the customer.
+     * @throws IllegalStateException If the basket was not created by a
+     *                               loyalty program.
+     */
+    public void setMemberId(long memberId) {
+        if (loyaltyProgram == null)
+            throw new IllegalStateException("Basket has no loyalty program");
+        tier = loyaltyProgram.getTierOf(memberId);
+    }
+
+    /**
+     * Sets the amount of distinct items from which the basket is priced in
+     * parallel. Pricing a basket with a trace is always sequential.
+     *
+     * @param parallelThreshold The amount of distinct items, or {@link
+     *                          Integer#MAX_VALUE} for never pricing in
+     *                          parallel.
+     * @throws IllegalArgumentException If the threshold is not positive.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1)
+            throw new IllegalArgumentException("parallelThreshold must be positive");
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Adds a coupon to the basket, so that its special offer is applied along
+     * with the ones in the basket's package. The coupon is not redeemed by
+     * adding it (see {@link CouponBook#redeem(CouponBook.Coupon)}).
+     *
+     * @param coupon The coupon to add.
+     * @throws IllegalArgumentException If the coupon was already added to the
+     *                                  basket.
+     */
+    public void addCoupon(CouponBook.Coupon coupon) {
+        requireNonNull(coupon, "coupon is required");
+        for (CouponBook.Coupon added : coupons) {
+            if (added.isSameAs(coupon))
+                throw new IllegalArgumentException("Coupon " + coupon + " was already added to the basket");
+        }
+        if (coupons.isEmpty())
+            coupons = new ArrayList<>();
+        coupons.add(coupon);
+    }
+
+    /**
+     * Retrieves the coupons added to the basket, without wrapping them (so
+     * that pricing contexts don't allocate).
+     *
+     * @return The coupons in the basket, which must not be modified.
+     */
+    List<CouponBook.Coupon> getCoupons() {
+        return coupons;
+    }
+
+    /**
+     * Adds units of an item already known to exist in the catalog, skipping
+     * the normalization and validation of its name.
+     *
+     * @param itemId The ID of the item to add.
+     * @param amount The amount of units to add.
+     */
+    void addItems(ItemId itemId, int amount) {
+        items.merge(itemId, amount, Integer::sum);
+        unitCount += amount;
+    }
+
+    /**
+     * Removes every item from the basket, so that it can be reused.
+     */
+    void clearItems() {
+        items.clear();
+        unitCount = 0;
+    }
+
+    /**
+     * Retrieves all of the items in the basket along with their amounts.
+     *
+     * @return An unmodifiable view of the items in the basket.
+     */
+    Map<ItemId, Integer> getItems() {
+        return Collections.unmodifiableMap(items);
+    }
+
+    /**
+     * Retrieves the amount of units in the basket, across all items.
+     *
+     * @return The amount of units in the basket.
+     */
+    int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * Calculates the total price of the items in the basket in pence, before
+     * applying any special offers.
+     *
+     * @return The subtotal of the basket, in pence.
+     */
+    long calculateSubtotalInPence() {
+        Catalog catalog = getPricingCatalog();
+        long subtotal = 0;
+        for (Map.Entry<ItemId, Integer> basketEntry : items.entrySet()) {
+            subtotal += catalog.getPriceInPenceFor(basketEntry.getKey()) * basketEntry.getValue();
+        }
+        return subtotal;
+    }
+
+    /**
+     * Retrieves the item catalog this basket is priced with, which depends on
+     * the loyalty tier of the customer.
+     *
+     * @return The item catalog.
+     */
+    Catalog getPricingCatalog() {
+        return tier == null ? catalog : tier.getCatalog();
+    }
+
+    /**
+     * Retrieves the package of special offers available to this basket, which
+     * depends on the loyalty tier of the customer.
+     *
+     * @return The package of special offers.
+     */
+    OfferPackage getOfferPackage() {
+        return tier == null ? offerPackage : tier.getOfferPackage();
     }
 
     /**
@@ -72,48 +292,189 @@ public class Basket {
      * Prices the current basket.
      * <p>
      * Pricing of a given basket produces several different pieces of metadata
-     * which are bundled into one result class.
+     * which are bundled into one result class. For pricing many baskets without
+     * allocating, see {@link PricingContext}.
      *
      * @return The metadata associated with the pricing of this basket.
      */
     public Price price() {
+        return calculatePrice(null);
+    }
+
+    /**
+     * Prices the current basket, recording how the price was reached into the
+     * pricing trace supplied.
+     * <p>
+     * The trace is reset before being filled in, so the same instance can be
+     * reused for pricing several baskets.
+     *
+     * @param trace The pricing trace to record into.
+     * @return The metadata associated with the pricing of this basket.
+     */
+    public Price price(PricingTrace trace) {
+        requireNonNull(trace, "trace is required");
+        trace.reset();
+        return calculatePrice(trace);
+    }
+
+    private Price calculatePrice(PricingTrace trace) {
+        PricingEvents.BasketPricing event = PricingEvents.beginPricing();
+        Catalog catalog = getPricingCatalog();
+        OfferPackage offerPackage = getOfferPackage();
+        boolean parallel = trace == null && items.size() >= parallelThreshold;
         BigDecimal subtotal = BigDecimal.ZERO;
-        for (Map.Entry<ItemId, Integer> basketEntry : items.entrySet()) {
-            BigDecimal price = catalog.getPriceFor(basketEntry.getKey());
-            BigDecimal amount = new BigDecimal(basketEntry.getValue());
-            subtotal = subtotal.add(price.multiply(amount));
+        if (parallel) {
+            // Sums of decimals are exact, so the chunks can be summed in any order
+            subtotal = items.entrySet().parallelStream()
+                    .map(basketEntry -> catalog.getPriceFor(basketEntry.getKey())
+                            .multiply(new BigDecimal(basketEntry.getValue())))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        } else {
+            for (Map.Entry<ItemId, Integer> basketEntry : items.entrySet()) {
+                BigDecimal price = catalog.getPriceFor(basketEntry.getKey());
+                BigDecimal amount = new BigDecimal(basketEntry.getValue());
+                BigDecimal lineSubtotal = price.multiply(amount);
+                subtotal = subtotal.add(lineSubtotal);
+                if (trace != null)
+                    trace.recordLine(basketEntry.getKey(), basketEntry.getValue(), price, lineSubtotal);
+            }
         }
         subtotal = subtotal.setScale(2, RoundingMode.UNNECESSARY);
 
-        NavigableMap<String, BigDecimal> offers = new TreeMap<>();
-        for (OfferRule offer : offerPackage.getApplicableOffers(this)) {
-            offers.put(offer.getDescription(), offer.calculateDiscount(this));
+        List<OfferRule> applicableOffers = parallel
+                ? offerPackage.getApplicableOffersInParallel(this)
+                : offerPackage.getApplicableOffers(this);
+        List<BasketOfferRule> basketOffers = offerPackage.getBasketOffers();
+        OfferRule[] offers = applicableOffers.toArray(
+                new OfferRule[applicableOffers.size() + basketOffers.size() + coupons.size()]);
+        BigDecimal[] discounts = new BigDecimal[offers.length];
+
+        // Coupons come after the package's offers of the same level
+        int offerCount = applicableOffers.size();
+        for (CouponBook.Coupon coupon : coupons) {
+            OfferRule offer = coupon.getOffer();
+            if (!(offer instanceof BasketOfferRule) && offer.isApplicable(this))
+                offers[offerCount++] = offer;
         }
 
+        // Item-level discounts don't depend on each other, only their order does
+        if (parallel) {
+            OfferRule[] itemOffers = offers;
+            BigDecimal[] itemDiscounts = discounts;
+            IntStream.range(0, offerCount).parallel()
+                    .forEach(i -> itemDiscounts[i] = itemOffers[i].calculateDiscount(this));
+        }
         BigDecimal total = subtotal;
-        for (BigDecimal discount : offers.values()) {
-            total = total.subtract(discount);
+        for (int i = 0; i < offerCount; i++) {
+            if (!parallel)
+                discounts[i] = offers[i].calculateDiscount(this);
+            total = total.subtract(discounts[i]);
+            if (trace != null)
+                traceOffer(trace, offerPackage, offers[i], discounts[i]);
+        }
+
+        // Basket-level offers are evaluated last, from the running total
+        BasketTotals totals = new BasketTotals();
+        long subtotalInPence = subtotal.movePointRight(2).longValueExact();
+        totals.reset(subtotalInPence, unitCount);
+        totals.deduct(subtotalInPence - total.movePointRight(2).longValueExact());
+        List<BasketOfferRule> allBasketOffers = basketOffers;
+        if (!coupons.isEmpty()) {
+            allBasketOffers = new ArrayList<>(basketOffers);
+            for (CouponBook.Coupon coupon : coupons) {
+                if (coupon.getOffer() instanceof BasketOfferRule)
+                    allBasketOffers.add((BasketOfferRule) coupon.getOffer());
+            }
+        }
+        for (BasketOfferRule offer : allBasketOffers) {
+            if (!offer.isApplicable(totals))
+                continue;
+
+            long discount = offer.calculateDiscountInPence(totals);
+            totals.deduct(discount);
+            offers[offerCount] = offer;
+            discounts[offerCount] = BigDecimal.valueOf(discount, 2);
+            total = total.subtract(discounts[offerCount]);
+            if (trace != null)
+                traceOffer(trace, offerPackage, offer, discounts[offerCount]);
+            offerCount++;
+        }
+        if (offerCount < offers.length) {
+            offers = Arrays.copyOf(offers, offerCount);
+            discounts = Arrays.copyOf(discounts, offerCount);
         }
         total = total.max(BigDecimal.ZERO).setScale(2, RoundingMode.UNNECESSARY);
 
-        return new Price(subtotal, total, offers);
+        if (trace != null)
+            trace.recordTotals(subtotal, total);
+        PricingEvents.endPricing(event, unitCount, items.size(), offerCount);
+        return new Price(subtotal, total, offers, discounts);
+    }
+
+    private void traceOffer(PricingTrace trace, OfferPackage offerPackage, OfferRule offer, BigDecimal discount) {
+        int lineNumber = offerPackage.getLineNumberOf(offer);
+        trace.recordOffer(lineNumber, offer.getDescription(), discount);
+        offer.traceAllocation(this, trace);
+    }
+
+    private static int parallelThresholdProperty() {
+        String value = System.getProperty(PARALLEL_THRESHOLD_PROPERTY);
+        if (value == null)
+            return DEFAULT_PARALLEL_THRESHOLD;
+
+        String message = PARALLEL_THRESHOLD_PROPERTY + " must be a positive integer";
+        int parallelThreshold;
+        try {
+            parallelThreshold = Integer.decode(value.trim());
+        } catch (NumberFormatException cause) {
+            throw new IllegalArgumentException(message, cause);
+        }
+        if (parallelThreshold < 1)
+            throw new IllegalArgumentException(message);
+        return parallelThreshold;
+    }
+
+    /**
+     * Result of trying to add an item to a basket.
+     */
+    public enum AddResult {
+        /**
+         * The item was added to the basket.
+         */
+        ADDED,
+        /**
+         * No item exists in the catalog with the given name or barcode.
+         */
+        UNKNOWN_ITEM,
+        /**
+         * The name given was blank.
+         */
+        BLANK_NAME
     }
 
     /**
      * Metadata pertaining to pricing of an item basket.
+     * <p>
+     * The subtotal and total are computed upfront, while the breakdown of the
+     * special offers applied (which requires formatting their descriptions) is
+     * only built the first time it is requested.
      */
     public static class Price {
         private final BigDecimal subtotal;
         private final BigDecimal total;
-        private final NavigableMap<String, BigDecimal> offers;
+        private final OfferRule[] appliedOffers;
+        private final BigDecimal[] discounts;
+        private volatile NavigableMap<String, BigDecimal> offers;
 
-        private Price(BigDecimal subtotal,
-                      BigDecimal total,
-                      NavigableMap<String, BigDecimal> offers
+        Price(BigDecimal subtotal,
+              BigDecimal total,
+              OfferRule[] appliedOffers,
+              BigDecimal[] discounts
         ) {
             this.subtotal = subtotal;
             this.total = total;
-            this.offers = Collections.unmodifiableNavigableMap(offers);
+            this.appliedOffers = appliedOffers;
+            this.discounts = discounts;
         }
 
         /**
@@ -139,11 +500,21 @@ public class Basket {
         /**
          * Retrieves a map of all of the special offers applied to the basket.
          * The keys of the map are the descriptions of the offers while the
-         * values are the discounted value from that special offer.
+         * values are the discounted value from that special offer. Offers that
+         * share the same description are merged, with their discounts added up.
          *
          * @return The special offers applied to the item basket.
          */
         public NavigableMap<String, BigDecimal> getOffers() {
+            NavigableMap<String, BigDecimal> offers = this.offers;
+            if (offers == null) {
+                NavigableMap<String, BigDecimal> breakdown = new TreeMap<>();
+                for (int i = 0; i < appliedOffers.length; i++) {
+                    breakdown.merge(appliedOffers[i].getDescription(), discounts[i], BigDecimal::add);
+                }
+                offers = Collections.unmodifiableNavigableMap(breakdown);
+                this.offers = offers;
+            }
             return offers;
         }
     }
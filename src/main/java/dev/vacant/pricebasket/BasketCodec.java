@@ -0,0 +1,384 @@
+package dev.vacant.pricebasket;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encoder and decoder of item baskets, for transferring them between systems
+ * or storing them for later replay.
+ * <p>
+ * The binary form identifies items by their ordinal in the catalog (see {@link
+ * CatalogOrdinals}) instead of their names. After a short header (magic bytes,
+ * format version and the version stamp of the catalog's ordinals) comes the
+ * amount of distinct items and then, for each item in ascending order of
+ * ordinal, the difference to the previous ordinal and the amount of units,
+ * all as unsigned variable-length integers. Baskets can only be decoded with
+ * a catalog holding exactly the same items as the one they were encoded with.
+ * <p>
+ * The JSON form identifies items by their names and is meant for debugging:
+ * {@code {"catalog":"STAMP","items":{"APPLES":2,"SOUP":1}}}. Its catalog stamp
+ * is informational only.
+ */
+public class BasketCodec {
+    private static final int MAGIC = 0x50424b; // "PBK"
+    private static final int VERSION = 1;
+
+    private final Catalog catalog;
+    private final OfferPackage offerPackage;
+
+    /**
+     * Creates a new codec for baskets of the catalog supplied.
+     *
+     * @param catalog      The item catalog of the baskets.
+     * @param offerPackage The package of special offers for decoded baskets.
+     */
+    public BasketCodec(Catalog catalog, OfferPackage offerPackage) {
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+    }
+
+    /**
+     * Encodes a basket in the binary form.
+     *
+     * @param basket The basket to encode.
+     * @return The encoded basket.
+     * @throws IllegalArgumentException If the basket has items that are not
+     *                                  part of the catalog.
+     */
+    public byte[] encode(Basket basket) {
+        requireNonNull(basket, "basket is required");
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        Map<ItemId, Integer> items = basket.getItems();
+
+        // Packs ordinals and amounts together so that sorting keeps them paired
+        long[] lines = new long[items.size()];
+        int count = 0;
+        for (Map.Entry<ItemId, Integer> item : items.entrySet()) {
+            int ordinal = ordinals.ordinalOf(item.getKey());
+            if (ordinal < 0)
+                throw new IllegalArgumentException(item.getKey() + " doesn't exist in the catalog");
+            lines[count++] = (long) ordinal << 32 | item.getValue();
+        }
+        Arrays.sort(lines);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + 5 + count * 10);
+        buffer.putInt(MAGIC << 8 | VERSION);
+        buffer.putLong(ordinals.getStamp());
+        putVarint(buffer, count);
+        int previous = 0;
+        for (long line : lines) {
+            int ordinal = (int) (line >>> 32);
+            putVarint(buffer, ordinal - previous);
+            putVarint(buffer, (int) line);
+            previous = ordinal;
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Decodes a basket from its binary form.
+     *
+     * @param encoded The encoded basket.
+     * @return The decoded basket.
+     * @throws IllegalArgumentException If the encoded basket is malformed or
+     *                                  was encoded with a different catalog.
+     */
+    public Basket decode(byte[] encoded) {
+        requireNonNull(encoded, "encoded is required");
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Decodes a basket from its binary form, reading it directly from the
+     * buffer supplied. The position of the buffer is advanced to the end of
+     * the encoded basket, so that consecutive baskets can be decoded from the
+     * same buffer.
+     *
+     * @param buffer The buffer holding the encoded basket.
+     * @return The decoded basket.
+     * @throws IllegalArgumentException If the encoded basket is malformed or
+     *                                  was encoded with a different catalog.
+     */
+    public Basket decode(ByteBuffer buffer) {
+        requireNonNull(buffer, "buffer is required");
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        Basket basket = new Basket(catalog, offerPackage);
+        decodeLines(buffer, (ordinal, amount) -> basket.addItems(ordinals.itemAt(ordinal), amount));
+        return basket;
+    }
+
+    /**
+     * Retrieves the version stamp of the ordinals of the catalog this codec
+     * encodes baskets for (see {@link CatalogOrdinals#getStamp()}).
+     *
+     * @return The stamp of the catalog's ordinals.
+     */
+    long getCatalogStamp() {
+        return catalog.getOrdinals().getStamp();
+    }
+
+    /**
+     * Decodes the lines of a basket from its binary form without creating the
+     * basket, advancing the position of the buffer like {@link
+     * #decode(ByteBuffer)} does.
+     *
+     * @param buffer   The buffer holding the encoded basket.
+     * @param consumer The consumer of the ordinal and amount of every item, in
+     *                 ascending order of ordinal.
+     * @return The amount of distinct items in the basket.
+     * @throws IllegalArgumentException If the encoded basket is malformed or
+     *                                  was encoded with a different catalog.
+     */
+    int decodeLines(ByteBuffer buffer, LineConsumer consumer) {
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        try {
+            if (buffer.getInt() != (MAGIC << 8 | VERSION))
+                throw new IllegalArgumentException("Not an encoded basket");
+            if (buffer.getLong() != ordinals.getStamp())
+                throw new IllegalArgumentException("Basket was encoded with a different catalog");
+
+            int count = getVarint(buffer);
+            int ordinal = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = getVarint(buffer);
+                if (delta < 0 || (i > 0 && delta == 0))
+                    throw new IllegalArgumentException("Items out of order in encoded basket");
+                ordinal += delta;
+                if (ordinal < 0 || ordinal >= ordinals.size())
+                    throw new IllegalArgumentException("Unknown item in encoded basket");
+
+                int amount = getVarint(buffer);
+                if (amount <= 0)
+                    throw new IllegalArgumentException("Invalid amount in encoded basket");
+                consumer.accept(ordinal, amount);
+            }
+            return count;
+        } catch (BufferUnderflowException cause) {
+            throw new IllegalArgumentException("Truncated encoded basket", cause);
+        }
+    }
+
+    /**
+     * Encodes a basket in the JSON form.
+     *
+     * @param basket The basket to encode.
+     * @return The JSON representation of the basket.
+     */
+    public String toJson(Basket basket) {
+        requireNonNull(basket, "basket is required");
+        StringBuilder json = new StringBuilder("{\"catalog\":\"");
+        json.append(String.format("%016x", catalog.getOrdinals().getStamp()));
+        json.append("\",\"items\":{");
+
+        ItemId[] itemIds = basket.getItems().keySet().toArray(new ItemId[0]);
+        Arrays.sort(itemIds, (a, b) -> a.toString().compareTo(b.toString()));
+        for (int i = 0; i < itemIds.length; i++) {
+            if (i > 0)
+                json.append(',');
+            appendString(json, itemIds[i].toString());
+            json.append(':').append(basket.getAmountOf(itemIds[i]));
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Decodes a basket from its JSON form.
+     *
+     * @param json The JSON representation of the basket.
+     * @return The decoded basket.
+     * @throws IllegalArgumentException If the JSON is malformed or any of the
+     *                                  items doesn't exist in the catalog.
+     */
+    public Basket fromJson(String json) {
+        requireNonNull(json, "json is required");
+        Basket basket = new Basket(catalog, offerPackage);
+        JsonParser parser = new JsonParser(json);
+
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String field = parser.readString();
+                parser.expect(':');
+                if (field.equals("items")) {
+                    parser.expect('{');
+                    if (!parser.consume('}')) {
+                        do {
+                            ItemId itemId = new ItemId(parser.readString());
+                            parser.expect(':');
+                            int amount = parser.readInt();
+                            if (catalog.getPriceFor(itemId) == null)
+                                throw new IllegalArgumentException(itemId + " doesn't exist in the catalog");
+                            if (amount <= 0)
+                                throw parser.error("Invalid amount");
+                            basket.addItems(itemId, amount);
+                        } while (parser.consume(','));
+                        parser.expect('}');
+                    }
+                } else {
+                    parser.readString();
+                }
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.expectEnd();
+        return basket;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed integer in encoded basket");
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Parser for the subset of JSON used by the JSON form of baskets.
+     */
+    private static class JsonParser {
+        private final String json;
+        private int position;
+
+        JsonParser(String json) {
+            this.json = json;
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (position < json.length() && json.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c))
+                throw error("Expected '" + c + "'");
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (position != json.length())
+                throw error("Unexpected trailing content");
+        }
+
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (position >= json.length())
+                    throw error("Unterminated string");
+                char c = json.charAt(position++);
+                if (c == '"')
+                    return value.toString();
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+
+                if (position >= json.length())
+                    throw error("Unterminated string");
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length())
+                            throw error("Malformed escape");
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException ignored) {
+                            throw error("Malformed escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Malformed escape");
+                }
+            }
+        }
+
+        int readInt() {
+            skipWhitespace();
+            int start = position;
+            while (position < json.length() && json.charAt(position) >= '0' && json.charAt(position) <= '9')
+                position++;
+            try {
+                return Integer.parseInt(json.substring(start, position));
+            } catch (NumberFormatException ignored) {
+                throw error("Expected an integer");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of basket JSON");
+        }
+
+        private void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position)))
+                position++;
+        }
+    }
+
+    /**
+     * Consumer of the lines of an encoded basket.
+     */
+    interface LineConsumer {
+        /**
+         * Accepts one line of the basket.
+         *
+         * @param ordinal The ordinal of the item in the catalog.
+         * @param amount  The amount of units of the item.
+         */
+        void accept(int ordinal, int amount);
+    }
+}
@@ -0,0 +1,113 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static dev.vacant.pricebasket.FormattingUtil.formatMoney;
+
+/**
+ * Rule for specifying a discount on the whole basket once it reaches a given
+ * spend or amount of units.
+ * <p>
+ * The syntax for the rule is {@code 'basket DISCOUNT from THRESHOLD'}, where
+ * the discount can be either a percentage of the running total ({@code
+ * VALUE%}) or the total value to discount ({@code VALUE}), and the threshold
+ * can be either a minimum spend ({@code VALUE}) or a minimum amount of units
+ * ({@code AMOUNT items}). The spend is checked against the running total of
+ * the basket, after the item-level offers (see {@link BasketOfferRule}).
+ * <p>
+ * This rule will not accept any negative values, a threshold of {@code 0},
+ * percentages of over 100% or discounts of more than the minimum spend.
+ */
+public class BasketOffer implements BasketOfferRule {
+    private final long discount;
+    private final boolean percentage;
+    private final long threshold;
+    private final boolean unitThreshold;
+
+    private BasketOffer(long discount, boolean percentage, long threshold, boolean unitThreshold) {
+        this.discount = discount;
+        this.percentage = percentage;
+        this.threshold = threshold;
+        this.unitThreshold = unitThreshold;
+    }
+
+    @Override
+    public boolean isApplicable(BasketTotals totals) {
+        if (unitThreshold)
+            return totals.getUnitCount() >= threshold;
+        return totals.getRunningTotalInPence() >= threshold;
+    }
+
+    @Override
+    public long calculateDiscountInPence(BasketTotals totals) {
+        if (!percentage)
+            return discount;
+        long runningTotal = Math.max(totals.getRunningTotalInPence(), 0);
+        return PricingContext.divideHalfEven(runningTotal * discount, 100);
+    }
+
+    @Override
+    public String getDescription() {
+        String value = percentage ? discount + "%" : formatMoney(BigDecimal.valueOf(discount, 2));
+        String from = unitThreshold ? threshold + " items" : formatMoney(BigDecimal.valueOf(threshold, 2));
+        return value + " off baskets from " + from;
+    }
+
+    public static class Parser implements OfferParser {
+        @Override
+        public BasketOffer parseRule(Catalog catalog, String rule) {
+            // Cheap rejection of rules that don't start with the keyword
+            String trimmed = rule.trim();
+            if (!trimmed.regionMatches(true, 0, "basket", 0, 6))
+                return null;
+
+            Matcher matcher = Syntax.RULE_FORMAT.matcher(trimmed);
+            if (!matcher.matches())
+                return null;
+
+            try {
+                String discount = matcher.group("discount");
+                boolean percentage = discount.endsWith("%");
+                long value = percentage
+                        ? Long.parseLong(discount.substring(0, discount.length() - 1))
+                        : toPence(discount);
+                if (percentage && value > 100)
+                    return null;
+
+                boolean unitThreshold = matcher.group("units") != null;
+                long threshold = unitThreshold
+                        ? Long.parseLong(matcher.group("units"))
+                        : toPence(matcher.group("spend"));
+                if (threshold == 0)
+                    return null;
+                if (!percentage && !unitThreshold && value > threshold)
+                    return null;
+
+                return new BasketOffer(value, percentage, threshold, unitThreshold);
+            } catch (NumberFormatException | ArithmeticException ignored) {
+                return null;
+            }
+        }
+
+        private static long toPence(String value) {
+            return new BigDecimal(value)
+                    .setScale(2, RoundingMode.UNNECESSARY)
+                    .unscaledValue()
+                    .longValueExact();
+        }
+    }
+
+    /**
+     * Holder for the syntax of the rule, so that its pattern is only compiled
+     * when a candidate rule is first parsed.
+     */
+    private static class Syntax {
+        static final Pattern RULE_FORMAT = Pattern.compile(
+                "(?i:basket)\\s+(?<discount>\\d+%|\\d+\\.\\d+)\\s+(?i:from)\\s+" +
+                        "(?:(?<spend>\\d+\\.\\d+)|(?<units>\\d+)\\s+(?i:items))"
+        );
+    }
+}
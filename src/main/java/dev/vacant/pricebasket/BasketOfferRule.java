@@ -0,0 +1,46 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+
+/**
+ * Rule of how to apply a special offer to a whole item basket, rather than to
+ * specific items (e.g. a discount when spending over a given amount).
+ * <p>
+ * Pricing a basket happens in two phases. First every item-level offer is
+ * applied, in the order of the offers data file. Then every basket-level offer
+ * is evaluated, again in the order of the data file, against the totals of the
+ * basket at that point: the running total includes the discounts of all of the
+ * item-level offers and of the basket-level offers before it.
+ * <p>
+ * Basket-level offers are never applicable in the item-level phase, so {@link
+ * #isApplicable(Basket)} always returns {@code false} and {@link
+ * #calculateDiscount(Basket)} always returns zero.
+ */
+public interface BasketOfferRule extends OfferRule {
+    /**
+     * Checks if the current special offer is applicable to a basket with the
+     * totals supplied.
+     *
+     * @param totals The totals of the item basket.
+     * @return {@code true} if the offer is applicable, {@code false} otherwise.
+     */
+    boolean isApplicable(BasketTotals totals);
+
+    /**
+     * Calculates the applicable discount from this special offer.
+     *
+     * @param totals The totals of the item basket the offer applies to.
+     * @return The total discount to be applied to the item basket, in pence.
+     */
+    long calculateDiscountInPence(BasketTotals totals);
+
+    @Override
+    default boolean isApplicable(Basket basket) {
+        return false;
+    }
+
+    @Override
+    default BigDecimal calculateDiscount(Basket basket) {
+        return BigDecimal.ZERO.setScale(2);
+    }
+}
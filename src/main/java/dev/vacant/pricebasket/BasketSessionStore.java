@@ -0,0 +1,513 @@
+package dev.vacant.pricebasket;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Persistent store of the open baskets of a pricing service, keyed by the ID of
+ * their checkout session.
+ * <p>
+ * Every change to a session is appended as a fixed-size record to a journal
+ * which is memory-mapped, so changes survive the process crashing as soon as
+ * they are made. Surviving the machine itself crashing requires the journal to
+ * be synced to disk ({@link #sync()}), which is batched: concurrent callers
+ * wait for a single sync covering all of their changes. Records carry their
+ * own checksum, so a record torn by a crash ends the replay instead of
+ * corrupting the sessions.
+ * <p>
+ * Once the journal is full the store is compacted: the items of every open
+ * session are written to a snapshot file, after which the journal starts over.
+ * Opening a store loads the latest snapshot and replays the journal on top of
+ * it. Sessions are kept on the heap as just the ordinals and amounts of their
+ * items (see {@link CatalogOrdinals}). Snapshots and journals also hold the
+ * names of the items their sessions refer to, written once per snapshot, so a
+ * store opened with a catalog whose items changed (e.g. after a deploy) maps
+ * its sessions by item name, leaving out the items no longer in the catalog.
+ * The names are skipped when the store is opened with the same catalog.
+ */
+public class BasketSessionStore implements Closeable {
+    private static final String JOURNAL_FILE = "sessions.journal";
+    private static final String SNAPSHOT_FILE = "sessions.snapshot";
+
+    private static final int JOURNAL_MAGIC = 0x50424a4c; // "PBJL"
+    private static final int SNAPSHOT_MAGIC = 0x5042534e; // "PBSN"
+    private static final int VERSION = 2;
+    private static final int SNAPSHOT_VERSION = 3;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 24;
+    private static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private static final byte ADD_ITEMS = 1;
+    private static final byte CLOSE_SESSION = 2;
+    private static final byte ITEM_NAME = 3;
+
+    private final Path directory;
+    private final Catalog catalog;
+    private final OfferPackage offerPackage;
+    private final CatalogOrdinals ordinals;
+    private final Map<Long, Session> sessions;
+    private final FileChannel channel;
+    private final MappedByteBuffer journal;
+    private final ByteBuffer record;
+    private final CRC32 checksum;
+    private final Object syncLock;
+    private long generation;
+    private long snapshotStamp;
+    private Map<Integer, Integer> snapshotOrdinals;
+    private BitSet namedOrdinals;
+    private volatile int position;
+    private int syncedPosition;
+
+    /**
+     * Opens the store of open baskets kept in a directory, recovering the
+     * sessions left open by a previous run.
+     *
+     * @param directory    The directory of the store's files.
+     * @param catalog      The item catalog of the baskets.
+     * @param offerPackage The package of special offers for the baskets.
+     * @throws IOException If an I/O error occurs or the store's files are
+     *                     corrupt.
+     */
+    public BasketSessionStore(Path directory, Catalog catalog, OfferPackage offerPackage) throws IOException {
+        this(directory, catalog, offerPackage, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens the store of open baskets kept in a directory, with a journal
+     * holding up to the given amount of changes between compactions.
+     */
+    BasketSessionStore(Path directory,
+                       Catalog catalog,
+                       OfferPackage offerPackage,
+                       int capacity
+    ) throws IOException {
+        this.directory = requireNonNull(directory, "directory is required");
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.ordinals = catalog.getOrdinals();
+        this.sessions = new HashMap<>();
+        this.record = ByteBuffer.allocate(RECORD_SIZE);
+        this.checksum = new CRC32();
+        this.syncLock = new Object();
+        this.snapshotStamp = ordinals.getStamp();
+
+        loadSnapshot();
+        replayJournal();
+
+        // Starts every run from a fresh snapshot and an empty journal
+        Files.createDirectories(directory);
+        writeSnapshot(generation + 1);
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE), CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        try {
+            this.journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            resetJournal();
+        } catch (IOException | RuntimeException cause) {
+            channel.close();
+            throw cause;
+        }
+    }
+
+    /**
+     * Adds one unit of the item with the given name to the basket of a session,
+     * opening the session if needed.
+     *
+     * @param sessionId The ID of the session.
+     * @param name      The name of the item to add.
+     * @return The result of adding the item.
+     * @throws IOException If an I/O error occurs while compacting the store.
+     */
+    public synchronized Basket.AddResult addItem(long sessionId, String name) throws IOException {
+        requireNonNull(name, "name is required");
+        if (ItemId.isBlank(name))
+            return Basket.AddResult.BLANK_NAME;
+        int ordinal = ordinals.ordinalOf(new ItemId(name));
+        if (ordinal < 0)
+            return Basket.AddResult.UNKNOWN_ITEM;
+
+        // Items are named in the journal the first time they are referenced
+        byte[] itemName = namedOrdinals.get(ordinal) ? null : ordinals.itemAt(ordinal).toString().getBytes(UTF_8);
+        int records = itemName == null ? 1 : 1 + (itemName.length + Long.BYTES - 1) / Long.BYTES;
+        if (position + records * RECORD_SIZE > journal.capacity()) {
+            // The new snapshot holds the change, along with the name of the item
+            sessions.computeIfAbsent(sessionId, id -> new Session()).add(ordinal, 1);
+            compact();
+            return Basket.AddResult.ADDED;
+        }
+
+        if (itemName != null) {
+            appendName(ordinal, itemName);
+            namedOrdinals.set(ordinal);
+        }
+        append(sessionId, ADD_ITEMS, ordinal, 1);
+        sessions.computeIfAbsent(sessionId, id -> new Session()).add(ordinal, 1);
+        return Basket.AddResult.ADDED;
+    }
+
+    /**
+     * Closes a session (e.g. once its basket is paid for), discarding its
+     * basket.
+     *
+     * @param sessionId The ID of the session.
+     * @return {@code true} if the session was open, {@code false} otherwise.
+     * @throws IOException If an I/O error occurs while compacting the store.
+     */
+    public synchronized boolean closeSession(long sessionId) throws IOException {
+        if (!sessions.containsKey(sessionId))
+            return false;
+        append(sessionId, CLOSE_SESSION, 0, 0);
+        sessions.remove(sessionId);
+        return true;
+    }
+
+    /**
+     * Creates a basket with the items of a session.
+     *
+     * @param sessionId The ID of the session.
+     * @return A new basket with the items of the session, or {@code null} if
+     * the session is not open.
+     */
+    public synchronized Basket getBasket(long sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null)
+            return null;
+
+        Basket basket = new Basket(catalog, offerPackage);
+        for (int i = 0; i < session.size; i++) {
+            basket.addItems(ordinals.itemAt(session.ordinals[i]), session.amounts[i]);
+        }
+        return basket;
+    }
+
+    /**
+     * Retrieves the amount of open sessions.
+     *
+     * @return The amount of open sessions.
+     */
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Syncs all of the changes made so far to disk. Concurrent callers share
+     * the same sync, so the cost of syncing is spread over every change it
+     * covers.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public void sync() throws IOException {
+        int target = position;
+        synchronized (syncLock) {
+            if (syncedPosition >= target)
+                return;
+            // Covers the changes made while waiting for the previous sync
+            int covered = position;
+            journal.force();
+            syncedPosition = covered;
+        }
+    }
+
+    /**
+     * Compacts the store, writing the open sessions to a new snapshot and
+     * starting the journal over.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    public synchronized void compact() throws IOException {
+        writeSnapshot(generation + 1);
+        resetJournal();
+    }
+
+    /**
+     * Syncs all of the changes made so far and closes the store.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        journal.force();
+        channel.close();
+    }
+
+    private void append(long sessionId, byte operation, int ordinal, int amount) throws IOException {
+        if (position + RECORD_SIZE > journal.capacity())
+            compact();
+
+        record.clear();
+        record.putLong(sessionId).putInt(ordinal).putInt(amount).putInt(operation);
+        checksum.reset();
+        checksum.update(record.array(), 0, RECORD_SIZE - Integer.BYTES);
+        record.putInt((int) checksum.getValue());
+
+        journal.position(position);
+        journal.put(record.array());
+        position += RECORD_SIZE;
+    }
+
+    /**
+     * Appends the name of an item as consecutive records, each holding the
+     * length of the name and the next 8 bytes of it in place of the session ID.
+     */
+    private void appendName(int ordinal, byte[] name) throws IOException {
+        for (int offset = 0; offset < name.length; offset += Long.BYTES) {
+            long chunk = 0;
+            for (int i = offset; i < offset + Long.BYTES; i++) {
+                chunk = chunk << 8 | (i < name.length ? name[i] & 0xff : 0);
+            }
+            append(chunk, ITEM_NAME, ordinal, name.length);
+        }
+    }
+
+    private void resetJournal() throws IOException {
+        // Clears the previous records before the header claims a new generation
+        for (int i = HEADER_SIZE; i < Math.max(position, HEADER_SIZE); i += Long.BYTES) {
+            journal.putLong(i, 0);
+        }
+        journal.force();
+        journal.putInt(0, JOURNAL_MAGIC);
+        journal.putInt(4, VERSION);
+        journal.putLong(8, ordinals.getStamp());
+        journal.putLong(16, generation);
+        journal.force();
+        synchronized (syncLock) {
+            position = HEADER_SIZE;
+            syncedPosition = HEADER_SIZE;
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        Path journalFile = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(journalFile))
+            return;
+
+        try (FileChannel channel = FileChannel.open(journalFile, READ)) {
+            if (channel.size() < HEADER_SIZE)
+                return;
+            ByteBuffer journal = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (journal.getInt(0) != JOURNAL_MAGIC || journal.getInt(4) != VERSION)
+                throw new IOException("Not a session journal: " + journalFile);
+            // Journals older than the snapshot are already part of it
+            if (journal.getLong(16) != generation)
+                return;
+            // Otherwise they were written with the same catalog as the snapshot
+            if (journal.getLong(8) != snapshotStamp)
+                throw new IOException(journalFile + " was written with a different catalog than its snapshot");
+
+            byte[] bytes = new byte[RECORD_SIZE];
+            byte[] name = null;
+            int nameOrdinal = -1;
+            int nameLength = 0;
+            int nameRead = 0;
+            for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= journal.capacity(); offset += RECORD_SIZE) {
+                journal.position(offset);
+                journal.get(bytes);
+                checksum.reset();
+                checksum.update(bytes, 0, RECORD_SIZE - Integer.BYTES);
+                if (journal.getInt(offset + 20) != (int) checksum.getValue())
+                    break;
+
+                long sessionId = journal.getLong(offset);
+                int ordinal = journal.getInt(offset + 8);
+                int amount = journal.getInt(offset + 12);
+                int operation = journal.getInt(offset + 16);
+                if (operation == ITEM_NAME && ordinal >= 0 && amount > 0
+                        && (nameRead == 0 || ordinal == nameOrdinal && amount == nameLength)) {
+                    // Names only matter when mapping the ordinals to another catalog
+                    if (nameRead == 0 && snapshotOrdinals != null)
+                        name = new byte[amount];
+                    nameOrdinal = ordinal;
+                    nameLength = amount;
+                    for (int i = 0; i < Long.BYTES && nameRead < nameLength; i++, nameRead++) {
+                        if (name != null)
+                            name[nameRead] = (byte) (sessionId >>> (56 - 8 * i));
+                    }
+                    if (nameRead == nameLength) {
+                        if (name != null)
+                            snapshotOrdinals.put(ordinal, ordinals.ordinalOf(new ItemId(new String(name, UTF_8))));
+                        name = null;
+                        nameRead = 0;
+                    }
+                } else if (nameRead != 0) {
+                    throw new IOException("Malformed record in session journal: " + journalFile);
+                } else if (operation == ADD_ITEMS && isKnown(ordinal) && amount > 0) {
+                    sessions.computeIfAbsent(sessionId, id -> new Session()).add(remap(ordinal), amount);
+                } else if (operation == CLOSE_SESSION) {
+                    sessions.remove(sessionId);
+                } else {
+                    throw new IOException("Malformed record in session journal: " + journalFile);
+                }
+            }
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        CRC32 snapshotChecksum = new CRC32();
+        try (DataInputStream input = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotFile)), snapshotChecksum))) {
+            if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION)
+                throw new IOException("Not a session snapshot: " + snapshotFile);
+            long stamp = input.readLong();
+            long generation = input.readLong();
+
+            // Ordinals of another catalog are mapped to the current ones by name
+            int nameCount = input.readInt();
+            if (nameCount < 0)
+                throw new IOException("Malformed session snapshot: " + snapshotFile);
+            this.snapshotStamp = stamp;
+            this.snapshotOrdinals = stamp == ordinals.getStamp() ? null : new HashMap<>();
+            for (int i = 0; i < nameCount; i++) {
+                int ordinal = input.readInt();
+                if (snapshotOrdinals != null) {
+                    snapshotOrdinals.put(ordinal, ordinals.ordinalOf(new ItemId(input.readUTF())));
+                } else {
+                    skipFully(input, input.readUnsignedShort());
+                }
+            }
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                long sessionId = input.readLong();
+                Session session = new Session();
+                int size = input.readInt();
+                for (int j = 0; j < size; j++) {
+                    int ordinal = input.readInt();
+                    int amount = input.readInt();
+                    if (!isKnown(ordinal) || amount <= 0)
+                        throw new IOException("Malformed session snapshot: " + snapshotFile);
+                    session.add(remap(ordinal), amount);
+                }
+                sessions.put(sessionId, session);
+            }
+
+            int expected = (int) snapshotChecksum.getValue();
+            if (input.readInt() != expected)
+                throw new IOException("Corrupt session snapshot: " + snapshotFile);
+            this.generation = generation;
+        } catch (NoSuchFileException ignored) {
+            // A new store
+        } catch (EOFException cause) {
+            throw new IOException("Truncated session snapshot: " + snapshotFile, cause);
+        }
+    }
+
+    private void writeSnapshot(long generation) throws IOException {
+        Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        Path temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        // Only the items of the open sessions are named
+        BitSet referenced = new BitSet();
+        for (Session session : sessions.values()) {
+            for (int i = 0; i < session.size; i++) {
+                referenced.set(session.ordinals[i]);
+            }
+        }
+        try (FileChannel snapshotChannel = FileChannel.open(temporaryFile, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            CRC32 snapshotChecksum = new CRC32();
+            DataOutputStream output = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(snapshotChannel)), snapshotChecksum));
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(ordinals.getStamp());
+            output.writeLong(generation);
+            output.writeInt(referenced.cardinality());
+            for (int i = referenced.nextSetBit(0); i >= 0; i = referenced.nextSetBit(i + 1)) {
+                output.writeInt(i);
+                output.writeUTF(ordinals.itemAt(i).toString());
+            }
+            output.writeInt(sessions.size());
+            for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+                Session session = entry.getValue();
+                output.writeLong(entry.getKey());
+                output.writeInt(session.size);
+                for (int i = 0; i < session.size; i++) {
+                    output.writeInt(session.ordinals[i]);
+                    output.writeInt(session.amounts[i]);
+                }
+            }
+            output.writeInt((int) snapshotChecksum.getValue());
+            output.flush();
+            snapshotChannel.force(true);
+        }
+
+        // Once the new snapshot is in place, the journal is ignored until reset
+        Files.move(temporaryFile, snapshotFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        this.generation = generation;
+        this.namedOrdinals = referenced;
+    }
+
+    private static void skipFully(DataInputStream input, int length) throws IOException {
+        while (length > 0) {
+            int skipped = input.skipBytes(length);
+            if (skipped <= 0)
+                throw new EOFException();
+            length -= skipped;
+        }
+    }
+
+    /**
+     * Checks whether an ordinal of the catalog the snapshot was written with
+     * can be mapped to the current catalog.
+     */
+    private boolean isKnown(int ordinal) {
+        if (snapshotOrdinals == null)
+            return ordinal >= 0 && ordinal < ordinals.size();
+        return snapshotOrdinals.containsKey(ordinal);
+    }
+
+    /**
+     * Maps an ordinal of the catalog the snapshot was written with to the
+     * ordinal of the same item in the current catalog.
+     *
+     * @return The current ordinal, or {@code -1} if the item is no longer in
+     * the catalog.
+     */
+    private int remap(int ordinal) {
+        return snapshotOrdinals == null ? ordinal : snapshotOrdinals.get(ordinal);
+    }
+
+    /**
+     * Items of an open session, as parallel arrays of ordinals and amounts.
+     */
+    private static class Session {
+        private int[] ordinals = new int[4];
+        private int[] amounts = new int[4];
+        private int size;
+
+        void add(int ordinal, int amount) {
+            if (ordinal < 0)
+                return;
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    amounts[i] += amount;
+                    return;
+                }
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            ordinals[size] = ordinal;
+            amounts[size] = amount;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.vacant.pricebasket;
+
+/**
+ * Running totals of an item basket being priced, as seen by basket-level
+ * special offers (see {@link BasketOfferRule}).
+ * <p>
+ * The totals are filled in from the subtotal computed while pricing the
+ * basket, so basket-level offers never need to go over the items in the
+ * basket again. Instances are reused between baskets and must not be kept by
+ * the offers.
+ */
+public class BasketTotals {
+    private long subtotal;
+    private long runningTotal;
+    private int unitCount;
+
+    BasketTotals() {
+    }
+
+    /**
+     * Starts over with the totals of a new basket, before any special offers.
+     */
+    void reset(long subtotalInPence, int unitCount) {
+        this.subtotal = subtotalInPence;
+        this.runningTotal = subtotalInPence;
+        this.unitCount = unitCount;
+    }
+
+    /**
+     * Deducts the discount of a special offer from the running total.
+     */
+    void deduct(long discountInPence) {
+        runningTotal -= discountInPence;
+    }
+
+    /**
+     * Retrieves the total price of the items in the basket, before applying
+     * any special offers.
+     *
+     * @return The subtotal of the basket, in pence.
+     */
+    public long getSubtotalInPence() {
+        return subtotal;
+    }
+
+    /**
+     * Retrieves the price of the basket after the special offers applied so
+     * far: all of the item-level offers and the basket-level offers preceding
+     * the one being evaluated. It may be negative when the discounts exceed
+     * the subtotal.
+     *
+     * @return The running total of the basket, in pence.
+     */
+    public long getRunningTotalInPence() {
+        return runningTotal;
+    }
+
+    /**
+     * Retrieves the amount of units in the basket, across all items.
+     *
+     * @return The amount of units in the basket.
+     */
+    public int getUnitCount() {
+        return unitCount;
+    }
+}
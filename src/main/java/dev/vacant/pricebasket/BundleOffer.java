@@ -20,29 +20,32 @@ import static dev.vacant.pricebasket.FormattingUtil.formatItem;
  * amount of {@code 0} required items. Furthermore, the rule won't accept a
  * discount of more than the total price for the item.
  * <p>
+ * The rule can optionally be suffixed with {@code 'max LIMIT'}, limiting the
+ * discount to at most {@code LIMIT} bundles per basket.
+ * <p>
  * Note that this rule only applies the discount if the discounted item is in
  * the basket.
  */
 public class BundleOffer implements OfferRule {
-    private static final Pattern RULE_FORMAT = Pattern.compile(
-            "(?<discountedId>.*?)\\s+(?<discount>\\d+\\.\\d+)\\s+" +
-                    "(?i:per)\\s+(?<amount>\\d+)\\s+(?<requiredId>.*?)"
-    );
-
     private final ItemId discountedItemId;
     private final ItemId requiredItemId;
     private final BigDecimal discount;
     private final int minAmount;
+    private final long discountInPence;
+    private final int maxBundles;
 
     private BundleOffer(ItemId discountedItemId,
                         ItemId requiredItemId,
                         BigDecimal discount,
-                        int minAmount
+                        int minAmount,
+                        int maxBundles
     ) {
         this.discountedItemId = discountedItemId;
         this.requiredItemId = requiredItemId;
         this.discount = discount;
         this.minAmount = minAmount;
+        this.discountInPence = discount.movePointRight(2).longValueExact();
+        this.maxBundles = maxBundles;
     }
 
     @Override
@@ -53,21 +56,112 @@ public class BundleOffer implements OfferRule {
 
     @Override
     public BigDecimal calculateDiscount(Basket basket) {
-        int count = basket.getAmountOf(requiredItemId) / minAmount;
-        count = Math.min(count, basket.getAmountOf(discountedItemId));
-        return discount.multiply(new BigDecimal(count))
+        return discount.multiply(new BigDecimal(countBundles(basket)))
                 .setScale(2, RoundingMode.HALF_EVEN);
     }
 
+    @Override
+    public long calculateDiscountInPence(Basket basket) {
+        return discountInPence * countBundles(basket);
+    }
+
+    /**
+     * Calculates the discount for a basket with given amounts of the required
+     * and discounted items, without needing such a basket.
+     *
+     * @param requiredAmount   The amount of units of the required item.
+     * @param discountedAmount The amount of units of the discounted item.
+     * @return The discount, in pence.
+     */
+    long calculateDiscountInPence(int requiredAmount, int discountedAmount) {
+        return discountInPence * countBundles(requiredAmount, discountedAmount);
+    }
+
+    @Override
+    public void traceAllocation(Basket basket, PricingTrace trace) {
+        int count = countBundles(basket);
+        trace.allocate(requiredItemId, count * minAmount);
+        // A bundle of a single item discounts one of its required units
+        if (!discountedItemId.equals(requiredItemId))
+            trace.allocate(discountedItemId, count);
+    }
+
     @Override
     public String getDescription() {
-        return formatItem(discountedItemId) + " and " + formatItem(requiredItemId) + " bundle";
+        String limit = maxBundles == Integer.MAX_VALUE ? "" : " (max " + maxBundles + ")";
+        return formatItem(discountedItemId) + " and " + formatItem(requiredItemId) + " bundle" + limit;
+    }
+
+    /**
+     * Retrieves the ID of the discounted item.
+     *
+     * @return The ID of the discounted item.
+     */
+    ItemId getDiscountedItemId() {
+        return discountedItemId;
+    }
+
+    /**
+     * Retrieves the ID of the item required for the discount.
+     *
+     * @return The ID of the required item.
+     */
+    ItemId getRequiredItemId() {
+        return requiredItemId;
+    }
+
+    /**
+     * Retrieves the discount on each bundle.
+     *
+     * @return The discount per bundle.
+     */
+    BigDecimal getDiscount() {
+        return discount;
+    }
+
+    /**
+     * Retrieves the amount of required items making up a bundle.
+     *
+     * @return The amount of required items per bundle.
+     */
+    int getMinAmount() {
+        return minAmount;
+    }
+
+    /**
+     * Retrieves the maximum amount of bundles discounted per basket.
+     *
+     * @return The maximum amount of bundles, or {@link Integer#MAX_VALUE} if
+     * the offer has no limit.
+     */
+    int getMaxBundles() {
+        return maxBundles;
+    }
+
+    /**
+     * Counts the bundles discounted for given amounts of the required and
+     * discounted items.
+     *
+     * @param requiredAmount   The amount of units of the required item.
+     * @param discountedAmount The amount of units of the discounted item.
+     * @return The amount of bundles.
+     */
+    int countBundles(int requiredAmount, int discountedAmount) {
+        return Math.min(Math.min(requiredAmount / minAmount, discountedAmount), maxBundles);
+    }
+
+    private int countBundles(Basket basket) {
+        return countBundles(basket.getAmountOf(requiredItemId), basket.getAmountOf(discountedItemId));
     }
 
     public static class Parser implements OfferParser {
         @Override
         public BundleOffer parseRule(Catalog catalog, String rule) {
-            Matcher matcher = RULE_FORMAT.matcher(rule.trim());
+            // Cheap rejection of rules that don't mention the bundle keyword
+            if (!containsKeyword(rule))
+                return null;
+
+            Matcher matcher = Syntax.RULE_FORMAT.matcher(rule.trim());
             if (!matcher.matches())
                 return null;
 
@@ -82,16 +176,41 @@ public class BundleOffer implements OfferRule {
                 BigDecimal value = new BigDecimal(matcher.group("discount"))
                         .setScale(2, RoundingMode.UNNECESSARY);
                 int amount = Integer.parseInt(matcher.group("amount"));
+                int maxBundles = parseLimit(matcher.group("max"));
 
                 if (value.compareTo(catalog.getPriceFor(discountedId)) > 0)
                     return null;
-                if (amount == 0)
+                if (amount == 0 || maxBundles == 0)
                     return null;
 
-                return new BundleOffer(discountedId, requiredId, value, amount);
+                return new BundleOffer(discountedId, requiredId, value, amount, maxBundles);
             } catch (NumberFormatException | ArithmeticException ignored) {
                 return null;
             }
         }
+
+        private static int parseLimit(String limit) {
+            return limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit);
+        }
+
+        private static boolean containsKeyword(String rule) {
+            for (int i = 0; i + 3 <= rule.length(); i++) {
+                if (rule.regionMatches(true, i, "per", 0, 3))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Holder for the syntax of the rule, so that its pattern is only compiled
+     * when a candidate rule is first parsed.
+     */
+    private static class Syntax {
+        static final Pattern RULE_FORMAT = Pattern.compile(
+                "(?<discountedId>.*?)\\s+(?<discount>\\d+\\.\\d+)\\s+" +
+                        "(?i:per)\\s+(?<amount>\\d+)\\s+(?<requiredId>.*?)" +
+                        "(?:\\s+(?i:max)\\s+(?<max>\\d+))?"
+        );
     }
 }
@@ -4,11 +4,12 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static java.util.Objects.requireNonNull;
 
@@ -22,12 +23,31 @@ import static java.util.Objects.requireNonNull;
  * The catalog data file is a simple text file where each non-blank, non-comment
  * line is an item entry (the item name followed by its price). Every entry must
  * specify an unique item, where the item's name is case insensitive.
+ * <p>
+ * Alternatively, very large catalogs can be exported as a binary price table
+ * ({@link #writeTable(Path)}) which can then be memory-mapped directly, keeping
+ * all of the entries outside of the Java heap.
+ * <p>
+ * Catalogs are immutable. Changes are applied through delta files ({@link
+ * #applyDelta(DataReader, String)}), producing a new catalog that shares all of
+ * the unchanged entries with the previous one.
+ * <p>
+ * Items can also be identified by their barcodes (GTINs), which are read from a
+ * separate data file ({@link #withBarcodes(DataReader)}) and indexed so that
+ * scanned items are looked up without handling their names at all. Items can
+ * be searched by partial or misspelled names as well ({@link #search(String,
+ * int)}).
  */
 public class Catalog {
-    private static final Pattern LINE_FORMAT = Pattern.compile("(?<id>.*?)\\s+(?<price>\\S+)");
     private static final String DATA_FILE = "catalog.list";
+    private static final String BARCODES_FILE = "barcodes.list";
 
-    private final Map<ItemId, BigDecimal> data;
+    private final ItemPriceMap data;
+    private final long checksum;
+    private final BarcodeIndex barcodes;
+    private volatile CatalogOrdinals ordinals;
+    private volatile long[] pricesInPence;
+    private volatile ItemSearchIndex searchIndex;
 
     /**
      * Creates a new catalog using the specified data reader for retrieving the
@@ -38,9 +58,13 @@ public class Catalog {
      */
     public Catalog(DataReader reader) throws IOException {
         requireNonNull(reader, "reader is required");
+        PricingEvents.DataFileLoad event = PricingEvents.beginLoad();
         try (LineNumberReader fileReader = reader.newLineNumberReader(DATA_FILE)) {
             data = parseDataFile(fileReader);
+            checksum = DataReader.checksumOf(fileReader);
+            PricingEvents.endLoad(event, DATA_FILE, data.size(), DataReader.byteCountOf(fileReader));
         }
+        barcodes = null;
     }
 
     /**
@@ -53,6 +77,160 @@ public class Catalog {
         this(new DataReader());
     }
 
+    /**
+     * Creates a new catalog backed by a price table previously written with
+     * {@link #writeTable(Path)}.
+     * <p>
+     * The table is memory-mapped and its entries are kept off the Java heap, so
+     * only the items being looked up are ever materialized.
+     *
+     * @param tableFile The path of the price table to map.
+     * @throws IOException If an I/O error occurs or the file is not a valid
+     *                     price table.
+     */
+    public Catalog(Path tableFile) throws IOException {
+        requireNonNull(tableFile, "tableFile is required");
+        data = OffHeapItemMap.map(tableFile);
+        checksum = -1;
+        barcodes = null;
+    }
+
+    private Catalog(ItemPriceMap data) {
+        this.data = data;
+        this.checksum = -1;
+        this.barcodes = null;
+    }
+
+    private Catalog(Catalog catalog, BarcodeIndex barcodes) {
+        this.data = catalog.data;
+        this.checksum = catalog.checksum;
+        this.barcodes = barcodes;
+        this.ordinals = catalog.ordinals;
+        this.pricesInPence = catalog.pricesInPence;
+        this.searchIndex = catalog.searchIndex;
+    }
+
+    /**
+     * Reloads the catalog from its data file, skipping the parsing when the
+     * data file has not changed since this catalog was read.
+     *
+     * @param reader The data reader to use.
+     * @return This catalog if the data file is unchanged, otherwise a new
+     * catalog with the current contents of the data file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Catalog reload(DataReader reader) throws IOException {
+        requireNonNull(reader, "reader is required");
+        if (checksum != -1 && reader.checksum(DATA_FILE) == checksum)
+            return this;
+        return new Catalog(reader);
+    }
+
+    /**
+     * Applies a delta file to the catalog, creating a new version of it.
+     * <p>
+     * Each non-blank, non-comment line of a delta file is a change, which is
+     * either the addition of a new entry ({@code '+ ITEM_ID PRICE'}), the
+     * update of an existing entry ({@code '~ ITEM_ID PRICE'}) or the removal
+     * of an existing entry ({@code '- ITEM_ID'}). Entries are validated in the
+     * same way as in the catalog data file.
+     * <p>
+     * Applying a delta takes time proportional to the amount of changes, as
+     * the new catalog shares all of the unchanged entries with this one. The
+     * only exception is the first delta applied to a memory-mapped catalog,
+     * whose entries must first be copied onto the heap.
+     *
+     * @param reader    The data reader to use.
+     * @param deltaFile The relative path to the delta file.
+     * @return The new version of the catalog.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Catalog applyDelta(DataReader reader, String deltaFile) throws IOException {
+        requireNonNull(reader, "reader is required");
+        requireNonNull(deltaFile, "deltaFile is required");
+
+        ItemPriceTrie.Builder builder;
+        if (data instanceof ItemPriceTrie) {
+            builder = ((ItemPriceTrie) data).toBuilder();
+        } else {
+            builder = ItemPriceTrie.EMPTY.toBuilder();
+            data.forEach(builder::put);
+        }
+
+        try (LineNumberReader fileReader = reader.newLineNumberReader(deltaFile)) {
+            String line;
+            while ((line = fileReader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+                applyChange(fileReader, builder, line.charAt(0), line.substring(1).trim());
+            }
+        }
+
+        return new Catalog(builder.build());
+    }
+
+    /**
+     * Reads the barcodes of the items in the catalog from their data file
+     * ({@value #BARCODES_FILE}), creating a new version of the catalog in
+     * which items can be looked up by barcode.
+     * <p>
+     * Each non-blank, non-comment line of the barcodes data file is an entry
+     * made of a barcode followed by the name of the item it identifies. An item
+     * may have several barcodes, but every barcode must be a valid GTIN (8, 12,
+     * 13 or 14 digits, the last one being the GS1 check digit) identifying a
+     * single item of the catalog. The barcodes are not carried over to the
+     * catalogs reloaded from or created by applying deltas to the new catalog.
+     *
+     * @param reader The data reader to use.
+     * @return The new version of the catalog.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Catalog withBarcodes(DataReader reader) throws IOException {
+        requireNonNull(reader, "reader is required");
+        CatalogOrdinals ordinals = getOrdinals();
+        BarcodeIndex barcodes = new BarcodeIndex();
+
+        try (LineNumberReader fileReader = reader.newLineNumberReader(BARCODES_FILE)) {
+            String line;
+            while ((line = fileReader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+
+                int nameStart = 0;
+                while (nameStart < line.length() && !ItemId.isWhitespace(line.charAt(nameStart)))
+                    nameStart++;
+                if (nameStart == line.length()) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Entries must have both the barcode and the item id";
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+
+                long gtin = BarcodeIndex.parse(line.substring(0, nameStart));
+                if (gtin < 0) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Malformed barcode";
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+                ItemId itemId = new ItemId(line.substring(nameStart));
+                int ordinal = ordinals.ordinalOf(itemId);
+                if (ordinal < 0) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "No entry found for " + itemId;
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+                if (barcodes.put(gtin, ordinal) >= 0) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Duplicate barcode found for " + itemId;
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+            }
+        }
+
+        return new Catalog(this, barcodes);
+    }
+
     /**
      * Retrieves the IDs of all of the items in the catalog.
      *
@@ -62,6 +240,38 @@ public class Catalog {
         return data.keySet();
     }
 
+    /**
+     * Searches for the items whose names start with the query, tolerating a
+     * few typos in longer queries (one edit from 3 characters, two from 6).
+     * <p>
+     * The search index is built the first time the catalog is searched, and
+     * then shared by every search. Each search takes time proportional to the
+     * amount of names within reach of the query rather than to the size of the
+     * catalog.
+     *
+     * @param query      The partial name of the items, which is normalized in
+     *                   the same way as item IDs.
+     * @param maxResults The maximum amount of items to return.
+     * @return The matching items, the ones closest to the query first and
+     * then in alphabetical order, or an empty list for blank queries.
+     * @throws IllegalArgumentException If the maximum amount of items is
+     *                                  negative.
+     */
+    public List<ItemId> search(String query, int maxResults) {
+        requireNonNull(query, "query is required");
+        if (maxResults < 0)
+            throw new IllegalArgumentException("maxResults must not be negative");
+        if (maxResults == 0 || ItemId.isBlank(query))
+            return Collections.emptyList();
+
+        ItemSearchIndex searchIndex = this.searchIndex;
+        if (searchIndex == null) {
+            searchIndex = new ItemSearchIndex(getOrdinals());
+            this.searchIndex = searchIndex;
+        }
+        return searchIndex.search(new ItemId(query), maxResults);
+    }
+
     /**
      * Retrieves the price for the specified item, if it's available in the
      * catalog.
@@ -74,13 +284,112 @@ public class Catalog {
         return data.get(itemId);
     }
 
+    /**
+     * Retrieves the price for the specified item in pence, looking it up
+     * directly in the catalog's entries without allocating any objects.
+     *
+     * @param itemId The ID of the item to price.
+     * @return The price of the item in pence, if it exists in the catalog,
+     * otherwise {@code -1}.
+     */
+    long getPriceInPenceFor(ItemId itemId) {
+        return data.getInPence(itemId);
+    }
+
+    /**
+     * Retrieves the price of the item with a given ordinal in pence (see
+     * {@link #getOrdinals()}), without allocating any objects once the
+     * catalog's ordinals have been built.
+     * <p>
+     * The prices of all of the items are copied into a table indexed by their
+     * ordinals the first time this is called, so it is meant for the columnar
+     * consumers of the ordinals rather than for pricing single baskets (see
+     * {@link #getPriceInPenceFor(ItemId)}).
+     *
+     * @param ordinal The ordinal of the item to price.
+     * @return The price of the item in pence.
+     * @throws IndexOutOfBoundsException If no item has the given ordinal.
+     */
+    long getPriceInPenceAt(int ordinal) {
+        long[] pricesInPence = this.pricesInPence;
+        if (pricesInPence == null)
+            pricesInPence = buildPricesInPence();
+        return pricesInPence[ordinal];
+    }
+
+    /**
+     * Retrieves the ID of the item with a given barcode, without allocating
+     * any objects.
+     *
+     * @param gtin The numeric value of the barcode.
+     * @return The ID of the item, or {@code null} if no item in the catalog
+     * has the barcode.
+     */
+    ItemId getItemByBarcode(long gtin) {
+        if (barcodes == null)
+            return null;
+        int ordinal = barcodes.ordinalOf(gtin);
+        return ordinal < 0 ? null : ordinals.itemAt(ordinal);
+    }
+
+    /**
+     * Retrieves the dense numbering of the items in the catalog, which is
+     * built (once, even if several threads request it at the same time) the
+     * first time it is requested.
+     *
+     * @return The ordinals of the items in the catalog.
+     */
+    CatalogOrdinals getOrdinals() {
+        CatalogOrdinals ordinals = this.ordinals;
+        if (ordinals == null) {
+            synchronized (this) {
+                ordinals = this.ordinals;
+                if (ordinals == null) {
+                    ordinals = new CatalogOrdinals(getAllItems());
+                    this.ordinals = ordinals;
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    private synchronized long[] buildPricesInPence() {
+        long[] pricesInPence = this.pricesInPence;
+        if (pricesInPence == null) {
+            CatalogOrdinals ordinals = getOrdinals();
+            pricesInPence = new long[ordinals.size()];
+            for (int i = 0; i < pricesInPence.length; i++) {
+                pricesInPence[i] = data.getInPence(ordinals.itemAt(i));
+            }
+            this.pricesInPence = pricesInPence;
+        }
+        return pricesInPence;
+    }
+
+    /**
+     * Writes the contents of the catalog as a binary price table, which can be
+     * loaded back through {@link #Catalog(Path)}.
+     *
+     * @param tableFile The path of the price table to write.
+     * @throws IOException              If an I/O error occurs.
+     * @throws IllegalArgumentException If the catalog cannot be represented
+     *                                  as a price table.
+     */
+    public void writeTable(Path tableFile) throws IOException {
+        requireNonNull(tableFile, "tableFile is required");
+        OffHeapItemMap table = data instanceof OffHeapItemMap
+                ? (OffHeapItemMap) data
+                : OffHeapItemMap.build(data);
+        table.writeTo(tableFile);
+    }
+
     @Override
     public String toString() {
         return data.toString();
     }
 
-    private Map<ItemId, BigDecimal> parseDataFile(LineNumberReader reader) throws IOException {
-        Map<ItemId, BigDecimal> data = new HashMap<>();
+    private ItemPriceTrie parseDataFile(LineNumberReader reader) throws IOException {
+        ItemPriceTrie.Builder data = ItemPriceTrie.EMPTY.toBuilder();
 
         String line;
         while ((line = reader.readLine()) != null) {
@@ -88,33 +397,93 @@ public class Catalog {
             if (line.isEmpty() || line.charAt(0) == '#')
                 continue;
 
-            Matcher matcher = LINE_FORMAT.matcher(line);
-            if (!matcher.matches()) {
+            Map.Entry<ItemId, BigDecimal> entry = parseEntry(reader, line);
+            if (data.containsKey(entry.getKey())) {
                 int lineNumber = reader.getLineNumber();
-                String message = "Entries must have both the item id and the price";
+                String message = "Duplicate entry found for " + entry.getKey();
                 throw new CorruptDataFileException(lineNumber, message);
             }
+            data.put(entry.getKey(), entry.getValue());
+        }
 
-            try {
-                // Ensures proper format and scale of the price
-                BigDecimal price = new BigDecimal(matcher.group("price"))
-                        .setScale(2, RoundingMode.UNNECESSARY);
+        return data.build();
+    }
 
-                ItemId itemId = new ItemId(matcher.group("id"));
-                if (data.containsKey(itemId)) {
+    private static void applyChange(LineNumberReader reader,
+                                    ItemPriceTrie.Builder data,
+                                    char operation,
+                                    String change
+    ) throws CorruptDataFileException {
+        switch (operation) {
+            case '+': {
+                Map.Entry<ItemId, BigDecimal> entry = parseEntry(reader, change);
+                if (data.containsKey(entry.getKey())) {
                     int lineNumber = reader.getLineNumber();
-                    String message = "Duplicate entry found for " + itemId;
+                    String message = "Duplicate entry found for " + entry.getKey();
                     throw new CorruptDataFileException(lineNumber, message);
                 }
-
-                data.put(itemId, price);
-            } catch (NumberFormatException | ArithmeticException cause) {
+                data.put(entry.getKey(), entry.getValue());
+                break;
+            }
+            case '~': {
+                Map.Entry<ItemId, BigDecimal> entry = parseEntry(reader, change);
+                checkExists(reader, data, entry.getKey());
+                data.put(entry.getKey(), entry.getValue());
+                break;
+            }
+            case '-': {
+                if (change.isEmpty()) {
+                    int lineNumber = reader.getLineNumber();
+                    String message = "Removals must have the item id";
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+                ItemId itemId = new ItemId(change);
+                checkExists(reader, data, itemId);
+                data.remove(itemId);
+                break;
+            }
+            default: {
                 int lineNumber = reader.getLineNumber();
-                String message = "Malformed price";
-                throw new CorruptDataFileException(lineNumber, message, cause);
+                String message = "Changes must start with '+', '~' or '-'";
+                throw new CorruptDataFileException(lineNumber, message);
             }
         }
+    }
+
+    private static void checkExists(LineNumberReader reader,
+                                    ItemPriceTrie.Builder data,
+                                    ItemId itemId
+    ) throws CorruptDataFileException {
+        if (!data.containsKey(itemId)) {
+            int lineNumber = reader.getLineNumber();
+            String message = "No entry found for " + itemId;
+            throw new CorruptDataFileException(lineNumber, message);
+        }
+    }
 
-        return data;
+    private static Map.Entry<ItemId, BigDecimal> parseEntry(LineNumberReader reader,
+                                                            String entry
+    ) throws CorruptDataFileException {
+        // The price is the last word of the entry, everything before it is the id
+        int priceStart = entry.length();
+        while (priceStart > 0 && !ItemId.isWhitespace(entry.charAt(priceStart - 1)))
+            priceStart--;
+        if (priceStart == 0) {
+            int lineNumber = reader.getLineNumber();
+            String message = "Entries must have both the item id and the price";
+            throw new CorruptDataFileException(lineNumber, message);
+        }
+
+        try {
+            // Ensures proper format and scale of the price
+            BigDecimal price = new BigDecimal(entry.substring(priceStart))
+                    .setScale(2, RoundingMode.UNNECESSARY);
+            ItemId itemId = new ItemId(entry.substring(0, priceStart));
+            return new SimpleImmutableEntry<>(itemId, price);
+        } catch (NumberFormatException | ArithmeticException cause) {
+            int lineNumber = reader.getLineNumber();
+            String message = "Malformed price";
+            throw new CorruptDataFileException(lineNumber, message, cause);
+        }
     }
 }
@@ -0,0 +1,79 @@
+package dev.vacant.pricebasket;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Dense numbering of the items in a catalog.
+ * <p>
+ * Items are numbered from {@code 0} in the order of their names, so the same
+ * set of items always yields the same ordinals regardless of how the catalog
+ * was loaded. The version stamp identifies the numbering itself: catalogs with
+ * the same items (even if priced differently) share the same stamp.
+ */
+class CatalogOrdinals {
+    private static final Comparator<ItemId> ORDER = Comparator.comparing(ItemId::toString);
+
+    private final ItemId[] items;
+    private final long stamp;
+
+    CatalogOrdinals(Set<ItemId> itemIds) {
+        this.items = itemIds.toArray(new ItemId[0]);
+        Arrays.sort(items, ORDER);
+
+        // Two independent checksums make for a 64-bit stamp
+        CRC32 forward = new CRC32();
+        CRC32 backward = new CRC32();
+        for (int i = 0; i < items.length; i++) {
+            forward.update(items[i].toString().getBytes(UTF_8));
+            forward.update('\n');
+            backward.update(items[items.length - 1 - i].toString().getBytes(UTF_8));
+            backward.update('\n');
+        }
+        this.stamp = forward.getValue() << 32 | backward.getValue();
+    }
+
+    /**
+     * Retrieves the amount of items numbered.
+     *
+     * @return The amount of items.
+     */
+    int size() {
+        return items.length;
+    }
+
+    /**
+     * Retrieves the version stamp of the numbering.
+     *
+     * @return The version stamp.
+     */
+    long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * Retrieves the ordinal of an item.
+     *
+     * @param itemId The ID of the item.
+     * @return The ordinal of the item, or {@code -1} if it is not numbered.
+     */
+    int ordinalOf(ItemId itemId) {
+        int index = Arrays.binarySearch(items, itemId, ORDER);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * Retrieves the item with a given ordinal.
+     *
+     * @param ordinal The ordinal of the item.
+     * @return The ID of the item.
+     * @throws IndexOutOfBoundsException If no item has the given ordinal.
+     */
+    ItemId itemAt(int ordinal) {
+        return items[ordinal];
+    }
+}
@@ -0,0 +1,380 @@
+package dev.vacant.pricebasket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Book of single-use coupon codes, all granting the same special offer.
+ * <p>
+ * Codes are case-insensitive and made of up to {@value #MAX_CODE_LENGTH}
+ * letters and digits, which lets every code be packed into a single
+ * {@code long}. The book keeps the packed codes in one sorted array (looked up
+ * through binary search) and whether each code was redeemed in a bit set, so
+ * tens of millions of codes take a few hundred megabytes at most and looking
+ * up a code never allocates besides the coupon returned.
+ * <p>
+ * Coupons are added to baskets ({@link Basket#addCoupon(Coupon)}) and their
+ * offers are evaluated along with the offers of the basket's package, but they
+ * are only used up once redeemed ({@link #redeem(Coupon)}), which happens at
+ * most once per code even when the same code is redeemed from several threads
+ * at the same time. Redemptions can be recorded in a memory-mapped log, so
+ * that redeemed codes stay redeemed across restarts.
+ */
+public class CouponBook implements Closeable {
+    /**
+     * The maximum length of a coupon code.
+     */
+    public static final int MAX_CODE_LENGTH = 12;
+
+    private static final int MAGIC = 0x50424350; // "PBCP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final OfferRule offer;
+    private final long[] codes;
+    private final AtomicLongArray redeemed;
+    private final AtomicInteger redeemedCount;
+    private final AtomicInteger logSlots;
+    private final FileChannel channel;
+    private final MappedByteBuffer log;
+
+    /**
+     * Creates a new book with the codes of a data file, keeping the
+     * redemptions in memory only.
+     * <p>
+     * Each non-blank, non-comment line of the codes data file is a coupon
+     * code. Every code must be unique (regardless of case).
+     *
+     * @param offer     The special offer granted by the coupons.
+     * @param reader    The data reader used for reading the codes data file.
+     * @param codesFile The relative path to the codes data file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public CouponBook(OfferRule offer, DataReader reader, String codesFile) throws IOException {
+        this.offer = requireNonNull(offer, "offer is required");
+        this.codes = readCodes(requireNonNull(reader, "reader is required"), requireNonNull(codesFile, "codesFile is required"));
+        this.redeemed = new AtomicLongArray((codes.length + 63) / 64);
+        this.redeemedCount = new AtomicInteger();
+        this.logSlots = new AtomicInteger();
+        this.channel = null;
+        this.log = null;
+    }
+
+    /**
+     * Creates a new book with the codes of a data file, recording the
+     * redemptions in a log file. The codes redeemed in the log (if it exists)
+     * are redeemed in the new book.
+     *
+     * @param offer         The special offer granted by the coupons.
+     * @param reader        The data reader used for reading the codes data
+     *                      file.
+     * @param codesFile     The relative path to the codes data file.
+     * @param redemptionLog The path of the redemption log.
+     * @throws IOException If an I/O error occurs or the redemption log was
+     *                     written for different codes.
+     */
+    public CouponBook(OfferRule offer, DataReader reader, String codesFile, Path redemptionLog) throws IOException {
+        this.offer = requireNonNull(offer, "offer is required");
+        this.codes = readCodes(requireNonNull(reader, "reader is required"), requireNonNull(codesFile, "codesFile is required"));
+        this.redeemed = new AtomicLongArray((codes.length + 63) / 64);
+        this.redeemedCount = new AtomicInteger();
+        this.logSlots = new AtomicInteger();
+        requireNonNull(redemptionLog, "redemptionLog is required");
+
+        // Every code is redeemed at most once, so the log never runs out of slots
+        long stamp = stampOf(codes);
+        this.channel = FileChannel.open(redemptionLog, CREATE, READ, WRITE);
+        try {
+            long existingSize = channel.size();
+            this.log = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) codes.length * Integer.BYTES);
+            if (existingSize == 0) {
+                log.putInt(0, MAGIC);
+                log.putInt(4, VERSION);
+                log.putLong(8, stamp);
+                log.force();
+            } else if (log.getInt(0) != MAGIC || log.getInt(4) != VERSION || log.getLong(8) != stamp) {
+                throw new IOException(redemptionLog + " is not a redemption log for these codes");
+            }
+
+            // Slots are claimed concurrently, so a crash may leave holes behind,
+            // which are closed up by moving the later entries down. Entries are
+            // copied before their old slot is cleared, so a crash mid-way only
+            // leaves duplicates behind, which are dropped on the next open
+            int slots = 0;
+            for (int slot = 0; slot < codes.length; slot++) {
+                int offset = HEADER_SIZE + slot * Integer.BYTES;
+                int entry = log.getInt(offset);
+                if (entry == 0)
+                    continue;
+                int target = slots;
+                boolean kept = entry > 0 && entry <= codes.length && mark(entry - 1);
+                if (kept)
+                    log.putInt(HEADER_SIZE + slots++ * Integer.BYTES, entry);
+                if (!kept || target != slot)
+                    log.putInt(offset, 0);
+            }
+            log.force();
+            redeemedCount.set(slots);
+            logSlots.set(slots);
+        } catch (IOException | RuntimeException cause) {
+            channel.close();
+            throw cause;
+        }
+    }
+
+    /**
+     * Packs a coupon code into a single number, without allocating any
+     * objects.
+     *
+     * @param code The coupon code.
+     * @return The packed code, or {@code -1} if the code is malformed.
+     */
+    static long pack(CharSequence code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_CODE_LENGTH)
+            return -1;
+
+        // Base 37 with no zero digit, so that leading zeros are significant
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = 1 + c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = 11 + c - 'A';
+            } else if (c >= 'a' && c <= 'z') {
+                digit = 11 + c - 'a';
+            } else {
+                return -1;
+            }
+            packed = packed * 37 + digit;
+        }
+        return packed;
+    }
+
+    /**
+     * Retrieves the special offer granted by the coupons of this book.
+     *
+     * @return The special offer.
+     */
+    public OfferRule getOffer() {
+        return offer;
+    }
+
+    /**
+     * Retrieves the amount of codes in this book.
+     *
+     * @return The amount of codes.
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Retrieves the amount of codes redeemed so far.
+     *
+     * @return The amount of redeemed codes.
+     */
+    public int getRedeemedCount() {
+        return redeemedCount.get();
+    }
+
+    /**
+     * Looks up a coupon code that can still be redeemed.
+     *
+     * @param code The coupon code, in any case.
+     * @return The coupon with the given code, or {@code null} if the code
+     * doesn't exist in this book or was already redeemed.
+     */
+    public Coupon lookup(String code) {
+        requireNonNull(code, "code is required");
+        long packed = pack(code.trim());
+        int index = packed < 0 ? -1 : Arrays.binarySearch(codes, packed);
+        if (index < 0 || isRedeemed(index))
+            return null;
+        return new Coupon(this, index, code.trim().toUpperCase());
+    }
+
+    /**
+     * Redeems a coupon, using it up. Of all the threads redeeming the same
+     * coupon code, only one succeeds.
+     *
+     * @param coupon The coupon to redeem.
+     * @return {@code true} if the coupon was redeemed, {@code false} if it
+     * had already been redeemed.
+     * @throws IllegalArgumentException If the coupon is not from this book.
+     */
+    public boolean redeem(Coupon coupon) {
+        requireNonNull(coupon, "coupon is required");
+        if (coupon.book != this)
+            throw new IllegalArgumentException("Coupon " + coupon + " is not from this book");
+        if (!mark(coupon.index))
+            return false;
+
+        redeemedCount.incrementAndGet();
+        if (log != null)
+            log.putInt(HEADER_SIZE + logSlots.getAndIncrement() * Integer.BYTES, coupon.index + 1);
+        return true;
+    }
+
+    /**
+     * Syncs the redemptions made so far to disk, if they are being logged.
+     */
+    public void sync() {
+        if (log != null)
+            log.force();
+    }
+
+    /**
+     * Syncs the redemptions made so far and closes the redemption log, if
+     * any.
+     *
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            log.force();
+            channel.close();
+        }
+    }
+
+    private boolean isRedeemed(int index) {
+        return (redeemed.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private boolean mark(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        long bits;
+        do {
+            bits = redeemed.get(word);
+            if ((bits & bit) != 0)
+                return false;
+        } while (!redeemed.compareAndSet(word, bits, bits | bit));
+        return true;
+    }
+
+    private static long[] readCodes(DataReader reader, String codesFile) throws IOException {
+        long[] codes = new long[1024];
+        int count = 0;
+        try (LineNumberReader fileReader = reader.newLineNumberReader(codesFile)) {
+            String line;
+            while ((line = fileReader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+
+                long packed = pack(line);
+                if (packed < 0) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Malformed coupon code";
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+                if (count == codes.length)
+                    codes = Arrays.copyOf(codes, count * 2);
+                codes[count++] = packed;
+            }
+        }
+
+        codes = Arrays.copyOf(codes, count);
+        Arrays.sort(codes);
+        for (int i = 1; i < count; i++) {
+            if (codes[i] == codes[i - 1])
+                throw duplicateCode(reader, codesFile, codes[i]);
+        }
+        return codes;
+    }
+
+    /**
+     * Reads the codes data file again to report where a duplicate code is,
+     * as the line numbers are not kept while sorting.
+     */
+    private static CorruptDataFileException duplicateCode(DataReader reader,
+                                                          String codesFile,
+                                                          long packed
+    ) throws IOException {
+        boolean found = false;
+        try (LineNumberReader fileReader = reader.newLineNumberReader(codesFile)) {
+            String line;
+            while ((line = fileReader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#' || pack(line) != packed)
+                    continue;
+                if (found) {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Duplicate coupon code " + line.toUpperCase();
+                    return new CorruptDataFileException(lineNumber, message);
+                }
+                found = true;
+            }
+        }
+        throw new IOException(codesFile + " changed while being read");
+    }
+
+    private static long stampOf(long[] codes) {
+        long stamp = codes.length;
+        for (long code : codes) {
+            stamp = (stamp ^ code) * 0x9e3779b97f4a7c15L;
+        }
+        return stamp;
+    }
+
+    /**
+     * Coupon from a book, which can be added to baskets until it is
+     * redeemed.
+     */
+    public static class Coupon {
+        private final CouponBook book;
+        private final int index;
+        private final String code;
+
+        private Coupon(CouponBook book, int index, String code) {
+            this.book = book;
+            this.index = index;
+            this.code = code;
+        }
+
+        /**
+         * Retrieves the code of the coupon, in uppercase.
+         *
+         * @return The code of the coupon.
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * Retrieves the special offer granted by the coupon.
+         *
+         * @return The special offer.
+         */
+        public OfferRule getOffer() {
+            return book.offer;
+        }
+
+        /**
+         * Checks whether this coupon has the same code (from the same book) as
+         * another.
+         */
+        boolean isSameAs(Coupon other) {
+            return book == other.book && index == other.index;
+        }
+
+        @Override
+        public String toString() {
+            return code;
+        }
+    }
+}
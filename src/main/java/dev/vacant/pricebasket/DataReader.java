@@ -1,10 +1,13 @@
 package dev.vacant.pricebasket;
 
 import java.io.*;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
@@ -12,13 +15,20 @@ import static java.util.Objects.requireNonNull;
 /**
  * Utility for reading data files.
  * <p>
- * Default data files are packaged with the application, however the user can
- * override this by providing its own data files in the file system (relative to
- * the working directory). This class ensures a proper handling of the data file
- * location discovery.
+ * Data files are looked up in a list of {@link DataSource sources}, in order of
+ * precedence. By default, the data files packaged with the application can be
+ * overridden by the user by providing their own data files in the file system
+ * (relative to the working directory), without the packaged ones ever being
+ * written to disk.
+ * <p>
+ * Data files may be stored gzip compressed, which is detected from their
+ * contents, and a checksum of their (uncompressed) contents is kept so that
+ * unchanged data files can be detected without parsing them again.
  */
 public class DataReader {
-    private final FileSystem fileSystem;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final List<DataSource> sources;
 
     /**
      * Creates a new data file reader backed by the file system provided.
@@ -26,7 +36,17 @@ public class DataReader {
      * @param fileSystem The file system to use for locating data files.
      */
     public DataReader(FileSystem fileSystem) {
-        this.fileSystem = requireNonNull(fileSystem, "fileSystem is required");
+        this(DataSource.of(requireNonNull(fileSystem, "fileSystem is required")), defaultSource());
+    }
+
+    /**
+     * Creates a new data file reader that locates data files relative to the
+     * directory provided, instead of the working directory.
+     *
+     * @param directory The directory to use for locating data files.
+     */
+    public DataReader(Path directory) {
+        this(DataSource.of(requireNonNull(directory, "directory is required")), defaultSource());
     }
 
     /**
@@ -36,39 +56,198 @@ public class DataReader {
         this(FileSystems.getDefault());
     }
 
+    /**
+     * Creates a new data file reader that looks up data files in the given
+     * sources, the first one having the most precedence.
+     *
+     * @param sources The sources of data files.
+     */
+    public DataReader(DataSource... sources) {
+        List<DataSource> list = new ArrayList<>(Arrays.asList(sources));
+        list.forEach(it -> requireNonNull(it, "sources must not be null"));
+        this.sources = Collections.unmodifiableList(list);
+    }
+
     /**
      * Creates a new reader (with line number support) for a data file.
      * <p>
      * This method will return a reader for the data file with the most
-     * precedence that currently exists. This means that if a data file exists
-     * in the backing file system then that one will be returned instead of the
-     * default one packaged with the application. When a file doesn't exist in
-     * the backing file system it will be created with the default contents.
+     * precedence that currently exists. The reader returned is a {@link
+     * DataFileReader}, keeping track of the checksum of the data file.
      *
      * @param filePath The relative path to the data file
      * @return The line number reader for the data file.
-     * @throws IOException If an I/O error occurs.
+     * @throws IOException If an I/O error occurs or the data file doesn't
+     *                     exist in any of the sources.
      */
     public LineNumberReader newLineNumberReader(String filePath) throws IOException {
-        InputStream stream = newInputStream(filePath);
-        return new LineNumberReader(new InputStreamReader(stream, UTF_8));
+        return new DataFileReader(newInputStream(filePath));
     }
 
-    private InputStream newInputStream(String filePath) throws IOException {
-        Path path = fileSystem.getPath(filePath);
-        if (!Files.exists(path)) {
-            try (InputStream in = getClass().getClassLoader().getResourceAsStream(filePath);
-                 OutputStream out = Files.newOutputStream(path)) {
-                // Only happens if the paths/resources are misconfigured
-                assert in != null;
-
-                byte[] buffer = new byte[32 * 1024];
-                int count;
-                while ((count = in.read(buffer)) >= 0) {
-                    out.write(buffer, 0, count);
-                }
+    /**
+     * Calculates the checksum of a data file without parsing it, for detecting
+     * whether it changed since it was last read (see {@link
+     * DataFileReader#getChecksum()}).
+     *
+     * @param filePath The relative path to the data file
+     * @return The checksum of the uncompressed contents of the data file.
+     * @throws IOException If an I/O error occurs or the data file doesn't
+     *                     exist in any of the sources.
+     */
+    public long checksum(String filePath) throws IOException {
+        try (ChecksumInputStream stream = newInputStream(filePath)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (stream.read(buffer) >= 0) {
+                // Only the checksum is needed
             }
+            return stream.checksum.getValue();
+        }
+    }
+
+    /**
+     * Retrieves the checksum of a data file fully read through a reader
+     * returned by {@link #newLineNumberReader(String)}.
+     *
+     * @param reader The reader of the data file.
+     * @return The checksum, or {@code -1} if the reader doesn't keep track of
+     * it.
+     */
+    static long checksumOf(LineNumberReader reader) {
+        return reader instanceof DataFileReader ? ((DataFileReader) reader).getChecksum() : -1;
+    }
+
+    /**
+     * Retrieves the amount of (uncompressed) bytes read through a reader
+     * returned by {@link #newLineNumberReader(String)}.
+     *
+     * @param reader The reader of the data file.
+     * @return The amount of bytes read, or {@code -1} if the reader doesn't
+     * keep track of it.
+     */
+    static long byteCountOf(LineNumberReader reader) {
+        return reader instanceof DataFileReader ? ((DataFileReader) reader).getByteCount() : -1;
+    }
+
+    static InputStream openIfExists(Path path) throws IOException {
+        try {
+            return Files.newInputStream(path);
+        } catch (NoSuchFileException ignored) {
+            return null;
+        }
+    }
+
+    private static DataSource defaultSource() {
+        return DataSource.ofResources(DataReader.class.getClassLoader());
+    }
+
+    private ChecksumInputStream newInputStream(String filePath) throws IOException {
+        requireNonNull(filePath, "filePath is required");
+        for (DataSource source : sources) {
+            InputStream stream = source.open(filePath);
+            if (stream != null)
+                return new ChecksumInputStream(decompress(filePath, stream));
+        }
+        throw new NoSuchFileException(filePath, null, "Data file not found in any source");
+    }
+
+    private static InputStream decompress(String filePath, InputStream stream) throws IOException {
+        InputStream buffered = new BufferedInputStream(stream, BUFFER_SIZE);
+        try {
+            buffered.mark(4);
+            int b0 = buffered.read();
+            int b1 = buffered.read();
+            int b2 = buffered.read();
+            int b3 = buffered.read();
+            buffered.reset();
+
+            if (b0 == 0x1f && b1 == 0x8b)
+                return new GZIPInputStream(buffered, BUFFER_SIZE);
+            if (b0 == 0x28 && b1 == 0xb5 && b2 == 0x2f && b3 == 0xfd)
+                throw new IOException("Zstandard compressed data files are not supported: " + filePath);
+            return buffered;
+        } catch (IOException | RuntimeException failure) {
+            buffered.close();
+            throw failure;
+        }
+    }
+
+    /**
+     * Line number reader for a data file, which keeps track of the checksum
+     * and size of the (uncompressed) contents read so far.
+     */
+    public static class DataFileReader extends LineNumberReader {
+        private final ChecksumInputStream stream;
+
+        private DataFileReader(ChecksumInputStream stream) {
+            super(new InputStreamReader(stream, UTF_8), BUFFER_SIZE);
+            this.stream = stream;
+        }
+
+        /**
+         * Retrieves the CRC-32 checksum of the contents read so far, which is
+         * the checksum of the whole data file once it has been fully read.
+         *
+         * @return The checksum of the contents read.
+         */
+        public long getChecksum() {
+            return stream.checksum.getValue();
+        }
+
+        /**
+         * Retrieves the amount of (uncompressed) bytes read so far.
+         *
+         * @return The amount of bytes read.
+         */
+        public long getByteCount() {
+            return stream.count;
+        }
+    }
+
+    private static class ChecksumInputStream extends FilterInputStream {
+        private final CRC32 checksum = new CRC32();
+        private long count;
+
+        ChecksumInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                checksum.update(b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                checksum.update(b, off, read);
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still be accounted for in the checksum
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+                if (read < 0)
+                    break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
         }
-        return Files.newInputStream(path);
     }
 }
@@ -0,0 +1,62 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Source of data files for a {@link DataReader}.
+ * <p>
+ * Sources only provide the raw contents of the data files, the data reader
+ * takes care of buffering, decompressing and decoding them.
+ */
+@FunctionalInterface
+public interface DataSource {
+    /**
+     * Opens a data file, if it exists in this source.
+     *
+     * @param filePath The relative path to the data file.
+     * @return The stream of the contents of the data file, or {@code null} if
+     * the data file doesn't exist in this source.
+     * @throws IOException If an I/O error occurs.
+     */
+    InputStream open(String filePath) throws IOException;
+
+    /**
+     * Creates a source for data files relative to the working directory of a
+     * file system.
+     *
+     * @param fileSystem The file system to use for locating data files.
+     * @return The new data source.
+     */
+    static DataSource of(FileSystem fileSystem) {
+        requireNonNull(fileSystem, "fileSystem is required");
+        return filePath -> DataReader.openIfExists(fileSystem.getPath(filePath));
+    }
+
+    /**
+     * Creates a source for data files relative to a directory.
+     *
+     * @param directory The directory to use for locating data files.
+     * @return The new data source.
+     */
+    static DataSource of(Path directory) {
+        requireNonNull(directory, "directory is required");
+        return filePath -> DataReader.openIfExists(directory.resolve(filePath));
+    }
+
+    /**
+     * Creates a source for the data files packaged as resources with the
+     * application.
+     *
+     * @param classLoader The class loader to use for locating data files.
+     * @return The new data source.
+     */
+    static DataSource ofResources(ClassLoader classLoader) {
+        requireNonNull(classLoader, "classLoader is required");
+        return classLoader::getResourceAsStream;
+    }
+}
@@ -17,30 +17,35 @@ import static dev.vacant.pricebasket.FormattingUtil.formatMoney;
  * discount can be either a percentage discount ({@code VALUE%}) or just
  * the total value to discount ({@code VALUE}).
  * <p>
+ * The rule can optionally be suffixed with {@code 'max LIMIT'}, limiting the
+ * discount to at most {@code LIMIT} units of the item per basket.
+ * <p>
  * This rule will not accept any negative values (as all values should be
- * specified in their absolute value) or values that are higher than the total
- * price of the item (e.g. a percentage of over 100%).
+ * specified in their absolute value), values that are higher than the total
+ * price of the item (e.g. a percentage of over 100%) or a limit of {@code 0}.
  */
 public class DiscountOffer implements OfferRule {
     private static final BigDecimal ONE_HUNDRED = new BigDecimal(100);
-    private static final Pattern RULE_FORMAT = Pattern.compile(
-            "(?<id>.*?)\\s+(?<discount>\\d+%|\\d+\\.\\d+)"
-    );
 
     private final Catalog catalog;
     private final ItemId itemId;
     private final BigDecimal discount;
     private final boolean directDiscount;
+    private final long discountInHundredths;
+    private final int maxUnits;
 
     private DiscountOffer(Catalog catalog,
                           ItemId itemId,
                           BigDecimal discount,
-                          boolean directDiscount
+                          boolean directDiscount,
+                          int maxUnits
     ) {
         this.catalog = catalog;
         this.itemId = itemId;
         this.discount = discount;
         this.directDiscount = directDiscount;
+        this.discountInHundredths = discount.movePointRight(2).longValueExact();
+        this.maxUnits = maxUnits;
     }
 
     @Override
@@ -54,24 +59,93 @@ public class DiscountOffer implements OfferRule {
         if (!directDiscount) {
             value = catalog.getPriceFor(itemId).multiply(discount);
         }
-        return value.multiply(new BigDecimal(basket.getAmountOf(itemId)))
+        return value.multiply(new BigDecimal(countUnits(basket)))
                 .setScale(2, RoundingMode.HALF_EVEN);
     }
 
+    @Override
+    public long calculateDiscountInPence(Basket basket) {
+        return calculateDiscountInPence(basket.getAmountOf(itemId));
+    }
+
+    /**
+     * Calculates the discount for a basket with a given amount of units of the
+     * item, without needing such a basket.
+     *
+     * @param units The amount of units of the item.
+     * @return The discount, in pence.
+     */
+    long calculateDiscountInPence(int units) {
+        long amount = Math.min(units, maxUnits);
+        if (directDiscount)
+            return discountInHundredths * amount;
+
+        // Percentages are kept in hundredths, so the discount must be rounded
+        // back into pence the same way calculateDiscount does
+        long priceInPence = catalog.getPriceInPenceFor(itemId);
+        return PricingContext.divideHalfEven(priceInPence * amount * discountInHundredths, 100);
+    }
+
+    @Override
+    public void traceAllocation(Basket basket, PricingTrace trace) {
+        trace.allocate(itemId, countUnits(basket));
+    }
+
+    /**
+     * Retrieves the ID of the discounted item.
+     *
+     * @return The ID of the discounted item.
+     */
+    ItemId getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Calculates the discount on each unit of the item, without rounding.
+     *
+     * @return The discount per unit.
+     */
+    BigDecimal getUnitDiscount() {
+        return directDiscount ? discount : catalog.getPriceFor(itemId).multiply(discount);
+    }
+
+    /**
+     * Retrieves the maximum amount of units discounted per basket.
+     *
+     * @return The maximum amount of units, or {@link Integer#MAX_VALUE} if
+     * the offer has no limit.
+     */
+    int getMaxUnits() {
+        return maxUnits;
+    }
+
     @Override
     public String getDescription() {
+        String limit = maxUnits == Integer.MAX_VALUE ? "" : " (max " + maxUnits + ")";
         if (directDiscount) {
-            return formatItem(itemId) + " " + formatMoney(discount) + " off";
+            return formatItem(itemId) + " " + formatMoney(discount) + " off" + limit;
         } else {
             int percentage = discount.multiply(ONE_HUNDRED).intValue();
-            return formatItem(itemId) + " " + percentage + "% off";
+            return formatItem(itemId) + " " + percentage + "% off" + limit;
         }
     }
 
+    private int countUnits(Basket basket) {
+        return Math.min(basket.getAmountOf(itemId), maxUnits);
+    }
+
     public static class Parser implements OfferParser {
         @Override
         public DiscountOffer parseRule(Catalog catalog, String rule) {
-            Matcher matcher = RULE_FORMAT.matcher(rule.trim());
+            String trimmed = rule.trim();
+            // Cheap rejection of rules that can't end with a discount
+            if (trimmed.isEmpty())
+                return null;
+            char last = trimmed.charAt(trimmed.length() - 1);
+            if (last != '%' && (last < '0' || last > '9'))
+                return null;
+
+            Matcher matcher = Syntax.RULE_FORMAT.matcher(trimmed);
             if (!matcher.matches())
                 return null;
 
@@ -81,6 +155,10 @@ public class DiscountOffer implements OfferRule {
 
             String discount = matcher.group("discount");
             try {
+                int maxUnits = parseLimit(matcher.group("max"));
+                if (maxUnits == 0)
+                    return null;
+
                 if (discount.endsWith("%")) {
                     BigDecimal percentage = new BigDecimal(discount.replace("%", ""));
                     if (percentage.compareTo(ONE_HUNDRED) > 0)
@@ -88,17 +166,31 @@ public class DiscountOffer implements OfferRule {
 
                     percentage = percentage.setScale(2, RoundingMode.UNNECESSARY);
                     percentage = percentage.divide(ONE_HUNDRED, BigDecimal.ROUND_HALF_EVEN);
-                    return new DiscountOffer(catalog, itemId, percentage, false);
+                    return new DiscountOffer(catalog, itemId, percentage, false, maxUnits);
                 } else {
                     BigDecimal value = new BigDecimal(discount);
                     if (value.compareTo(catalog.getPriceFor(itemId)) > 0)
                         return null;
                     value = value.setScale(2, RoundingMode.UNNECESSARY);
-                    return new DiscountOffer(catalog, itemId, value, true);
+                    return new DiscountOffer(catalog, itemId, value, true, maxUnits);
                 }
             } catch (NumberFormatException | ArithmeticException ignored) {
                 return null;
             }
         }
+
+        private static int parseLimit(String limit) {
+            return limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit);
+        }
+    }
+
+    /**
+     * Holder for the syntax of the rule, so that its pattern is only compiled
+     * when a candidate rule is first parsed.
+     */
+    private static class Syntax {
+        static final Pattern RULE_FORMAT = Pattern.compile(
+                "(?<id>.*?)\\s+(?<discount>\\d+%|\\d+\\.\\d+)(?:\\s+(?i:max)\\s+(?<max>\\d+))?"
+        );
     }
 }
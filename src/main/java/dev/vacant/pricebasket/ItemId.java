@@ -1,8 +1,6 @@
 package dev.vacant.pricebasket;
 
-import java.util.Arrays;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Identifier for an item in our shop.
@@ -58,9 +56,50 @@ public class ItemId implements CharSequence {
         return name.subSequence(beginIndex, endIndex);
     }
 
+    /**
+     * Checks whether a character is whitespace for the purpose of separating
+     * the words of an item name (the same characters as {@code \s} in regular
+     * expressions).
+     *
+     * @param c The character to check.
+     * @return Whether the character is whitespace.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Checks whether a name is blank, that is, whether creating an item ID
+     * from it would fail.
+     *
+     * @param name The un-normalized name of the item.
+     * @return Whether the name is blank.
+     */
+    static boolean isBlank(String name) {
+        // Mirrors String.trim(), which normalization starts with
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > ' ')
+                return false;
+        }
+        return true;
+    }
+
     private static String normalize(String name) {
-        return Arrays.stream(name.trim().split("\\s+"))
-                .map(String::toUpperCase)
-                .collect(Collectors.joining(" "));
+        // Hand-rolled instead of split("\\s+"), which compiles a pattern per call
+        String trimmed = name.trim();
+        StringBuilder builder = new StringBuilder(trimmed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace)
+                    builder.append(' ');
+                builder.append(c);
+                pendingSpace = false;
+            }
+        }
+        return builder.toString().toUpperCase();
     }
 }
@@ -0,0 +1,26 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+
+/**
+ * Read-only map of item IDs to their prices, which backs a {@link Catalog}.
+ * <p>
+ * Besides the usual map operations, the prices can be looked up directly in
+ * pence, so that pricing baskets does not materialize a {@link BigDecimal}
+ * (or, for off-heap maps, an {@link ItemId}) for every line.
+ */
+abstract class ItemPriceMap extends AbstractMap<ItemId, BigDecimal> {
+
+    /**
+     * Retrieves the price for the specified item in pence, without allocating
+     * any objects.
+     *
+     * @param itemId The ID of the item to price.
+     * @return The price of the item in pence, if it exists in the map,
+     * otherwise {@code -1}.
+     * @throws ArithmeticException If the price cannot be represented in
+     *                             pence.
+     */
+    abstract long getInPence(ItemId itemId);
+}
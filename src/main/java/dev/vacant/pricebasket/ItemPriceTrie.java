@@ -0,0 +1,435 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Immutable map of item IDs to their prices, implemented as a persistent hash
+ * array mapped trie.
+ * <p>
+ * Every node of the trie branches on 5 bits of the (spread) hash of the item
+ * ID, only storing the children that actually exist. Updating a trie copies
+ * the nodes along the path of the changed entry and shares every other node
+ * with the previous version, so each change takes time proportional to the
+ * depth of the trie (at most 7 levels) regardless of the amount of items.
+ * <p>
+ * Bulk changes go through a {@link Builder}, which copies each node at most
+ * once and then updates it in place until the new version is built.
+ * <p>
+ * Each leaf also keeps the price in pence, so that it can be looked up
+ * ({@link #getInPence(ItemId)}) without allocating any objects.
+ */
+class ItemPriceTrie extends ItemPriceMap {
+    static final ItemPriceTrie EMPTY = new ItemPriceTrie(null, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+    // Price in pence of the leaves whose price cannot be represented in pence
+    private static final long OUT_OF_RANGE = Long.MIN_VALUE;
+
+    private final Node root;
+    private final int size;
+
+    private ItemPriceTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Creates a builder for a new version of this trie.
+     *
+     * @return The builder, starting with all of the entries of this trie.
+     */
+    Builder toBuilder() {
+        return new Builder(root, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public BigDecimal get(Object key) {
+        if (!(key instanceof ItemId) || root == null)
+            return null;
+        Leaf leaf = root.find(hash(key), key, 0);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    long getInPence(ItemId itemId) {
+        if (itemId == null || root == null)
+            return -1;
+        Leaf leaf = root.find(hash(itemId), itemId, 0);
+        if (leaf == null)
+            return -1;
+        if (leaf.valueInPence == OUT_OF_RANGE)
+            throw new ArithmeticException("Price out of range for " + itemId);
+        return leaf.valueInPence;
+    }
+
+    @Override
+    public Set<Entry<ItemId, BigDecimal>> entrySet() {
+        return new AbstractSet<Entry<ItemId, BigDecimal>>() {
+            @Override
+            public Iterator<Entry<ItemId, BigDecimal>> iterator() {
+                return new LeafIterator(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Accumulator of changes to a trie. Builders are not thread-safe and must
+     * not be used after {@link #build()}.
+     */
+    static class Builder {
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * Checks whether an item is part of the trie being built.
+         *
+         * @param itemId The ID of the item.
+         * @return Whether the item is part of the trie.
+         */
+        boolean containsKey(ItemId itemId) {
+            return root != null && root.find(hash(itemId), itemId, 0) != null;
+        }
+
+        /**
+         * Adds or replaces the price of an item.
+         *
+         * @param itemId The ID of the item.
+         * @param price  The price of the item.
+         */
+        void put(ItemId itemId, BigDecimal price) {
+            checkOwner();
+            Leaf leaf = new Leaf(hash(itemId), itemId, price);
+            if (root == null) {
+                root = Node.of(owner, leaf, 0);
+                size++;
+            } else {
+                root = root.put(owner, leaf, 0, this);
+            }
+        }
+
+        /**
+         * Removes an item, if it is part of the trie.
+         *
+         * @param itemId The ID of the item.
+         */
+        void remove(ItemId itemId) {
+            checkOwner();
+            if (root == null)
+                return;
+            Object result = root.remove(owner, hash(itemId), itemId, 0, this);
+            if (result instanceof Leaf) {
+                root = Node.of(owner, (Leaf) result, 0);
+            } else {
+                root = (Node) result;
+            }
+        }
+
+        /**
+         * Builds the new version of the trie.
+         *
+         * @return The new trie.
+         */
+        ItemPriceTrie build() {
+            checkOwner();
+            // Nodes edited so far must never be modified again
+            owner = null;
+            return size == 0 ? EMPTY : new ItemPriceTrie(root, size);
+        }
+
+        private void checkOwner() {
+            if (owner == null)
+                throw new IllegalStateException("Trie already built");
+        }
+    }
+
+    private static class Leaf {
+        final int hash;
+        final ItemId key;
+        final BigDecimal value;
+        final long valueInPence;
+
+        Leaf(int hash, ItemId key, BigDecimal value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.valueInPence = toPence(value);
+        }
+
+        private static long toPence(BigDecimal value) {
+            try {
+                return value.movePointRight(2).longValueExact();
+            } catch (ArithmeticException cause) {
+                return OUT_OF_RANGE;
+            }
+        }
+    }
+
+    /**
+     * Node of the trie, whose children are either leaves or other nodes. At
+     * the deepest level, where no bits of the hash are left, leaves with the
+     * same hash are simply kept in a list.
+     */
+    private static class Node {
+        final Object owner;
+        int bitmap;
+        Object[] children;
+
+        Node(Object owner, int bitmap, Object[] children) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        static Node of(Object owner, Leaf leaf, int shift) {
+            if (shift > MAX_SHIFT)
+                return new Node(owner, 0, new Object[]{leaf});
+            return new Node(owner, bit(leaf.hash, shift), new Object[]{leaf});
+        }
+
+        static Node of(Object owner, Leaf first, Leaf second, int shift) {
+            if (shift > MAX_SHIFT)
+                return new Node(owner, 0, new Object[]{first, second});
+
+            int firstBit = bit(first.hash, shift);
+            int secondBit = bit(second.hash, shift);
+            if (firstBit == secondBit)
+                return new Node(owner, firstBit, new Object[]{of(owner, first, second, shift + BITS)});
+            Object[] children = Integer.compareUnsigned(firstBit, secondBit) < 0
+                    ? new Object[]{first, second}
+                    : new Object[]{second, first};
+            return new Node(owner, firstBit | secondBit, children);
+        }
+
+        Leaf find(int hash, Object key, int shift) {
+            Node node = this;
+            while (true) {
+                if (shift > MAX_SHIFT) {
+                    for (Object child : node.children) {
+                        if (((Leaf) child).key.equals(key))
+                            return (Leaf) child;
+                    }
+                    return null;
+                }
+
+                int bit = bit(hash, shift);
+                if ((node.bitmap & bit) == 0)
+                    return null;
+                Object child = node.children[index(node.bitmap, bit)];
+                if (child instanceof Leaf) {
+                    Leaf leaf = (Leaf) child;
+                    return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+                }
+                node = (Node) child;
+                shift += BITS;
+            }
+        }
+
+        Node put(Object owner, Leaf leaf, int shift, Builder builder) {
+            if (shift > MAX_SHIFT) {
+                for (int i = 0; i < children.length; i++) {
+                    if (((Leaf) children[i]).key.equals(leaf.key))
+                        return editable(owner).set(i, leaf);
+                }
+                builder.size++;
+                Node node = editable(owner);
+                node.children = insert(node.children, children.length, leaf);
+                return node;
+            }
+
+            int bit = bit(leaf.hash, shift);
+            int index = index(bitmap, bit);
+            if ((bitmap & bit) == 0) {
+                builder.size++;
+                Node node = editable(owner);
+                node.children = insert(node.children, index, leaf);
+                node.bitmap |= bit;
+                return node;
+            }
+
+            Object child = children[index];
+            if (child instanceof Node)
+                return editable(owner).set(index, ((Node) child).put(owner, leaf, shift + BITS, builder));
+
+            Leaf existing = (Leaf) child;
+            if (existing.hash == leaf.hash && existing.key.equals(leaf.key))
+                return editable(owner).set(index, leaf);
+            builder.size++;
+            return editable(owner).set(index, of(owner, existing, leaf, shift + BITS));
+        }
+
+        /**
+         * Removes an entry from this node.
+         *
+         * @return The new version of this node, its only remaining leaf (so
+         * that it can be inlined into the parent) or {@code null} if it became
+         * empty.
+         */
+        Object remove(Object owner, int hash, ItemId key, int shift, Builder builder) {
+            int index;
+            if (shift > MAX_SHIFT) {
+                index = -1;
+                for (int i = 0; i < children.length; i++) {
+                    if (((Leaf) children[i]).key.equals(key))
+                        index = i;
+                }
+                if (index < 0)
+                    return this;
+                builder.size--;
+                if (children.length == 1)
+                    return null;
+                if (children.length == 2)
+                    return children[1 - index];
+                Node node = editable(owner);
+                node.children = delete(node.children, index);
+                return node;
+            }
+
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0)
+                return this;
+            index = index(bitmap, bit);
+
+            Object child = children[index];
+            Object replacement;
+            if (child instanceof Leaf) {
+                Leaf leaf = (Leaf) child;
+                if (leaf.hash != hash || !leaf.key.equals(key))
+                    return this;
+                builder.size--;
+                replacement = null;
+            } else {
+                replacement = ((Node) child).remove(owner, hash, key, shift + BITS, builder);
+                if (replacement == child)
+                    return this;
+            }
+
+            if (replacement != null)
+                return editable(owner).set(index, replacement);
+            if (children.length == 1)
+                return null;
+            if (children.length == 2 && children[1 - index] instanceof Leaf)
+                return children[1 - index];
+
+            Node node = editable(owner);
+            node.children = delete(node.children, index);
+            node.bitmap &= ~bit;
+            return node;
+        }
+
+        private Node editable(Object owner) {
+            if (this.owner == owner)
+                return this;
+            return new Node(owner, bitmap, children.clone());
+        }
+
+        private Node set(int index, Object child) {
+            children[index] = child;
+            return this;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private static int index(int bitmap, int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static Object[] insert(Object[] array, int index, Object value) {
+            Object[] result = new Object[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+
+        private static Object[] delete(Object[] array, int index) {
+            Object[] result = new Object[array.length - 1];
+            System.arraycopy(array, 0, result, 0, index);
+            System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+            return result;
+        }
+    }
+
+    /**
+     * Depth-first iterator over the leaves of a trie.
+     */
+    private static class LeafIterator implements Iterator<Entry<ItemId, BigDecimal>> {
+        // One level per 5 bits of the hash plus the level of colliding leaves
+        private final Object[][] arrays = new Object[MAX_SHIFT / BITS + 2][];
+        private final int[] positions = new int[arrays.length];
+        private int depth = -1;
+        private Leaf next;
+
+        LeafIterator(Node root) {
+            if (root != null) {
+                arrays[0] = root.children;
+                depth = 0;
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<ItemId, BigDecimal> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Leaf leaf = next;
+            advance();
+            return new SimpleImmutableEntry<>(leaf.key, leaf.value);
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                if (positions[depth] == array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+
+                Object child = array[positions[depth]++];
+                if (child instanceof Leaf) {
+                    next = (Leaf) child;
+                    return;
+                }
+                depth++;
+                arrays[depth] = ((Node) child).children;
+                positions[depth] = 0;
+            }
+        }
+    }
+}
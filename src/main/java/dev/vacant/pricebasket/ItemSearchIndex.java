@@ -0,0 +1,197 @@
+package dev.vacant.pricebasket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index for searching the items of a catalog by partial, possibly misspelled,
+ * names.
+ * <p>
+ * The index walks the names of the items in the order of their ordinals (see
+ * {@link CatalogOrdinals}), which is alphabetical, as if they were the leaves
+ * of a trie: the names sharing a prefix are contiguous, so the rows of the
+ * edit distance table computed for a prefix are reused by every name starting
+ * with it, and whole ranges of names are skipped (through binary search) as
+ * soon as their common prefix is too far from the query. The names are copied
+ * into a single array, so that walking them reads contiguous memory instead of
+ * chasing the references of every item ID.
+ * <p>
+ * A name matches when one of its prefixes is within a few edits of the query,
+ * the amount of edits tolerated growing with the length of the query.
+ */
+class ItemSearchIndex {
+    private final CatalogOrdinals ordinals;
+    private final char[] names;
+    private final int[] offsets;
+    private final int maxLength;
+
+    ItemSearchIndex(CatalogOrdinals ordinals) {
+        this.ordinals = ordinals;
+        this.offsets = new int[ordinals.size() + 1];
+        long length = 0;
+        int maxLength = 0;
+        for (int i = 0; i < ordinals.size(); i++) {
+            int nameLength = ordinals.itemAt(i).length();
+            length += nameLength;
+            maxLength = Math.max(maxLength, nameLength);
+        }
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many items for a single index");
+
+        this.names = new char[(int) length];
+        this.maxLength = maxLength;
+        int offset = 0;
+        for (int i = 0; i < ordinals.size(); i++) {
+            String name = ordinals.itemAt(i).toString();
+            name.getChars(0, name.length(), names, offset);
+            offset += name.length();
+            offsets[i + 1] = offset;
+        }
+    }
+
+    /**
+     * Retrieves the amount of edits tolerated for a query.
+     *
+     * @param length The length of the normalized query.
+     * @return The maximum edit distance of the matches.
+     */
+    static int maxEditsFor(int length) {
+        if (length < 3)
+            return 0;
+        return length < 6 ? 1 : 2;
+    }
+
+    /**
+     * Searches for the items whose names start with (or with something close
+     * to) the query.
+     *
+     * @param query      The normalized query.
+     * @param maxResults The maximum amount of matches to return.
+     * @return The matching items, the closest ones first and then in the
+     * order of their names.
+     */
+    List<ItemId> search(CharSequence query, int maxResults) {
+        int n = query.length();
+        int maxEdits = maxEditsFor(n);
+        maxResults = Math.min(maxResults, ordinals.size());
+
+        // Matches are bucketed by distance, as names are visited in order
+        int[][] matches = new int[maxEdits + 1][maxResults];
+        int[] matchCounts = new int[maxEdits + 1];
+
+        int[][] rows = new int[maxLength + 1][n + 1];
+        int[] best = new int[maxLength + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+        best[0] = n;
+
+        // Once enough matches are found within some distance, later names (which
+        // come after in order) must be strictly closer to make it to the results
+        int reach = maxEdits;
+        int validDepth = 0;
+        int size = ordinals.size();
+        int i = 0;
+        while (i < size && reach >= 0) {
+            int start = offsets[i];
+            int length = offsets[i + 1] - start;
+            int depth = i > 0 ? Math.min(validDepth, commonPrefix(i - 1, i)) : 0;
+
+            // Extends the rows one character of the name at a time, stopping
+            // once no longer prefix can get within reach of the query
+            boolean pruned = false;
+            while (depth < length) {
+                char c = names[start + depth];
+                int[] previous = rows[depth];
+                int[] row = rows[depth + 1];
+                row[0] = depth + 1;
+                int rowMin = row[0];
+                for (int j = 1; j <= n; j++) {
+                    int cost = query.charAt(j - 1) == c ? 0 : 1;
+                    row[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], row[j - 1]) + 1);
+                    rowMin = Math.min(rowMin, row[j]);
+                }
+                depth++;
+                best[depth] = Math.min(best[depth - 1], row[n]);
+                if (rowMin > reach) {
+                    pruned = true;
+                    break;
+                }
+            }
+            validDepth = depth;
+
+            // Every name sharing the prefix ends up with the same distance
+            int end = pruned ? endOfPrefix(i, depth) : i + 1;
+            int distance = best[depth];
+            if (distance <= reach) {
+                for (int match = i; match < end && matchCounts[distance] < maxResults; match++) {
+                    matches[distance][matchCounts[distance]++] = match;
+                }
+                reach = reachOf(matchCounts, reach, maxResults);
+            }
+            i = end;
+        }
+
+        List<ItemId> results = new ArrayList<>(maxResults);
+        for (int distance = 0; distance <= maxEdits; distance++) {
+            for (int match = 0; match < matchCounts[distance] && results.size() < maxResults; match++) {
+                results.add(ordinals.itemAt(matches[distance][match]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieves the highest distance at which new matches can still make it to
+     * the results.
+     *
+     * @return The highest distance, or {@code -1} if the results are settled.
+     */
+    private static int reachOf(int[] matchCounts, int reach, int maxResults) {
+        int total = 0;
+        for (int distance = 0; distance <= reach; distance++) {
+            total += matchCounts[distance];
+            if (total >= maxResults)
+                return distance - 1;
+        }
+        return reach;
+    }
+
+    /**
+     * Finds the end of the range of names sharing a prefix.
+     *
+     * @return The ordinal of the first name after {@code start} that doesn't
+     * start with the first {@code length} characters of its name.
+     */
+    private int endOfPrefix(int start, int length) {
+        // Gallops first, as most ranges are short
+        int size = ordinals.size();
+        int low = start + 1;
+        int step = 1;
+        while (low < size && commonPrefix(start, low) >= length) {
+            low += step;
+            step <<= 1;
+        }
+        int high = Math.min(low, size);
+        low = Math.max(start + 1, low - (step >> 1));
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (commonPrefix(start, middle) >= length) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int commonPrefix(int a, int b) {
+        int startA = offsets[a];
+        int startB = offsets[b];
+        int length = Math.min(offsets[a + 1] - startA, offsets[b + 1] - startB);
+        int i = 0;
+        while (i < length && names[startA + i] == names[startB + i])
+            i++;
+        return i;
+    }
+}
@@ -0,0 +1,123 @@
+package dev.vacant.pricebasket;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Histogram of latencies (in nanoseconds) with a bounded relative error.
+ * <p>
+ * Values are recorded into log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} equally sized buckets, so any reported percentile is
+ * within roughly 3% of the exact value while the whole histogram stays at a
+ * fixed, small size regardless of the amount of values recorded.
+ * <p>
+ * Instances are not thread-safe. Concurrent recorders should each keep their
+ * own histogram and {@link #add(LatencyHistogram) add} them up afterwards.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency to record, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all of the latencies recorded in another histogram to this one.
+     *
+     * @param other The histogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        requireNonNull(other, "other is required");
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Retrieves the amount of latencies recorded.
+     *
+     * @return The amount of latencies recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the highest latency recorded.
+     *
+     * @return The highest latency, in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Retrieves the average of the latencies recorded.
+     *
+     * @return The average latency, in nanoseconds.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Retrieves the latency below which the given percentage of the recorded
+     * latencies fall.
+     *
+     * @param percentile The percentile to retrieve, between {@code 0} and
+     *                   {@code 100}.
+     * @return The latency at the given percentile, in nanoseconds.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(max, highestValueOf(i));
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS)
+            return index;
+
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,158 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Command Line Application for load testing the pricing of item baskets.
+ * <p>
+ * The driver generates a synthetic catalog and offers package (see {@link
+ * WorkloadGenerator}), unless a directory with previously generated data files
+ * is given, and then prices Zipf distributed baskets at a target rate across a
+ * number of threads for a fixed duration. Each thread follows a fixed schedule,
+ * so when pricing falls behind the delay is accounted for in the reported
+ * latencies instead of silently lowering the offered load.
+ * <p>
+ * Parameters are passed as {@code --name=value} options:
+ * <ul>
+ * <li>{@code --data}: directory with previously generated data files,</li>
+ * <li>{@code --items}: amount of items to generate (default {@code 10000}),</li>
+ * <li>{@code --discount-ratio}: ratio of items with a discount offer (default {@code 0.05}),</li>
+ * <li>{@code --bundle-ratio}: ratio of items with a bundle offer (default {@code 0.02}),</li>
+ * <li>{@code --zipf}: exponent of the item popularity distribution (default {@code 1.0}),</li>
+ * <li>{@code --basket-size}: average amount of units per basket (default {@code 10}),</li>
+ * <li>{@code --rate}: target amount of baskets priced per second (default {@code 10000}),</li>
+ * <li>{@code --threads}: amount of pricing threads (default {@code 4}),</li>
+ * <li>{@code --warmup}: seconds of load discarded before measuring (default {@code 10}),</li>
+ * <li>{@code --duration}: seconds of measured load (default {@code 30}),</li>
+ * <li>{@code --seed}: seed for the random generation (default {@code 42}).</li>
+ * </ul>
+ */
+public class LoadDriver {
+    private static final int BASKETS_PER_THREAD = 10_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        int items = Integer.parseInt(options.getOrDefault("items", "10000"));
+        double discountRatio = Double.parseDouble(options.getOrDefault("discount-ratio", "0.05"));
+        double bundleRatio = Double.parseDouble(options.getOrDefault("bundle-ratio", "0.02"));
+        double zipfExponent = Double.parseDouble(options.getOrDefault("zipf", "1.0"));
+        double basketSize = Double.parseDouble(options.getOrDefault("basket-size", "10"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "10")));
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        Path directory;
+        if (options.containsKey("data")) {
+            directory = Paths.get(options.get("data"));
+        } else {
+            directory = Files.createTempDirectory("price-basket");
+            new WorkloadGenerator(items, discountRatio, bundleRatio, zipfExponent, basketSize, seed)
+                    .writeDataFiles(directory);
+            System.out.println("Generated data files in " + directory);
+        }
+
+        DataReader reader = new DataReader(directory);
+        Catalog catalog = new Catalog(reader);
+        OfferPackage offerPackage = new OfferPackage(catalog, reader, ServiceLoader.load(OfferParser.class));
+        int catalogSize = catalog.getAllItems().size();
+        System.out.println("Loaded " + catalogSize + " items and "
+                + offerPackage.getAvailableOffers().size() + " offers");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<LatencyHistogram>> results = new ArrayList<>();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) * threads / rate);
+        for (int i = 0; i < threads; i++) {
+            WorkloadGenerator generator = new WorkloadGenerator(
+                    catalogSize, discountRatio, bundleRatio, zipfExponent, basketSize, seed + i + 1);
+            // Spread the threads' schedules evenly over the interval
+            long threadStart = start + interval * i / threads;
+            results.add(executor.submit(() -> drive(
+                    catalog, offerPackage, generator, threadStart, interval, warmup, duration)));
+        }
+        executor.shutdown();
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        try {
+            for (Future<LatencyHistogram> result : results) {
+                histogram.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Pricing failed", e.getCause());
+        }
+        long elapsed = System.nanoTime() - (start + warmup);
+
+        double seconds = (double) elapsed / TimeUnit.SECONDS.toNanos(1);
+        System.out.printf(Locale.ROOT, "Target:     %.0f baskets/s across %d threads%n", rate, threads);
+        System.out.printf(Locale.ROOT, "Throughput: %.0f baskets/s (%d baskets)%n",
+                histogram.getCount() / seconds, histogram.getCount());
+        System.out.printf(Locale.ROOT, "Latency:    mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                histogram.getMean() / 1000,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMax() / 1000.0);
+    }
+
+    private static LatencyHistogram drive(Catalog catalog,
+                                          OfferPackage offerPackage,
+                                          WorkloadGenerator generator,
+                                          long start,
+                                          long interval,
+                                          long warmup,
+                                          long duration
+    ) {
+        List<List<String>> baskets = new ArrayList<>(BASKETS_PER_THREAD);
+        for (int i = 0; i < BASKETS_PER_THREAD; i++) {
+            baskets.add(generator.nextBasket());
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        long blackhole = 0;
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end)
+                break;
+
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            Basket basket = new Basket(catalog, offerPackage);
+            for (String item : baskets.get((int) (i % BASKETS_PER_THREAD))) {
+                basket.addItem(item);
+            }
+            blackhole += basket.price().getTotal().signum();
+
+            if (intended >= measureFrom)
+                histogram.record(System.nanoTime() - intended);
+        }
+
+        // Keeps the pricing results from being optimized away
+        if (blackhole < 0)
+            throw new IllegalStateException("Negative total");
+        return histogram;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0)
+                throw new IllegalArgumentException("Options must be in the form --name=value: " + arg);
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+}
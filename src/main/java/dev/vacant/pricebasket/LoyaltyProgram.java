@@ -0,0 +1,115 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Loyalty program granting member-only prices and special offers on top of
+ * the regular catalog and package of special offers.
+ * <p>
+ * Every tier of the program is configured through two optional delta files
+ * (see {@link Catalog#applyDelta(DataReader, String)} and {@link
+ * OfferPackage#applyDelta(Catalog, DataReader, String)}), read with the same
+ * data reader as the regular data files: {@code tierN/catalog.delta} changes
+ * the prices of items (without adding or removing any) for members of tier
+ * {@code N}, while {@code tierN/offers.delta} adds (or removes) special offers
+ * for them. The regular offers are parsed again against the member prices, so
+ * that percentage discounts are taken from the price members actually pay.
+ * <p>
+ * Customers are resolved to their tier through a {@link MemberTierIndex} when
+ * their ID is set on a basket ({@link Basket#setMemberId(long)}), after which
+ * pricing the basket costs the same as for any other customer.
+ */
+public class LoyaltyProgram {
+    private final Catalog catalog;
+    private final OfferPackage offerPackage;
+    private final MemberTierIndex members;
+    private final Tier[] tiers;
+
+    /**
+     * Creates a new loyalty program, reading the configuration of every tier
+     * in the index of members.
+     *
+     * @param catalog      The regular item catalog.
+     * @param offerPackage The regular package of special offers.
+     * @param reader       The data reader used for reading the tier files.
+     * @param members      The index of members to their tiers.
+     * @throws IOException If an I/O error occurs.
+     */
+    public LoyaltyProgram(Catalog catalog,
+                          OfferPackage offerPackage,
+                          DataReader reader,
+                          MemberTierIndex members
+    ) throws IOException {
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.members = requireNonNull(members, "members is required");
+        requireNonNull(reader, "reader is required");
+
+        this.tiers = new Tier[members.getMaxTier() + 1];
+        tiers[0] = new Tier(catalog, offerPackage);
+        for (int tier = 1; tier < tiers.length; tier++) {
+            String catalogDelta = "tier" + tier + "/catalog.delta";
+            Catalog tierCatalog = catalog;
+            try {
+                tierCatalog = catalog.applyDelta(reader, catalogDelta);
+            } catch (NoSuchFileException ignored) {
+                // The tier keeps the regular prices
+            }
+            if (!tierCatalog.getAllItems().equals(catalog.getAllItems()))
+                throw new IOException(catalogDelta + " must only change the prices of existing items");
+
+            OfferPackage tierOffers;
+            try {
+                tierOffers = offerPackage.applyDelta(tierCatalog, reader, "tier" + tier + "/offers.delta");
+            } catch (NoSuchFileException ignored) {
+                tierOffers = offerPackage.withCatalog(tierCatalog);
+            }
+            tiers[tier] = new Tier(tierCatalog, tierOffers);
+        }
+    }
+
+    /**
+     * Creates a new empty basket for the regular catalog and package of
+     * special offers, in which members can be identified.
+     *
+     * @return The new basket.
+     */
+    public Basket newBasket() {
+        return new Basket(catalog, offerPackage, this);
+    }
+
+    /**
+     * Resolves the pricing tier of a customer.
+     *
+     * @param memberId The ID of the customer.
+     * @return The pricing tier of the customer.
+     */
+    Tier getTierOf(long memberId) {
+        int tier = members.getTierOf(memberId);
+        return tier > 0 && tier < tiers.length ? tiers[tier] : tiers[0];
+    }
+
+    /**
+     * Catalog and package of special offers of a tier.
+     */
+    static class Tier {
+        private final Catalog catalog;
+        private final OfferPackage offerPackage;
+
+        private Tier(Catalog catalog, OfferPackage offerPackage) {
+            this.catalog = catalog;
+            this.offerPackage = offerPackage;
+        }
+
+        Catalog getCatalog() {
+            return catalog;
+        }
+
+        OfferPackage getOfferPackage() {
+            return offerPackage;
+        }
+    }
+}
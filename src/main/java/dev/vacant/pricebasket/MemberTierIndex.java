@@ -0,0 +1,205 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-only index of loyalty members to their tiers, stored outside of the
+ * Java heap.
+ * <p>
+ * Member IDs are non-negative numbers and tiers range from {@code 1} to
+ * {@value #MAX_TIER} ({@code 0} standing for customers that are not members).
+ * The entries are kept in a single {@link ByteBuffer} laid out as an
+ * open-addressing hash table with linear probing: an array of member IDs
+ * followed by an array of tiers, one byte each. As with price tables, the
+ * layout is position independent, so the same bytes can be written to disk and
+ * later memory-mapped as-is. Looking up a member never allocates and usually
+ * touches a single slot, regardless of the amount of members.
+ */
+public class MemberTierIndex {
+    /**
+     * The highest tier supported.
+     */
+    public static final int MAX_TIER = Byte.MAX_VALUE;
+
+    private static final int MAGIC = 0x50424d54; // "PBMT"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+    private static final long EMPTY = -1;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int maxTier;
+    private final int mask;
+
+    private MemberTierIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.mask = buffer.getInt(12) - 1;
+        this.maxTier = buffer.getInt(16);
+    }
+
+    /**
+     * Builds a new index of the members supplied.
+     *
+     * @param memberIds The IDs of the members.
+     * @param tiers     The tier of each member, at the same position as its ID.
+     * @return The index of the members.
+     * @throws IllegalArgumentException If the arrays differ in length, a
+     *                                  member ID is negative or duplicated, a
+     *                                  tier is out of range or the index would
+     *                                  not fit in a single buffer.
+     */
+    public static MemberTierIndex build(long[] memberIds, byte[] tiers) {
+        requireNonNull(memberIds, "memberIds is required");
+        requireNonNull(tiers, "tiers is required");
+        if (memberIds.length != tiers.length)
+            throw new IllegalArgumentException("memberIds and tiers must have the same length");
+
+        // Keeps the load factor at or below 3/4
+        long minCapacity = Math.max(2, ((long) memberIds.length * 4 + 2) / 3);
+        long capacity = Long.highestOneBit(minCapacity - 1) << 1;
+        long length = HEADER_SIZE + capacity * (Long.BYTES + 1);
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many members for a single index");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        int mask = (int) capacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putLong(keyOffset(slot), EMPTY);
+        }
+
+        int maxTier = 0;
+        for (int i = 0; i < memberIds.length; i++) {
+            long memberId = memberIds[i];
+            if (memberId < 0)
+                throw new IllegalArgumentException("Negative member ID: " + memberId);
+            if (tiers[i] < 1)
+                throw new IllegalArgumentException("Invalid tier for member " + memberId + ": " + tiers[i]);
+
+            int slot = indexFor(memberId, mask);
+            long key;
+            while ((key = buffer.getLong(keyOffset(slot))) != EMPTY) {
+                if (key == memberId)
+                    throw new IllegalArgumentException("Duplicate member ID: " + memberId);
+                slot = (slot + 1) & mask;
+            }
+            buffer.putLong(keyOffset(slot), memberId);
+            buffer.put(tierOffset(slot, (int) capacity), tiers[i]);
+            maxTier = Math.max(maxTier, tiers[i]);
+        }
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, memberIds.length);
+        buffer.putInt(12, (int) capacity);
+        buffer.putInt(16, maxTier);
+        return new MemberTierIndex(buffer);
+    }
+
+    /**
+     * Memory-maps an index previously written with {@link #writeTo(Path)}.
+     *
+     * @param path The path of the index file.
+     * @return The index backed by the mapped file.
+     * @throws IOException If an I/O error occurs or the file is not a valid
+     *                     index.
+     */
+    public static MemberTierIndex map(Path path) throws IOException {
+        requireNonNull(path, "path is required");
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a member index: " + path);
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int capacity = buffer.getInt(12);
+            if (buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != VERSION
+                    || Integer.bitCount(capacity) != 1
+                    || buffer.getInt(8) >= capacity
+                    || buffer.getInt(16) < 0
+                    || buffer.getInt(16) > MAX_TIER
+                    || HEADER_SIZE + (long) capacity * (Long.BYTES + 1) != buffer.capacity()) {
+                throw new IOException("Not a member index: " + path);
+            }
+            return new MemberTierIndex(buffer);
+        }
+    }
+
+    /**
+     * Writes the contents of this index to a file, in a format suitable for
+     * memory-mapping it with {@link #map(Path)}.
+     *
+     * @param path The path of the index file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeTo(Path path) throws IOException {
+        requireNonNull(path, "path is required");
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the tier of a customer.
+     *
+     * @param memberId The ID of the customer.
+     * @return The tier of the customer, or {@code 0} if the customer is not a
+     * member.
+     */
+    public int getTierOf(long memberId) {
+        if (memberId < 0)
+            return 0;
+
+        int slot = indexFor(memberId, mask);
+        long key;
+        while ((key = buffer.getLong(keyOffset(slot))) != EMPTY) {
+            if (key == memberId)
+                return buffer.get(tierOffset(slot, mask + 1));
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieves the amount of members in the index.
+     *
+     * @return The amount of members.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the highest tier of any member in the index.
+     *
+     * @return The highest tier, or {@code 0} if the index is empty.
+     */
+    public int getMaxTier() {
+        return maxTier;
+    }
+
+    private static int indexFor(long memberId, int mask) {
+        // Member IDs are often sequential, so their bits are mixed first
+        long hash = memberId * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int keyOffset(int slot) {
+        return HEADER_SIZE + slot * Long.BYTES;
+    }
+
+    private static int tierOffset(int slot, int capacity) {
+        return HEADER_SIZE + capacity * Long.BYTES + slot;
+    }
+}
@@ -0,0 +1,284 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Read-only map of item IDs to their prices, stored outside of the Java heap.
+ * <p>
+ * The entries are kept in a single {@link ByteBuffer} laid out as an
+ * open-addressing hash table with linear probing. Each slot holds the hash of
+ * the normalized item name, the offset of the name (encoded as UTF-8) and the
+ * price in pence. The layout is position independent, so the same bytes can be
+ * written to disk and later memory-mapped as-is.
+ * <p>
+ * Entries are only materialized (as {@link ItemId} and {@link BigDecimal}
+ * instances) when they are retrieved or iterated over, which keeps very large
+ * catalogs from putting any pressure on the garbage collector. Looking up the
+ * price of an item in pence ({@link #getInPence(ItemId)}) compares the name
+ * in place and does not materialize anything at all.
+ */
+class OffHeapItemMap extends ItemPriceMap {
+    private static final int MAGIC = 0x50424354; // "PBCT"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+
+    private static final int SLOT_HASH = 0;
+    private static final int SLOT_KEY = 4;
+    private static final int SLOT_PRICE = 8;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int mask;
+
+    private OffHeapItemMap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.mask = buffer.getInt(12) - 1;
+    }
+
+    /**
+     * Builds a new off-heap table with the contents of the map supplied.
+     *
+     * @param data The item prices to store.
+     * @return The off-heap table holding the item prices.
+     * @throws IllegalArgumentException If a price cannot be represented in
+     *                                  pence or if the table would not fit in a
+     *                                  single buffer.
+     */
+    static OffHeapItemMap build(Map<ItemId, BigDecimal> data) {
+        requireNonNull(data, "data is required");
+
+        int capacity = Integer.highestOneBit(Math.max(1, data.size()) * 2 - 1) << 1;
+        long length = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+        List<byte[]> names = new ArrayList<>(data.size());
+        for (ItemId itemId : data.keySet()) {
+            byte[] name = itemId.toString().getBytes(UTF_8);
+            names.add(name);
+            length += Integer.BYTES + name.length;
+        }
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many items for a single table");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, data.size());
+        buffer.putInt(12, capacity);
+
+        int keyOffset = HEADER_SIZE + capacity * SLOT_SIZE;
+        Iterator<byte[]> nameIterator = names.iterator();
+        for (Map.Entry<ItemId, BigDecimal> entry : data.entrySet()) {
+            byte[] name = nameIterator.next();
+            int hash = entry.getKey().toString().hashCode();
+
+            int slot = indexFor(hash, capacity - 1);
+            while (buffer.getInt(slotOffset(slot) + SLOT_KEY) != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+
+            int offset = slotOffset(slot);
+            buffer.putInt(offset + SLOT_HASH, hash);
+            buffer.putInt(offset + SLOT_KEY, keyOffset);
+            buffer.putLong(offset + SLOT_PRICE, toPence(entry.getKey(), entry.getValue()));
+
+            buffer.putInt(keyOffset, name.length);
+            for (int i = 0; i < name.length; i++) {
+                buffer.put(keyOffset + Integer.BYTES + i, name[i]);
+            }
+            keyOffset += Integer.BYTES + name.length;
+        }
+
+        return new OffHeapItemMap(buffer);
+    }
+
+    /**
+     * Memory-maps a table previously written with {@link #writeTo(Path)}.
+     *
+     * @param path The path of the table file.
+     * @return The off-heap table backed by the mapped file.
+     * @throws IOException If an I/O error occurs or the file is not a valid
+     *                     table.
+     */
+    static OffHeapItemMap map(Path path) throws IOException {
+        requireNonNull(path, "path is required");
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a price table: " + path);
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int capacity = buffer.getInt(12);
+            if (buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != VERSION
+                    || Integer.bitCount(capacity) != 1
+                    || HEADER_SIZE + (long) capacity * SLOT_SIZE > buffer.capacity()) {
+                throw new IOException("Not a price table: " + path);
+            }
+            return new OffHeapItemMap(buffer);
+        }
+    }
+
+    /**
+     * Writes the contents of this table to a file, in a format suitable for
+     * memory-mapping it with {@link #map(Path)}.
+     *
+     * @param path The path of the table file.
+     * @throws IOException If an I/O error occurs.
+     */
+    void writeTo(Path path) throws IOException {
+        requireNonNull(path, "path is required");
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(key) >= 0;
+    }
+
+    @Override
+    public BigDecimal get(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0)
+            return null;
+        return BigDecimal.valueOf(buffer.getLong(slotOffset(slot) + SLOT_PRICE), 2);
+    }
+
+    @Override
+    long getInPence(ItemId itemId) {
+        int slot = findSlot(itemId);
+        if (slot < 0)
+            return -1;
+        return buffer.getLong(slotOffset(slot) + SLOT_PRICE);
+    }
+
+    @Override
+    public Set<Entry<ItemId, BigDecimal>> entrySet() {
+        return new AbstractSet<Entry<ItemId, BigDecimal>>() {
+            @Override
+            public Iterator<Entry<ItemId, BigDecimal>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int findSlot(Object key) {
+        if (!(key instanceof ItemId))
+            return -1;
+
+        String name = key.toString();
+        int hash = name.hashCode();
+
+        int slot = indexFor(hash, mask);
+        int keyOffset;
+        while ((keyOffset = buffer.getInt(slotOffset(slot) + SLOT_KEY)) != 0) {
+            if (buffer.getInt(slotOffset(slot) + SLOT_HASH) == hash && nameEquals(keyOffset, name))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int keyOffset, String name) {
+        // Encodes the name as UTF-8 on the fly, in the same way as getBytes
+        int position = keyOffset + Integer.BYTES;
+        int end = position + buffer.getInt(keyOffset);
+        for (int i = 0; i < name.length(); i++) {
+            int codePoint = name.codePointAt(i);
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                i++;
+            } else if (Character.isSurrogate((char) codePoint)) {
+                codePoint = '?';
+            }
+
+            int length = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (end - position < length)
+                return false;
+            for (int shift = 6 * (length - 1); shift >= 0; shift -= 6) {
+                int bits = codePoint >>> shift;
+                int encoded = shift == 6 * (length - 1)
+                        ? (length == 1 ? bits : (0xF00 >>> length) | bits)
+                        : 0x80 | (bits & 0x3F);
+                if (buffer.get(position++) != (byte) encoded)
+                    return false;
+            }
+        }
+        return position == end;
+    }
+
+    private ItemId readName(int keyOffset) {
+        byte[] name = new byte[buffer.getInt(keyOffset)];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(keyOffset + Integer.BYTES + i);
+        }
+        return new ItemId(new String(name, UTF_8));
+    }
+
+    private static int indexFor(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long toPence(ItemId itemId, BigDecimal price) {
+        try {
+            return price.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException cause) {
+            throw new IllegalArgumentException("Price out of range for " + itemId, cause);
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<ItemId, BigDecimal>> {
+        private int slot = -1;
+        private int remaining = size;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Entry<ItemId, BigDecimal> next() {
+            if (remaining == 0)
+                throw new NoSuchElementException();
+
+            int keyOffset;
+            do {
+                slot++;
+            } while ((keyOffset = buffer.getInt(slotOffset(slot) + SLOT_KEY)) == 0);
+            remaining--;
+
+            BigDecimal price = BigDecimal.valueOf(buffer.getLong(slotOffset(slot) + SLOT_PRICE), 2);
+            return new SimpleImmutableEntry<>(readName(keyOffset), price);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Analysis of the special offers in a package, looking for rules that are
+ * redundant or in conflict with each other.
+ * <p>
+ * All of the offers applicable to a basket are applied on top of each other,
+ * so rules listed by mistake (e.g. the same offer pasted twice) silently give
+ * away larger discounts, besides being evaluated for every basket priced. The
+ * analysis reports the following kinds of findings (see {@link Kind}):
+ * <ul>
+ * <li>offers that never discount anything;</li>
+ * <li>offers with the exact same effect as an earlier one;</li>
+ * <li>bundle offers whose discount is dominated by a direct discount on the
+ * same item;</li>
+ * <li>different direct discounts on the same item.</li>
+ * </ul>
+ * <p>
+ * Only the built-in offer rules are analysed. Offers that never discount
+ * anything can be pruned from the package ({@link #prune()}) without changing
+ * any price. Duplicated, dominated and conflicting offers still add their
+ * discounts to the baskets they apply to, so they are only reported, for
+ * whoever maintains the offers data file to settle.
+ */
+public class OfferAnalysis {
+    private final OfferPackage offerPackage;
+    private final List<Finding> findings;
+
+    /**
+     * Analyses the offers in a package.
+     *
+     * @param offerPackage The package of special offers to analyse.
+     */
+    public OfferAnalysis(OfferPackage offerPackage) {
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.findings = new ArrayList<>();
+
+        List<OfferRule> offers = offerPackage.getAvailableOffers();
+        Set<OfferRule> reported = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < offers.size(); i++) {
+            OfferRule offer = offers.get(i);
+            if (isIneffective(offer)) {
+                addFinding(Kind.INEFFECTIVE, offer, null);
+                reported.add(offer);
+            }
+        }
+
+        for (int j = 0; j < offers.size(); j++) {
+            OfferRule later = offers.get(j);
+            if (reported.contains(later))
+                continue;
+
+            for (int i = 0; i < j; i++) {
+                OfferRule earlier = offers.get(i);
+                if (reported.contains(earlier))
+                    continue;
+
+                Kind kind = compare(earlier, later);
+                if (kind == Kind.DOMINATED && later instanceof DiscountOffer) {
+                    addFinding(kind, earlier, later);
+                    reported.add(earlier);
+                } else if (kind != null) {
+                    addFinding(kind, later, earlier);
+                    if (kind != Kind.CONFLICT) {
+                        reported.add(later);
+                        break;
+                    }
+                }
+            }
+        }
+        findings.sort(Comparator.comparingInt(Finding::getLineNumber));
+    }
+
+    /**
+     * Retrieves all of the findings of the analysis, in the order of the
+     * rules in the offers data file.
+     *
+     * @return The findings of the analysis.
+     */
+    public List<Finding> getFindings() {
+        return Collections.unmodifiableList(findings);
+    }
+
+    /**
+     * Creates a new version of the analysed package without the offers whose
+     * findings can be pruned (see {@link Kind#isPrunable()}). Pruning never
+     * changes the price of a basket.
+     *
+     * @return The pruned package, or the analysed package itself if there is
+     * nothing to prune.
+     */
+    public OfferPackage prune() {
+        List<OfferRule> pruned = new ArrayList<>();
+        for (Finding finding : findings) {
+            if (finding.getKind().isPrunable())
+                pruned.add(finding.getOffer());
+        }
+        return pruned.isEmpty() ? offerPackage : offerPackage.without(pruned);
+    }
+
+    private void addFinding(Kind kind, OfferRule offer, OfferRule cause) {
+        int lineNumber = offerPackage.getLineNumberOf(offer);
+        int causeLineNumber = cause == null ? 0 : offerPackage.getLineNumberOf(cause);
+        findings.add(new Finding(kind, offer, lineNumber, causeLineNumber));
+    }
+
+    private static boolean isIneffective(OfferRule offer) {
+        if (offer instanceof DiscountOffer)
+            return ((DiscountOffer) offer).getUnitDiscount().signum() == 0;
+        if (offer instanceof BundleOffer)
+            return ((BundleOffer) offer).getDiscount().signum() == 0;
+        return false;
+    }
+
+    /**
+     * Compares two offers, the first one coming earlier in the data file.
+     *
+     * @return The kind of finding about the pair, or {@code null} if the
+     * offers don't affect each other.
+     */
+    private static Kind compare(OfferRule earlier, OfferRule later) {
+        if (earlier instanceof DiscountOffer && later instanceof DiscountOffer) {
+            DiscountOffer first = (DiscountOffer) earlier;
+            DiscountOffer second = (DiscountOffer) later;
+            if (!first.getItemId().equals(second.getItemId()))
+                return null;
+            boolean same = first.getUnitDiscount().compareTo(second.getUnitDiscount()) == 0
+                    && first.getMaxUnits() == second.getMaxUnits();
+            return same ? Kind.DUPLICATE : Kind.CONFLICT;
+        }
+
+        if (earlier instanceof BundleOffer && later instanceof BundleOffer) {
+            BundleOffer first = (BundleOffer) earlier;
+            BundleOffer second = (BundleOffer) later;
+            boolean same = first.getDiscountedItemId().equals(second.getDiscountedItemId())
+                    && first.getRequiredItemId().equals(second.getRequiredItemId())
+                    && first.getMinAmount() == second.getMinAmount()
+                    && first.getMaxBundles() == second.getMaxBundles()
+                    && first.getDiscount().compareTo(second.getDiscount()) == 0;
+            return same ? Kind.DUPLICATE : null;
+        }
+
+        if (earlier instanceof BundleOffer && later instanceof DiscountOffer)
+            return isDominated((BundleOffer) earlier, (DiscountOffer) later) ? Kind.DOMINATED : null;
+        if (earlier instanceof DiscountOffer && later instanceof BundleOffer)
+            return isDominated((BundleOffer) later, (DiscountOffer) earlier) ? Kind.DOMINATED : null;
+        return null;
+    }
+
+    private static boolean isDominated(BundleOffer bundle, DiscountOffer discount) {
+        // Every bundle discounts one unit, which the direct discount covers
+        // unconditionally (as long as it isn't limited to fewer units)
+        BigDecimal unitDiscount = discount.getUnitDiscount();
+        return bundle.getDiscountedItemId().equals(discount.getItemId())
+                && unitDiscount.compareTo(bundle.getDiscount()) >= 0
+                && discount.getMaxUnits() >= bundle.getMaxBundles();
+    }
+
+    /**
+     * Kind of finding about an offer.
+     */
+    public enum Kind {
+        /**
+         * The offer never discounts anything.
+         */
+        INEFFECTIVE(true),
+        /**
+         * The offer has the exact same effect as an earlier offer, so both
+         * discounts are added up.
+         */
+        DUPLICATE(false),
+        /**
+         * The offer is a bundle offer whose discount is at most the one given
+         * to the same item by a direct discount (with no lower limit), and is
+         * added up with it.
+         */
+        DOMINATED(false),
+        /**
+         * The offer is a direct discount on the same item as an earlier direct
+         * discount, but of a different value.
+         */
+        CONFLICT(false);
+
+        private final boolean prunable;
+
+        Kind(boolean prunable) {
+            this.prunable = prunable;
+        }
+
+        /**
+         * Checks if offers with this kind of finding are pruned by {@link
+         * OfferAnalysis#prune()}, which is only the case when removing them
+         * leaves the price of every basket unchanged.
+         *
+         * @return {@code true} if the offers are pruned, {@code false}
+         * otherwise.
+         */
+        public boolean isPrunable() {
+            return prunable;
+        }
+    }
+
+    /**
+     * Finding about one of the offers in the analysed package.
+     */
+    public static class Finding {
+        private final Kind kind;
+        private final OfferRule offer;
+        private final int lineNumber;
+        private final int causeLineNumber;
+
+        private Finding(Kind kind, OfferRule offer, int lineNumber, int causeLineNumber) {
+            this.kind = kind;
+            this.offer = offer;
+            this.lineNumber = lineNumber;
+            this.causeLineNumber = causeLineNumber;
+        }
+
+        /**
+         * Retrieves the kind of finding.
+         *
+         * @return The kind of finding.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Retrieves the offer the finding is about.
+         *
+         * @return The offer.
+         */
+        public OfferRule getOffer() {
+            return offer;
+        }
+
+        /**
+         * Retrieves the line number of the offer's rule.
+         *
+         * @return The line number of the offer's rule.
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Retrieves the line number of the rule of the other offer involved
+         * in the finding (e.g. the offer duplicated).
+         *
+         * @return The line number of the other offer's rule, or {@code 0} if
+         * no other offer is involved.
+         */
+        public int getCauseLineNumber() {
+            return causeLineNumber;
+        }
+
+        @Override
+        public String toString() {
+            String message = "Line " + lineNumber + " (" + offer.getDescription() + ") ";
+            switch (kind) {
+                case INEFFECTIVE:
+                    return message + "never discounts anything";
+                case DUPLICATE:
+                    return message + "duplicates line " + causeLineNumber;
+                case DOMINATED:
+                    return message + "is dominated by line " + causeLineNumber;
+                default:
+                    return message + "conflicts with line " + causeLineNumber;
+            }
+        }
+    }
+}
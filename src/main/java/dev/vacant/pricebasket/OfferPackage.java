@@ -2,10 +2,7 @@ package dev.vacant.pricebasket;
 
 import java.io.IOException;
 import java.io.LineNumberReader;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.ServiceLoader;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
@@ -18,13 +15,26 @@ import static java.util.Objects.requireNonNull;
  * offer is applicable as well as what it includes as a discount. Parsers for
  * each rule are registered through Java's {@link ServiceLoader service provider}
  * mechanism.
+ * <p>
+ * Discovering the default parsers scans the whole classpath, so it is only done
+ * once per JVM. Short-lived processes can skip the scan entirely by listing the
+ * parser classes (comma separated) in the {@value #PARSERS_PROPERTY} system
+ * property.
+ * <p>
+ * Packages are immutable. Changes are applied through delta files ({@link
+ * #applyDelta(Catalog, DataReader, String)}), producing a new package.
  */
 public class OfferPackage {
     private static final String DATA_FILE = "offers.list";
+    private static final String PARSERS_PROPERTY = "pricebasket.parsers";
 
     private final Catalog catalog;
     private final List<OfferRule> offers;
+    private final List<String> rules;
+    private final List<BasketOfferRule> basketOffers;
+    private final Map<OfferRule, Integer> lineNumbers;
     private final Iterable<OfferParser> parsers;
+    private final long checksum;
 
     /**
      * Creates a new special offer package for the item catalog supplied, using
@@ -42,10 +52,20 @@ public class OfferPackage {
         requireNonNull(reader, "reader is required");
         this.catalog = requireNonNull(catalog, "catalog is required");
         this.parsers = requireNonNull(parsers, "parsers is required");
+        this.offers = new ArrayList<>();
+        this.rules = new ArrayList<>();
+        this.lineNumbers = new IdentityHashMap<>();
+        this.basketOffers = new ArrayList<>();
 
+        PricingEvents.DataFileLoad event = PricingEvents.beginLoad();
+        PricingEvents.ParserTimings timings = PricingEvents.beginParsing();
         try (LineNumberReader fileReader = reader.newLineNumberReader(DATA_FILE)) {
-            offers = parseDataFile(fileReader);
+            parseDataFile(fileReader, timings);
+            checksum = DataReader.checksumOf(fileReader);
+            PricingEvents.endLoad(event, DATA_FILE, offers.size(), DataReader.byteCountOf(fileReader));
         }
+        if (timings != null)
+            timings.commit();
     }
 
     /**
@@ -56,7 +76,146 @@ public class OfferPackage {
      * @throws IOException If an I/O error occurs.
      */
     public OfferPackage(Catalog catalog) throws IOException {
-        this(catalog, new DataReader(), ServiceLoader.load(OfferParser.class));
+        this(catalog, new DataReader(), getDefaultParsers());
+    }
+
+    private OfferPackage(Catalog catalog, Iterable<OfferParser> parsers) {
+        this.catalog = catalog;
+        this.parsers = parsers;
+        this.offers = new ArrayList<>();
+        this.rules = new ArrayList<>();
+        this.lineNumbers = new IdentityHashMap<>();
+        this.basketOffers = new ArrayList<>();
+        this.checksum = -1;
+    }
+
+    /**
+     * Retrieves the parsers available in the system, either the ones listed in
+     * the {@value #PARSERS_PROPERTY} system property or the ones registered as
+     * service providers. The parsers are resolved on the first call only.
+     *
+     * @return The default parsers.
+     * @throws ServiceConfigurationError If a parser cannot be instantiated.
+     */
+    public static List<OfferParser> getDefaultParsers() {
+        return DefaultParsers.PARSERS;
+    }
+
+    /**
+     * Reloads the special offer package from its data file, skipping the
+     * parsing when neither the data file nor the item catalog have changed
+     * since this package was read. The same parsers are used.
+     *
+     * @param catalog The backing item catalog, possibly reloaded as well.
+     * @param reader  The data reader used for reading the data file.
+     * @return This package if nothing changed, otherwise a new package with
+     * the current contents of the data file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public OfferPackage reload(Catalog catalog, DataReader reader) throws IOException {
+        requireNonNull(catalog, "catalog is required");
+        requireNonNull(reader, "reader is required");
+        if (catalog == this.catalog && checksum != -1 && reader.checksum(DATA_FILE) == checksum)
+            return this;
+        return new OfferPackage(catalog, reader, parsers);
+    }
+
+    /**
+     * Applies a delta file to the package, creating a new version of it.
+     * <p>
+     * Each non-blank, non-comment line of a delta file is a change, which is
+     * either the addition of a new offer ({@code '+ RULE'}) or the removal of
+     * an existing offer ({@code '- RULE'}, with the exact same rule as in the
+     * data file). Offers added are numbered after the last line of the data
+     * file (see {@link #getLineNumberOf(OfferRule)}).
+     * <p>
+     * When the catalog is the same as this package's, the offers left
+     * unchanged are shared with the new package. Otherwise (e.g. after a delta
+     * was applied to the catalog), all of the rules are parsed again against
+     * the new catalog, so that they are validated against the current items
+     * and prices.
+     *
+     * @param catalog   The backing item catalog, possibly changed as well.
+     * @param reader    The data reader to use.
+     * @param deltaFile The relative path to the delta file.
+     * @return The new version of the package.
+     * @throws IOException If an I/O error occurs.
+     */
+    public OfferPackage applyDelta(Catalog catalog, DataReader reader, String deltaFile) throws IOException {
+        requireNonNull(catalog, "catalog is required");
+        requireNonNull(reader, "reader is required");
+        requireNonNull(deltaFile, "deltaFile is required");
+
+        List<String> newRules = new ArrayList<>(rules);
+        List<OfferRule> newOffers = new ArrayList<>(offers);
+        List<Integer> newLineNumbers = new ArrayList<>(offers.size());
+        int nextLineNumber = 1;
+        for (OfferRule offer : offers) {
+            int lineNumber = lineNumbers.get(offer);
+            newLineNumbers.add(lineNumber);
+            nextLineNumber = Math.max(nextLineNumber, lineNumber + 1);
+        }
+
+        try (LineNumberReader fileReader = reader.newLineNumberReader(deltaFile)) {
+            String line;
+            while ((line = fileReader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.charAt(0) == '#')
+                    continue;
+
+                String rule = line.substring(1).trim();
+                if (line.charAt(0) == '+') {
+                    newOffers.add(parseRule(catalog, rule, fileReader.getLineNumber()));
+                    newRules.add(rule);
+                    newLineNumbers.add(nextLineNumber++);
+                } else if (line.charAt(0) == '-') {
+                    int index = newRules.indexOf(rule);
+                    if (index < 0) {
+                        int lineNumber = fileReader.getLineNumber();
+                        String message = "No offer found for rule: " + rule;
+                        throw new CorruptDataFileException(lineNumber, message);
+                    }
+                    newOffers.remove(index);
+                    newRules.remove(index);
+                    newLineNumbers.remove(index);
+                } else {
+                    int lineNumber = fileReader.getLineNumber();
+                    String message = "Changes must start with '+' or '-'";
+                    throw new CorruptDataFileException(lineNumber, message);
+                }
+            }
+        }
+
+        OfferPackage offerPackage = new OfferPackage(catalog, parsers);
+        for (int i = 0; i < newRules.size(); i++) {
+            OfferRule offer = newOffers.get(i);
+            if (catalog != this.catalog)
+                offer = parseRule(catalog, newRules.get(i), newLineNumbers.get(i));
+            offerPackage.add(offer, newRules.get(i), newLineNumbers.get(i));
+        }
+        return offerPackage;
+    }
+
+    /**
+     * Creates a new version of this package for a different item catalog,
+     * parsing all of the rules again against it.
+     *
+     * @param catalog The backing item catalog.
+     * @return This package if the catalog is the same, otherwise the new
+     * version of the package.
+     * @throws CorruptDataFileException If any of the rules is not supported
+     *                                  by the catalog.
+     */
+    OfferPackage withCatalog(Catalog catalog) throws CorruptDataFileException {
+        if (catalog == this.catalog)
+            return this;
+
+        OfferPackage offerPackage = new OfferPackage(catalog, parsers);
+        for (int i = 0; i < rules.size(); i++) {
+            int lineNumber = lineNumbers.get(offers.get(i));
+            offerPackage.add(parseRule(catalog, rules.get(i), lineNumber), rules.get(i), lineNumber);
+        }
+        return offerPackage;
     }
 
     /**
@@ -69,7 +228,9 @@ public class OfferPackage {
     }
 
     /**
-     * Retrieves the list of offers applicable to a given item basket.
+     * Retrieves the list of item-level offers applicable to a given item
+     * basket. Basket-level offers (see {@link BasketOfferRule}) depend on the
+     * totals of the basket, so they are only evaluated while pricing it.
      *
      * @param basket The item basket.
      * @return The list of offer that are applicable to the given basket.
@@ -80,37 +241,201 @@ public class OfferPackage {
                 .collect(Collectors.toList());
     }
 
-    private List<OfferRule> parseDataFile(LineNumberReader reader) throws IOException {
-        List<OfferRule> offers = new ArrayList<>();
+    /**
+     * Retrieves the list of item-level offers applicable to a given item
+     * basket, checking the offers in parallel. The offers are in the same
+     * order as in {@link #getApplicableOffers(Basket)}.
+     *
+     * @param basket The item basket, which must not change meanwhile.
+     * @return The list of offer that are applicable to the given basket.
+     */
+    List<OfferRule> getApplicableOffersInParallel(Basket basket) {
+        return offers.parallelStream()
+                .filter(it -> it.isApplicable(basket))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Analyses the offers in this package, looking for rules that are
+     * redundant or in conflict with each other.
+     *
+     * @return The analysis of this package.
+     */
+    public OfferAnalysis analyze() {
+        return new OfferAnalysis(this);
+    }
 
+    /**
+     * Creates a new version of this package without some of its offers. The
+     * remaining offers are shared with the new package and keep their line
+     * numbers.
+     *
+     * @param removed The offers to leave out.
+     * @return The new version of the package.
+     */
+    OfferPackage without(Collection<? extends OfferRule> removed) {
+        Set<OfferRule> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+        excluded.addAll(removed);
+
+        OfferPackage offerPackage = new OfferPackage(catalog, parsers);
+        for (int i = 0; i < offers.size(); i++) {
+            OfferRule offer = offers.get(i);
+            if (!excluded.contains(offer))
+                offerPackage.add(offer, rules.get(i), lineNumbers.get(offer));
+        }
+        return offerPackage;
+    }
+
+    /**
+     * Collects the offers applicable to a given item basket into the array
+     * supplied, without allocating any objects.
+     *
+     * @param basket     The item basket.
+     * @param applicable The array to collect into, which must have room for
+     *                   every available offer.
+     * @return The amount of applicable offers collected.
+     */
+    int collectApplicableOffers(Basket basket, OfferRule[] applicable) {
+        int count = 0;
+        for (int i = 0; i < offers.size(); i++) {
+            OfferRule offer = offers.get(i);
+            if (offer.isApplicable(basket))
+                applicable[count++] = offer;
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the basket-level offers available in this package, in the
+     * order of the data file.
+     *
+     * @return The basket-level offers.
+     */
+    List<BasketOfferRule> getBasketOffers() {
+        return basketOffers;
+    }
+
+    /**
+     * Retrieves the rules of the offers available in this package, in the
+     * same order as {@link #getAvailableOffers()}.
+     *
+     * @return The rules of the offers.
+     */
+    List<String> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Retrieves the item catalog backing this package.
+     *
+     * @return The item catalog.
+     */
+    Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Retrieves the amount of offers available in this package.
+     *
+     * @return The amount of available offers.
+     */
+    int getOfferCount() {
+        return offers.size();
+    }
+
+    /**
+     * Retrieves the line number of an offer's rule in the data file, which
+     * uniquely identifies the offer within this package.
+     *
+     * @param offer The offer to look up.
+     * @return The line number of the offer's rule, or {@code 0} if the offer
+     * is not part of this package.
+     */
+    public int getLineNumberOf(OfferRule offer) {
+        return lineNumbers.getOrDefault(offer, 0);
+    }
+
+    private void parseDataFile(LineNumberReader reader, PricingEvents.ParserTimings timings) throws IOException {
         String line;
         while ((line = reader.readLine()) != null) {
             line = line.trim();
             if (line.isEmpty() || line.charAt(0) == '#')
                 continue;
 
-            OfferRule offer = null;
-            for (OfferParser parser : parsers) {
-                OfferRule parsedOffer = parser.parseRule(catalog, line);
-                if (parsedOffer == null)
-                    continue;
-                if (offer != null) {
-                    int lineNumber = reader.getLineNumber();
-                    String message = "Ambiguous offer rule: " + line;
-                    throw new CorruptDataFileException(lineNumber, message);
-                }
-                offer = parsedOffer;
-            }
+            int lineNumber = reader.getLineNumber();
+            add(parseRule(catalog, line, lineNumber, timings), line, lineNumber);
+        }
+    }
+
+    private OfferRule parseRule(Catalog catalog, String rule, int lineNumber) throws CorruptDataFileException {
+        return parseRule(catalog, rule, lineNumber, null);
+    }
 
-            if (offer == null) {
-                int lineNumber = reader.getLineNumber();
-                String message = "Unsupported offer rule: " + line;
+    private OfferRule parseRule(Catalog catalog,
+                                String rule,
+                                int lineNumber,
+                                PricingEvents.ParserTimings timings
+    ) throws CorruptDataFileException {
+        OfferRule offer = null;
+        int index = 0;
+        for (OfferParser parser : parsers) {
+            long start = timings != null ? System.nanoTime() : 0;
+            OfferRule parsedOffer = parser.parseRule(catalog, rule);
+            if (timings != null)
+                timings.record(index++, parser, System.nanoTime() - start, parsedOffer != null);
+            if (parsedOffer == null)
+                continue;
+            if (offer != null) {
+                String message = "Ambiguous offer rule: " + rule;
                 throw new CorruptDataFileException(lineNumber, message);
             }
+            offer = parsedOffer;
+        }
 
-            offers.add(offer);
+        if (offer == null) {
+            String message = "Unsupported offer rule: " + rule;
+            throw new CorruptDataFileException(lineNumber, message);
         }
+        return offer;
+    }
+
+    private void add(OfferRule offer, String rule, int lineNumber) {
+        offers.add(offer);
+        rules.add(rule);
+        lineNumbers.put(offer, lineNumber);
+        if (offer instanceof BasketOfferRule)
+            basketOffers.add((BasketOfferRule) offer);
+    }
+
+    /**
+     * Holder for the default parsers, resolved when first requested.
+     */
+    private static class DefaultParsers {
+        static final List<OfferParser> PARSERS = Collections.unmodifiableList(resolve());
+
+        private static List<OfferParser> resolve() {
+            List<OfferParser> parsers = new ArrayList<>();
+            String classNames = System.getProperty(PARSERS_PROPERTY);
+            if (classNames == null) {
+                ServiceLoader.load(OfferParser.class).forEach(parsers::add);
+                return parsers;
+            }
 
-        return offers;
+            ClassLoader classLoader = OfferPackage.class.getClassLoader();
+            for (String className : classNames.split(",")) {
+                if (className.trim().isEmpty())
+                    continue;
+                try {
+                    parsers.add(Class.forName(className.trim(), true, classLoader)
+                            .asSubclass(OfferParser.class)
+                            .getDeclaredConstructor()
+                            .newInstance());
+                } catch (ReflectiveOperationException | ClassCastException cause) {
+                    String message = "Unable to instantiate offer parser " + className.trim();
+                    throw new ServiceConfigurationError(message, cause);
+                }
+            }
+            return parsers;
+        }
     }
 }
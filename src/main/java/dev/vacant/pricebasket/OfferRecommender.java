@@ -0,0 +1,247 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static dev.vacant.pricebasket.FormattingUtil.formatItem;
+import static dev.vacant.pricebasket.FormattingUtil.formatMoney;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Recommender of the items to add to a basket for unlocking or improving its
+ * special offers (e.g. "add 1 more Soup to get Bread half price").
+ * <p>
+ * Only the offers involving items already in the basket are considered, found
+ * through an index from every item to the offers involving it. For each such
+ * offer, the smallest addition that increases its discount is worked out from
+ * the amounts in the basket alone, without pricing the basket again: one more
+ * discounted unit for {@link DiscountOffer}s (up to their limit), and the
+ * missing units for one more bundle for {@link BundleOffer}s. Other kinds of
+ * offers (including basket-level ones) are not recommended.
+ * <p>
+ * Recommendations are ranked by the saving per pound spent on the additions.
+ * The saving is the one of the offer on its own, so it leaves out any other
+ * offers the additions might also trigger.
+ */
+public class OfferRecommender {
+    private static final int[] NO_OFFERS = new int[0];
+
+    private final OfferPackage offerPackage;
+    private final List<OfferRule> offers;
+    private final Map<ItemId, int[]> offersByItem;
+
+    /**
+     * Creates a new recommender for the offers of the package supplied,
+     * indexing them by the items involved.
+     *
+     * @param offerPackage The package of special offers.
+     */
+    public OfferRecommender(OfferPackage offerPackage) {
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.offers = offerPackage.getAvailableOffers();
+        this.offersByItem = new HashMap<>();
+        for (int i = 0; i < offers.size(); i++) {
+            OfferRule offer = offers.get(i);
+            if (offer instanceof DiscountOffer) {
+                index(((DiscountOffer) offer).getItemId(), i);
+            } else if (offer instanceof BundleOffer) {
+                BundleOffer bundle = (BundleOffer) offer;
+                index(bundle.getRequiredItemId(), i);
+                if (!bundle.getDiscountedItemId().equals(bundle.getRequiredItemId()))
+                    index(bundle.getDiscountedItemId(), i);
+            }
+        }
+    }
+
+    /**
+     * Recommends the additions to a basket that unlock or improve its special
+     * offers.
+     *
+     * @param basket     The item basket, priced with the package of this
+     *                   recommender.
+     * @param maxResults The maximum amount of recommendations.
+     * @return The recommendations, the highest saving per pound first.
+     * @throws IllegalArgumentException If the basket is priced with another
+     *                                  package of special offers or the
+     *                                  maximum amount of recommendations is
+     *                                  negative.
+     */
+    public List<Recommendation> recommend(Basket basket, int maxResults) {
+        requireNonNull(basket, "basket is required");
+        if (basket.getOfferPackage() != offerPackage)
+            throw new IllegalArgumentException("Basket is priced with a different offer package");
+        if (maxResults < 0)
+            throw new IllegalArgumentException("maxResults must not be negative");
+
+        // Offers involving several items in the basket are only visited once
+        BitSet visited = new BitSet(offers.size());
+        Catalog catalog = basket.getPricingCatalog();
+        List<Recommendation> recommendations = new ArrayList<>();
+        for (ItemId itemId : basket.getItems().keySet()) {
+            for (int offer : offersByItem.getOrDefault(itemId, NO_OFFERS)) {
+                if (visited.get(offer))
+                    continue;
+                visited.set(offer);
+
+                Recommendation recommendation = recommend(basket, catalog, offer);
+                if (recommendation != null)
+                    recommendations.add(recommendation);
+            }
+        }
+
+        recommendations.sort(OfferRecommender::rank);
+        return recommendations.size() > maxResults
+                ? new ArrayList<>(recommendations.subList(0, maxResults))
+                : recommendations;
+    }
+
+    private Recommendation recommend(Basket basket, Catalog catalog, int offerIndex) {
+        OfferRule offer = offers.get(offerIndex);
+        if (offer instanceof DiscountOffer) {
+            DiscountOffer discount = (DiscountOffer) offer;
+            int amount = basket.getAmountOf(discount.getItemId());
+            if (amount >= discount.getMaxUnits())
+                return null;
+            long saving = discount.calculateDiscountInPence(amount + 1) - discount.calculateDiscountInPence(amount);
+            return newRecommendation(catalog, offerIndex, saving, discount.getItemId(), 1, null, 0);
+        }
+
+        BundleOffer bundle = (BundleOffer) offer;
+        ItemId requiredItemId = bundle.getRequiredItemId();
+        ItemId discountedItemId = bundle.getDiscountedItemId();
+        int required = basket.getAmountOf(requiredItemId);
+        int discounted = basket.getAmountOf(discountedItemId);
+        int bundles = bundle.countBundles(required, discounted) + 1;
+        if (bundles > bundle.getMaxBundles())
+            return null;
+
+        int missingRequired;
+        int missingDiscounted;
+        if (requiredItemId.equals(discountedItemId)) {
+            missingRequired = Math.max(0, Math.max(bundles * bundle.getMinAmount(), bundles) - required);
+            missingDiscounted = 0;
+        } else {
+            missingRequired = Math.max(0, bundles * bundle.getMinAmount() - required);
+            missingDiscounted = Math.max(0, bundles - discounted);
+        }
+        long saving = requiredItemId.equals(discountedItemId)
+                ? bundle.calculateDiscountInPence(required + missingRequired, required + missingRequired)
+                : bundle.calculateDiscountInPence(required + missingRequired, discounted + missingDiscounted);
+        saving -= bundle.calculateDiscountInPence(required, discounted);
+        return newRecommendation(catalog, offerIndex, saving,
+                requiredItemId, missingRequired, discountedItemId, missingDiscounted);
+    }
+
+    private Recommendation newRecommendation(Catalog catalog,
+                                             int offerIndex,
+                                             long saving,
+                                             ItemId firstItemId,
+                                             int firstAmount,
+                                             ItemId secondItemId,
+                                             int secondAmount
+    ) {
+        if (saving <= 0)
+            return null;
+
+        Map<ItemId, Integer> additions = new LinkedHashMap<>();
+        long cost = 0;
+        if (firstAmount > 0) {
+            additions.put(firstItemId, firstAmount);
+            cost += catalog.getPriceInPenceFor(firstItemId) * firstAmount;
+        }
+        if (secondAmount > 0) {
+            additions.put(secondItemId, secondAmount);
+            cost += catalog.getPriceInPenceFor(secondItemId) * secondAmount;
+        }
+        return new Recommendation(offers.get(offerIndex), offerIndex, additions, saving, cost);
+    }
+
+    /**
+     * Orders recommendations by decreasing saving per pound, then by
+     * increasing cost and then in the order of the offers data file.
+     */
+    private static int rank(Recommendation first, Recommendation second) {
+        // Cross-multiplied, so that free additions rank first
+        int byRatio = Long.compare(second.saving * first.cost, first.saving * second.cost);
+        if (byRatio != 0)
+            return byRatio;
+        int byCost = Long.compare(first.cost, second.cost);
+        return byCost != 0 ? byCost : Integer.compare(first.offerIndex, second.offerIndex);
+    }
+
+    private void index(ItemId itemId, int offer) {
+        int[] indexed = offersByItem.getOrDefault(itemId, NO_OFFERS);
+        int[] grown = Arrays.copyOf(indexed, indexed.length + 1);
+        grown[indexed.length] = offer;
+        offersByItem.put(itemId, grown);
+    }
+
+    /**
+     * Recommendation of items to add to a basket for a bigger discount from
+     * one special offer.
+     */
+    public static class Recommendation {
+        private final OfferRule offer;
+        private final int offerIndex;
+        private final Map<ItemId, Integer> additions;
+        private final long saving;
+        private final long cost;
+
+        private Recommendation(OfferRule offer, int offerIndex, Map<ItemId, Integer> additions, long saving, long cost) {
+            this.offer = offer;
+            this.offerIndex = offerIndex;
+            this.additions = Collections.unmodifiableMap(additions);
+            this.saving = saving;
+            this.cost = cost;
+        }
+
+        /**
+         * Retrieves the special offer whose discount increases.
+         *
+         * @return The special offer.
+         */
+        public OfferRule getOffer() {
+            return offer;
+        }
+
+        /**
+         * Retrieves the items to add to the basket.
+         *
+         * @return The amount of units to add of each item.
+         */
+        public Map<ItemId, Integer> getAdditions() {
+            return additions;
+        }
+
+        /**
+         * Retrieves how much more the special offer discounts once the items
+         * are added.
+         *
+         * @return The saving, in GBP.
+         */
+        public BigDecimal getSaving() {
+            return BigDecimal.valueOf(saving, 2);
+        }
+
+        /**
+         * Retrieves the price of the items to add, before any discounts.
+         *
+         * @return The cost of the additions, in GBP.
+         */
+        public BigDecimal getCost() {
+            return BigDecimal.valueOf(cost, 2);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<ItemId, Integer> addition : additions.entrySet()) {
+                builder.append(builder.length() == 0 ? "Add " : " and ")
+                        .append(addition.getValue()).append(' ').append(formatItem(addition.getKey()));
+            }
+            return builder.append(" for ").append(offer.getDescription())
+                    .append(" (save ").append(formatMoney(getSaving())).append(')')
+                    .toString();
+        }
+    }
+}
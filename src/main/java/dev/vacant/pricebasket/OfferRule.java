@@ -8,6 +8,12 @@ import java.math.BigDecimal;
  * Each offer rule is configured in a dedicated data file using a line-by-line
  * textual format. A dedicated parser must be registered for each type of offer
  * rule supported.
+ * <p>
+ * Offer rules must be stateless and thread-safe: the same rule is evaluated
+ * concurrently for different baskets (e.g. by {@link AsyncPricer}), and for
+ * the same basket when it is priced in parallel (see {@link Basket}). Every
+ * method must depend only on the configuration of the rule and the basket
+ * supplied, and must not modify either of them.
  */
 public interface OfferRule {
     /**
@@ -27,6 +33,32 @@ public interface OfferRule {
      */
     BigDecimal calculateDiscount(Basket basket);
 
+    /**
+     * Calculates the applicable discount from this special offer in pence.
+     * This is used by {@link PricingContext}, so offers should override it
+     * with an implementation that doesn't allocate any objects. By default
+     * the discount from {@link #calculateDiscount(Basket)} is converted.
+     *
+     * @param basket The item basket the offer applies to.
+     * @return The total discount to be applied to the item basket, in pence.
+     */
+    default long calculateDiscountInPence(Basket basket) {
+        return calculateDiscount(basket).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Records which units of the item basket this special offer consumes, by
+     * calling {@link PricingTrace#allocate(ItemId, int)} for each item used.
+     * <p>
+     * This is only called while tracing the pricing of a basket, for offers
+     * that are applicable to it. By default no allocation is recorded.
+     *
+     * @param basket The item basket the offer applies to.
+     * @param trace  The pricing trace to record the allocation into.
+     */
+    default void traceAllocation(Basket basket, PricingTrace trace) {
+    }
+
     /**
      * Retrieves a description of the current offer.
      *
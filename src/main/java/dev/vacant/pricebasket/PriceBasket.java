@@ -13,8 +13,7 @@ import static dev.vacant.pricebasket.FormattingUtil.formatMoney;
  * This CLI application reads the configuration of the shop's catalog and
  * special offers from data files. If no data files exist in the working
  * directory then the default data files (bundled with the application) will be
- * used instead. These default data files will be persisted to disk in order to
- * provide a basis for external configuration.
+ * used instead.
  * <p>
  * All of the parameters to the application are taken as case-insensitive names
  * of the items to be added to the item basket for pricing. The output of the
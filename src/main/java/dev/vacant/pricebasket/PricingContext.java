@@ -0,0 +1,196 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reusable scratch space for pricing item baskets.
+ * <p>
+ * Pricing a basket through a context works on amounts in pence and keeps the
+ * applicable offers and their discounts in preallocated arrays, which are only
+ * grown when an offer package doesn't fit. Once warmed up, {@link
+ * #price(Basket)} doesn't allocate any objects (as long as every offer
+ * overrides {@link OfferRule#calculateDiscountInPence(Basket)}), so a thread
+ * can keep one context around and price baskets at a high rate without putting
+ * pressure on the garbage collector. An immutable {@link Basket.Price} is only
+ * built when requested through {@link #toPrice()}.
+ * <p>
+ * The results are exactly the same as those of {@link Basket#price()}.
+ * Instances are not thread-safe.
+ */
+public class PricingContext {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private OfferRule[] offers;
+    private long[] discounts;
+    private int offerCount;
+
+    private final BasketTotals totals = new BasketTotals();
+    private long subtotal;
+    private long total;
+
+    /**
+     * Creates a new context with room for a few applicable offers.
+     */
+    public PricingContext() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new context with room for the given amount of applicable
+     * offers before having to grow.
+     *
+     * @param capacity The initial capacity of the context.
+     */
+    public PricingContext(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        offers = new OfferRule[capacity];
+        discounts = new long[capacity];
+    }
+
+    /**
+     * Prices a basket, replacing the results of the previous basket priced
+     * with this context.
+     *
+     * @param basket The basket to price.
+     */
+    public void price(Basket basket) {
+        requireNonNull(basket, "basket is required");
+        OfferPackage offerPackage = basket.getOfferPackage();
+        List<CouponBook.Coupon> coupons = basket.getCoupons();
+        ensureCapacity(offerPackage.getOfferCount() + coupons.size());
+
+        Arrays.fill(offers, 0, offerCount, null);
+        subtotal = basket.calculateSubtotalInPence();
+        offerCount = offerPackage.collectApplicableOffers(basket, offers);
+        for (int i = 0; i < coupons.size(); i++) {
+            OfferRule offer = coupons.get(i).getOffer();
+            if (!(offer instanceof BasketOfferRule) && offer.isApplicable(basket))
+                offers[offerCount++] = offer;
+        }
+
+        totals.reset(subtotal, basket.getUnitCount());
+        for (int i = 0; i < offerCount; i++) {
+            discounts[i] = offers[i].calculateDiscountInPence(basket);
+            totals.deduct(discounts[i]);
+        }
+
+        List<BasketOfferRule> basketOffers = offerPackage.getBasketOffers();
+        for (int i = 0; i < basketOffers.size(); i++) {
+            applyBasketOffer(basketOffers.get(i));
+        }
+        for (int i = 0; i < coupons.size(); i++) {
+            OfferRule offer = coupons.get(i).getOffer();
+            if (offer instanceof BasketOfferRule)
+                applyBasketOffer((BasketOfferRule) offer);
+        }
+        this.total = Math.max(totals.getRunningTotalInPence(), 0);
+    }
+
+    private void applyBasketOffer(BasketOfferRule offer) {
+        if (offer.isApplicable(totals)) {
+            offers[offerCount] = offer;
+            discounts[offerCount] = offer.calculateDiscountInPence(totals);
+            totals.deduct(discounts[offerCount++]);
+        }
+    }
+
+    /**
+     * Retrieves the subtotal of the last basket priced.
+     *
+     * @return The subtotal of the basket, in pence.
+     */
+    public long getSubtotalInPence() {
+        return subtotal;
+    }
+
+    /**
+     * Retrieves the total of the last basket priced.
+     *
+     * @return The total of the basket, in pence.
+     */
+    public long getTotalInPence() {
+        return total;
+    }
+
+    /**
+     * Retrieves the amount of special offers applied to the last basket
+     * priced.
+     *
+     * @return The amount of offers applied.
+     */
+    public int getOfferCount() {
+        return offerCount;
+    }
+
+    /**
+     * Retrieves a special offer applied to the last basket priced.
+     *
+     * @param offer The index of the offer, in the order it was applied.
+     * @return The offer applied.
+     */
+    public OfferRule getOffer(int offer) {
+        checkOffer(offer);
+        return offers[offer];
+    }
+
+    /**
+     * Retrieves the discount of a special offer applied to the last basket
+     * priced.
+     *
+     * @param offer The index of the offer, in the order it was applied.
+     * @return The discount of the offer, in pence.
+     */
+    public long getDiscountInPence(int offer) {
+        checkOffer(offer);
+        return discounts[offer];
+    }
+
+    /**
+     * Builds an immutable copy of the results of the last basket priced.
+     *
+     * @return The price of the basket.
+     */
+    public Basket.Price toPrice() {
+        BigDecimal[] discounts = new BigDecimal[offerCount];
+        for (int i = 0; i < offerCount; i++) {
+            discounts[i] = BigDecimal.valueOf(this.discounts[i], 2);
+        }
+        return new Basket.Price(
+                BigDecimal.valueOf(subtotal, 2),
+                BigDecimal.valueOf(total, 2),
+                Arrays.copyOf(offers, offerCount),
+                discounts
+        );
+    }
+
+    /**
+     * Divides two non-negative amounts, rounding to the nearest neighbour
+     * (and towards the even neighbour when equidistant).
+     */
+    static long divideHalfEven(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long twiceRemainder = 2 * (dividend % divisor);
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) != 0))
+            quotient++;
+        return quotient;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > offers.length) {
+            int newCapacity = Math.max(capacity, offers.length * 2);
+            offers = Arrays.copyOf(offers, newCapacity);
+            discounts = Arrays.copyOf(discounts, newCapacity);
+        }
+    }
+
+    private void checkOffer(int offer) {
+        if (offer < 0 || offer >= offerCount)
+            throw new IndexOutOfBoundsException("Index " + offer + " out of bounds for length " + offerCount);
+    }
+}
@@ -0,0 +1,251 @@
+package dev.vacant.pricebasket;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flight Recorder events emitted while loading data files and pricing baskets.
+ * <p>
+ * The events are disabled by default and have to be enabled in the recording
+ * settings (e.g. {@code dev.vacant.pricebasket.BasketPricing#enabled=true}).
+ * Until then, or when the JVM has no Flight Recorder at all, emitting an event
+ * amounts to checking a flag, without creating any event objects.
+ */
+final class PricingEvents {
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private PricingEvents() {
+    }
+
+    /**
+     * Begins a basket pricing event.
+     *
+     * @return The event, or {@code null} if it is disabled.
+     */
+    static BasketPricing beginPricing() {
+        if (!AVAILABLE || !Types.PRICING.isEnabled())
+            return null;
+        BasketPricing event = new BasketPricing();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a basket pricing event, committing it if it passes the recording
+     * settings.
+     *
+     * @param event      The event, possibly {@code null}.
+     * @param units      The amount of units in the basket.
+     * @param items      The amount of distinct items in the basket.
+     * @param offerCount The amount of offers applied.
+     */
+    static void endPricing(BasketPricing event, int units, int items, int offerCount) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.units = units;
+            event.items = items;
+            event.offers = offerCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Begins a data file load event.
+     *
+     * @return The event, or {@code null} if it is disabled.
+     */
+    static DataFileLoad beginLoad() {
+        if (!AVAILABLE || !Types.LOAD.isEnabled())
+            return null;
+        DataFileLoad event = new DataFileLoad();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends a data file load event, committing it if it passes the recording
+     * settings.
+     *
+     * @param event    The event, possibly {@code null}.
+     * @param dataFile The relative path to the data file loaded.
+     * @param entries  The amount of entries loaded.
+     * @param bytes    The amount of (uncompressed) bytes read, or {@code -1}
+     *                 if unknown.
+     */
+    static void endLoad(DataFileLoad event, String dataFile, int entries, long bytes) {
+        if (event == null)
+            return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.dataFile = dataFile;
+            event.entries = entries;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Begins timing the offer parsers while rules are parsed.
+     *
+     * @return The timings, or {@code null} if the parsing events are disabled.
+     */
+    static ParserTimings beginParsing() {
+        if (!AVAILABLE || !Types.PARSING.isEnabled())
+            return null;
+        return new ParserTimings();
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, PricingEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * Types of the events, only resolved once the Flight Recorder is known to
+     * be available.
+     */
+    private static class Types {
+        static final EventType PRICING = EventType.getEventType(BasketPricing.class);
+        static final EventType LOAD = EventType.getEventType(DataFileLoad.class);
+        static final EventType PARSING = EventType.getEventType(OfferParsing.class);
+    }
+
+    /**
+     * Time spent in each offer parser over the parsing of several rules, one
+     * event being committed per parser once done.
+     */
+    static class ParserTimings {
+        private final long startTime = System.nanoTime();
+        private final List<OfferParser> parsers = new ArrayList<>();
+        private long[] nanos = new long[8];
+        private int[] rules = new int[8];
+        private int[] matches = new int[8];
+
+        private ParserTimings() {
+        }
+
+        /**
+         * Records one call to a parser.
+         *
+         * @param index   The position of the parser among the ones called for
+         *                each rule.
+         * @param parser  The parser called.
+         * @param nanos   The time spent in the call, in nanoseconds.
+         * @param matched Whether the parser recognized the rule.
+         */
+        void record(int index, OfferParser parser, long nanos, boolean matched) {
+            if (index == parsers.size()) {
+                parsers.add(parser);
+                if (index == this.nanos.length) {
+                    this.nanos = Arrays.copyOf(this.nanos, index * 2);
+                    rules = Arrays.copyOf(rules, index * 2);
+                    matches = Arrays.copyOf(matches, index * 2);
+                }
+            }
+            this.nanos[index] += nanos;
+            rules[index]++;
+            if (matched)
+                matches[index]++;
+        }
+
+        /**
+         * Commits one event per parser called, along with the time spent
+         * parsing the rules as a whole.
+         */
+        void commit() {
+            for (int i = 0; i < parsers.size(); i++) {
+                OfferParsing event = new OfferParsing();
+                if (!event.shouldCommit())
+                    continue;
+                event.parser = parsers.get(i).getClass();
+                event.rules = rules[i];
+                event.matches = matches[i];
+                event.parseTime = nanos[i];
+                event.wallTime = System.nanoTime() - startTime;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("dev.vacant.pricebasket.BasketPricing")
+    @Label("Basket Pricing")
+    @Description("Pricing of a basket through Basket.price()")
+    @Category("Price Basket")
+    @Enabled(false)
+    @StackTrace(false)
+    static class BasketPricing extends Event {
+        @Label("Units")
+        int units;
+
+        @Label("Items")
+        @Description("Distinct items in the basket")
+        int items;
+
+        @Label("Offers")
+        @Description("Special offers applied to the basket")
+        int offers;
+    }
+
+    @Name("dev.vacant.pricebasket.DataFileLoad")
+    @Label("Data File Load")
+    @Description("Loading of an item catalog or special offer package")
+    @Category("Price Basket")
+    @Enabled(false)
+    static class DataFileLoad extends Event {
+        @Label("Data File")
+        String dataFile;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("dev.vacant.pricebasket.OfferParsing")
+    @Label("Offer Parsing")
+    @Description("Time spent in an offer parser while parsing the rules of a special offer package")
+    @Category("Price Basket")
+    @Enabled(false)
+    @StackTrace(false)
+    static class OfferParsing extends Event {
+        @Label("Parser")
+        Class<?> parser;
+
+        @Label("Rules")
+        @Description("Rules handed to the parser")
+        int rules;
+
+        @Label("Matches")
+        @Description("Rules recognized by the parser")
+        int matches;
+
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+
+        @Label("Wall Time")
+        @Description("Time spent parsing the rules with all of the parsers")
+        @Timespan
+        long wallTime;
+    }
+}
@@ -0,0 +1,354 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static dev.vacant.pricebasket.FormattingUtil.formatMoney;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Detailed record of how the price of an item basket was reached.
+ * <p>
+ * A trace captures every line of the basket (item, amount, unit price and line
+ * subtotal), every special offer applied to it (identified by the line number
+ * of its rule in the offers data file, along with its description and
+ * discount) and which units of the basket each of those offers consumed.
+ * <p>
+ * Traces are meant to be reused: all of the entries are kept in preallocated
+ * arrays which are only grown when a basket doesn't fit, and {@link #reset()}
+ * simply rewinds them. A thread can therefore keep one trace around and pass it
+ * to {@link Basket#price(PricingTrace)} without incurring allocations for the
+ * trace itself. Instances are not thread-safe.
+ */
+public class PricingTrace {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int lineCount;
+    private ItemId[] lineItems;
+    private int[] lineAmounts;
+    private BigDecimal[] linePrices;
+    private BigDecimal[] lineSubtotals;
+
+    private int offerCount;
+    private int[] offerRuleLines;
+    private String[] offerDescriptions;
+    private BigDecimal[] offerDiscounts;
+
+    private int allocationCount;
+    private int[] allocationOffers;
+    private ItemId[] allocationItems;
+    private int[] allocationUnits;
+
+    private BigDecimal subtotal;
+    private BigDecimal total;
+
+    /**
+     * Creates a new trace with room for a few basket lines, offers and
+     * allocations.
+     */
+    public PricingTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new trace with room for the given amount of basket lines,
+     * offers and allocations before having to grow.
+     *
+     * @param capacity The initial capacity of the trace.
+     */
+    public PricingTrace(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        lineItems = new ItemId[capacity];
+        lineAmounts = new int[capacity];
+        linePrices = new BigDecimal[capacity];
+        lineSubtotals = new BigDecimal[capacity];
+
+        offerRuleLines = new int[capacity];
+        offerDescriptions = new String[capacity];
+        offerDiscounts = new BigDecimal[capacity];
+
+        allocationOffers = new int[capacity];
+        allocationItems = new ItemId[capacity];
+        allocationUnits = new int[capacity];
+    }
+
+    /**
+     * Discards all of the recorded entries, keeping the allocated capacity.
+     */
+    public void reset() {
+        Arrays.fill(lineItems, 0, lineCount, null);
+        Arrays.fill(linePrices, 0, lineCount, null);
+        Arrays.fill(lineSubtotals, 0, lineCount, null);
+        Arrays.fill(offerDescriptions, 0, offerCount, null);
+        Arrays.fill(offerDiscounts, 0, offerCount, null);
+        Arrays.fill(allocationItems, 0, allocationCount, null);
+
+        lineCount = 0;
+        offerCount = 0;
+        allocationCount = 0;
+        subtotal = null;
+        total = null;
+    }
+
+    /**
+     * Records that the offer currently being applied consumes a number of units
+     * of an item in the basket.
+     * <p>
+     * This is meant to be called by {@link OfferRule#traceAllocation(Basket,
+     * PricingTrace)} implementations.
+     *
+     * @param itemId The ID of the item consumed.
+     * @param units  The amount of units consumed.
+     * @throws IllegalStateException If no offer is currently being applied.
+     */
+    public void allocate(ItemId itemId, int units) {
+        requireNonNull(itemId, "itemId is required");
+        if (offerCount == 0)
+            throw new IllegalStateException("No offer is being applied");
+        if (units <= 0)
+            return;
+
+        if (allocationCount == allocationItems.length) {
+            int capacity = allocationCount * 2;
+            allocationOffers = Arrays.copyOf(allocationOffers, capacity);
+            allocationItems = Arrays.copyOf(allocationItems, capacity);
+            allocationUnits = Arrays.copyOf(allocationUnits, capacity);
+        }
+
+        allocationOffers[allocationCount] = offerCount - 1;
+        allocationItems[allocationCount] = itemId;
+        allocationUnits[allocationCount] = units;
+        allocationCount++;
+    }
+
+    void recordLine(ItemId itemId, int amount, BigDecimal price, BigDecimal lineSubtotal) {
+        if (lineCount == lineItems.length) {
+            int capacity = lineCount * 2;
+            lineItems = Arrays.copyOf(lineItems, capacity);
+            lineAmounts = Arrays.copyOf(lineAmounts, capacity);
+            linePrices = Arrays.copyOf(linePrices, capacity);
+            lineSubtotals = Arrays.copyOf(lineSubtotals, capacity);
+        }
+
+        lineItems[lineCount] = itemId;
+        lineAmounts[lineCount] = amount;
+        linePrices[lineCount] = price;
+        lineSubtotals[lineCount] = lineSubtotal;
+        lineCount++;
+    }
+
+    void recordOffer(int ruleLine, String description, BigDecimal discount) {
+        if (offerCount == offerDescriptions.length) {
+            int capacity = offerCount * 2;
+            offerRuleLines = Arrays.copyOf(offerRuleLines, capacity);
+            offerDescriptions = Arrays.copyOf(offerDescriptions, capacity);
+            offerDiscounts = Arrays.copyOf(offerDiscounts, capacity);
+        }
+
+        offerRuleLines[offerCount] = ruleLine;
+        offerDescriptions[offerCount] = description;
+        offerDiscounts[offerCount] = discount;
+        offerCount++;
+    }
+
+    void recordTotals(BigDecimal subtotal, BigDecimal total) {
+        this.subtotal = subtotal;
+        this.total = total;
+    }
+
+    /**
+     * Retrieves the amount of basket lines recorded (one per distinct item).
+     *
+     * @return The amount of basket lines.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Retrieves the ID of the item in a basket line.
+     *
+     * @param line The index of the basket line.
+     * @return The ID of the item.
+     */
+    public ItemId getLineItem(int line) {
+        checkIndex(line, lineCount);
+        return lineItems[line];
+    }
+
+    /**
+     * Retrieves the amount of units in a basket line.
+     *
+     * @param line The index of the basket line.
+     * @return The amount of units of the item.
+     */
+    public int getLineAmount(int line) {
+        checkIndex(line, lineCount);
+        return lineAmounts[line];
+    }
+
+    /**
+     * Retrieves the unit price of the item in a basket line.
+     *
+     * @param line The index of the basket line.
+     * @return The unit price of the item.
+     */
+    public BigDecimal getLineUnitPrice(int line) {
+        checkIndex(line, lineCount);
+        return linePrices[line];
+    }
+
+    /**
+     * Retrieves the price of all of the units in a basket line, before applying
+     * any special offers.
+     *
+     * @param line The index of the basket line.
+     * @return The subtotal of the basket line.
+     */
+    public BigDecimal getLineSubtotal(int line) {
+        checkIndex(line, lineCount);
+        return lineSubtotals[line];
+    }
+
+    /**
+     * Retrieves the amount of special offers applied to the basket.
+     *
+     * @return The amount of offers applied.
+     */
+    public int getOfferCount() {
+        return offerCount;
+    }
+
+    /**
+     * Retrieves the line number of the rule of an applied offer in the offers
+     * data file, which uniquely identifies it.
+     *
+     * @param offer The index of the applied offer.
+     * @return The line number of the offer's rule, or {@code 0} if unknown.
+     */
+    public int getOfferRuleLine(int offer) {
+        checkIndex(offer, offerCount);
+        return offerRuleLines[offer];
+    }
+
+    /**
+     * Retrieves the description of an applied offer.
+     *
+     * @param offer The index of the applied offer.
+     * @return The description of the offer.
+     */
+    public String getOfferDescription(int offer) {
+        checkIndex(offer, offerCount);
+        return offerDescriptions[offer];
+    }
+
+    /**
+     * Retrieves the discount of an applied offer.
+     *
+     * @param offer The index of the applied offer.
+     * @return The discount of the offer.
+     */
+    public BigDecimal getOfferDiscount(int offer) {
+        checkIndex(offer, offerCount);
+        return offerDiscounts[offer];
+    }
+
+    /**
+     * Retrieves the amount of unit allocations recorded by the applied offers.
+     *
+     * @return The amount of allocations.
+     */
+    public int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Retrieves the index of the applied offer that recorded an allocation.
+     *
+     * @param allocation The index of the allocation.
+     * @return The index of the applied offer.
+     */
+    public int getAllocationOffer(int allocation) {
+        checkIndex(allocation, allocationCount);
+        return allocationOffers[allocation];
+    }
+
+    /**
+     * Retrieves the ID of the item consumed by an allocation.
+     *
+     * @param allocation The index of the allocation.
+     * @return The ID of the item consumed.
+     */
+    public ItemId getAllocationItem(int allocation) {
+        checkIndex(allocation, allocationCount);
+        return allocationItems[allocation];
+    }
+
+    /**
+     * Retrieves the amount of units consumed by an allocation.
+     *
+     * @param allocation The index of the allocation.
+     * @return The amount of units consumed.
+     */
+    public int getAllocationUnits(int allocation) {
+        checkIndex(allocation, allocationCount);
+        return allocationUnits[allocation];
+    }
+
+    /**
+     * Retrieves the subtotal of the traced basket.
+     *
+     * @return The subtotal, or {@code null} if nothing was traced yet.
+     */
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+
+    /**
+     * Retrieves the total of the traced basket.
+     *
+     * @return The total, or {@code null} if nothing was traced yet.
+     */
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            builder.append(lineItems[i]).append(" x").append(lineAmounts[i])
+                    .append(" @ ").append(formatMoney(linePrices[i]))
+                    .append(": ").append(formatMoney(lineSubtotals[i]))
+                    .append('\n');
+        }
+        if (subtotal != null)
+            builder.append("Subtotal: ").append(formatMoney(subtotal)).append('\n');
+
+        int allocation = 0;
+        for (int i = 0; i < offerCount; i++) {
+            builder.append('#').append(offerRuleLines[i]).append(' ')
+                    .append(offerDescriptions[i]).append(": ")
+                    .append(formatMoney(offerDiscounts[i].negate()));
+            for (; allocation < allocationCount && allocationOffers[allocation] == i; allocation++) {
+                builder.append(allocation > 0 && allocationOffers[allocation - 1] == i ? ", " : " [")
+                        .append(allocationItems[allocation]).append(" x")
+                        .append(allocationUnits[allocation]);
+                if (allocation + 1 == allocationCount || allocationOffers[allocation + 1] != i)
+                    builder.append(']');
+            }
+            builder.append('\n');
+        }
+
+        if (total != null)
+            builder.append("Total: ").append(formatMoney(total)).append('\n');
+        return builder.toString();
+    }
+
+    private static void checkIndex(int index, int count) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+    }
+}
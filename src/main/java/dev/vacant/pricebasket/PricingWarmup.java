@@ -0,0 +1,244 @@
+package dev.vacant.pricebasket;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Warm-up routine for the pricing code, to be run before taking traffic.
+ * <p>
+ * Right after startup every pricing method is interpreted, so the first baskets
+ * are priced an order of magnitude slower than the ones after the JIT compiler
+ * has kicked in. The warm-up synthesises baskets from the catalog and package of
+ * special offers that make a few offers of every type applicable, and keeps
+ * building and pricing them (through both {@link Basket#price()} and {@link
+ * PricingContext}) until the JIT compiler has settled or the time budget runs
+ * out. Item names are added in varying case and spacing, so that the
+ * normalization of item IDs is warmed up as well.
+ * <p>
+ * The compiler is considered settled once enough baskets were priced to pass
+ * the compilation thresholds and the total compilation time reported by the
+ * JVM stopped growing for half a second. JVMs that don't report it are
+ * warmed up for the whole budget.
+ */
+public class PricingWarmup {
+    private static final int OFFERS_PER_TYPE = 8;
+    private static final int MAX_BASKET_UNITS = 4096;
+    private static final long ROUND_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_PRICED = 10_000;
+    private static final int QUIET_ROUNDS = 5;
+
+    private final Catalog catalog;
+    private final OfferPackage offerPackage;
+    private final List<List<String>> baskets;
+    private volatile boolean ready;
+    private volatile long priced;
+
+    /**
+     * Creates a new warm-up routine for the catalog and package of special
+     * offers supplied, synthesising its baskets.
+     *
+     * @param catalog      The item catalog.
+     * @param offerPackage The package of special offers.
+     */
+    public PricingWarmup(Catalog catalog, OfferPackage offerPackage) {
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.offerPackage = requireNonNull(offerPackage, "offerPackage is required");
+        this.baskets = synthesizeBaskets(catalog, offerPackage);
+    }
+
+    /**
+     * Runs the warm-up, pricing the synthesised baskets over and over until the
+     * JIT compiler has settled or the time budget runs out. The routine is
+     * ready once this method returns, either way.
+     *
+     * @param budget The maximum time to spend warming up.
+     * @param unit   The unit of the time budget.
+     * @return {@code true} if the JIT compiler settled within the budget,
+     * {@code false} if the budget ran out (or the thread was interrupted)
+     * first.
+     */
+    public boolean run(long budget, TimeUnit unit) {
+        requireNonNull(unit, "unit is required");
+        if (budget < 0)
+            throw new IllegalArgumentException("budget must not be negative");
+
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean monitored = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        PricingContext context = new PricingContext();
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(budget);
+        long roundEnd = start + ROUND_NANOS;
+        long compilationTime = -1;
+        int quietRounds = 0;
+        long checksum = 0;
+        long count = 0;
+        boolean settled = baskets.isEmpty();
+        try {
+            for (int i = 0; !settled && !Thread.currentThread().isInterrupted(); i++) {
+                long now = System.nanoTime();
+                if (now - deadline >= 0)
+                    break;
+                if (now - roundEnd >= 0) {
+                    roundEnd = now + ROUND_NANOS;
+                    priced = count;
+                    if (monitored && count >= MIN_PRICED) {
+                        long time = compiler.getTotalCompilationTime();
+                        quietRounds = time == compilationTime ? quietRounds + 1 : 0;
+                        compilationTime = time;
+                        settled = quietRounds >= QUIET_ROUNDS;
+                    }
+                }
+
+                Basket basket = newBasket(baskets.get(i % baskets.size()));
+                checksum += basket.price().getTotal().unscaledValue().longValue();
+                context.price(basket);
+                checksum += context.getTotalInPence();
+                count++;
+            }
+        } finally {
+            priced = count;
+            ready = true;
+        }
+
+        // Keeps the pricing from being optimized away
+        if (checksum == Long.MIN_VALUE)
+            throw new AssertionError();
+        return settled;
+    }
+
+    /**
+     * Checks whether the warm-up has finished, e.g. for a readiness probe
+     * polled from another thread.
+     *
+     * @return {@code true} if the warm-up has finished, {@code false} if it
+     * hasn't run yet or is still running.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Retrieves the amount of baskets priced so far while warming up.
+     *
+     * @return The amount of baskets priced.
+     */
+    public long getPricedCount() {
+        return priced;
+    }
+
+    /**
+     * Retrieves the baskets synthesised for the warm-up.
+     *
+     * @return The names of the units in each basket.
+     */
+    List<List<String>> getBaskets() {
+        return baskets;
+    }
+
+    private Basket newBasket(List<String> names) {
+        Basket basket = new Basket(catalog, offerPackage);
+        for (String name : names) {
+            basket.addItem(name);
+        }
+        return basket;
+    }
+
+    private static List<List<String>> synthesizeBaskets(Catalog catalog, OfferPackage offerPackage) {
+        List<List<String>> baskets = new ArrayList<>();
+        Map<Class<?>, Integer> offersPerType = new HashMap<>();
+        List<String> mixed = new ArrayList<>();
+        ItemId mostExpensive = null;
+        for (OfferRule offer : offerPackage.getAvailableOffers()) {
+            int count = offersPerType.merge(offer.getClass(), 1, Integer::sum);
+            if (count > OFFERS_PER_TYPE)
+                continue;
+
+            List<String> basket = new ArrayList<>();
+            if (offer instanceof DiscountOffer) {
+                DiscountOffer discount = (DiscountOffer) offer;
+                addUnits(basket, discount.getItemId(), Math.min(discount.getMaxUnits(), 2) + 1);
+            } else if (offer instanceof BundleOffer) {
+                BundleOffer bundle = (BundleOffer) offer;
+                addUnits(basket, bundle.getRequiredItemId(), bundle.getMinAmount() * 2);
+                addUnits(basket, bundle.getDiscountedItemId(), 2);
+            } else if (offer instanceof BasketOfferRule) {
+                if (mostExpensive == null)
+                    mostExpensive = findMostExpensive(catalog);
+                if (mostExpensive != null)
+                    addUnitsUntilApplicable(basket, catalog, mostExpensive, (BasketOfferRule) offer);
+            }
+            if (!basket.isEmpty()) {
+                baskets.add(basket);
+                mixed.addAll(basket.subList(0, Math.min(basket.size(), 4)));
+            }
+        }
+
+        // Offers of other types are only covered by chance, through baskets of
+        // several different items
+        Iterator<ItemId> items = catalog.getAllItems().iterator();
+        for (int i = 0; i < 8 && items.hasNext(); i++) {
+            addUnits(mixed, items.next(), 1);
+        }
+        if (!mixed.isEmpty())
+            baskets.add(mixed);
+        return baskets;
+    }
+
+    private static ItemId findMostExpensive(Catalog catalog) {
+        ItemId mostExpensive = null;
+        BigDecimal highestPrice = null;
+        for (ItemId itemId : catalog.getAllItems()) {
+            BigDecimal price = catalog.getPriceFor(itemId);
+            if (highestPrice == null || price.compareTo(highestPrice) > 0) {
+                mostExpensive = itemId;
+                highestPrice = price;
+            }
+        }
+        return mostExpensive;
+    }
+
+    /**
+     * Adds units of an item until a basket-level offer becomes applicable,
+     * doubling them every time.
+     */
+    private static void addUnitsUntilApplicable(List<String> basket,
+                                                Catalog catalog,
+                                                ItemId itemId,
+                                                BasketOfferRule offer
+    ) {
+        long priceInPence = catalog.getPriceInPenceFor(itemId);
+        BasketTotals totals = new BasketTotals();
+        int units = 1;
+        totals.reset(priceInPence, units);
+        while (!offer.isApplicable(totals) && units < MAX_BASKET_UNITS) {
+            units *= 2;
+            totals.reset(priceInPence * units, units);
+        }
+        addUnits(basket, itemId, units);
+    }
+
+    /**
+     * Adds units of an item, spelling its name differently for every unit.
+     */
+    private static void addUnits(List<String> basket, ItemId itemId, int units) {
+        String name = itemId.toString();
+        for (int i = 0; i < units; i++) {
+            switch (basket.size() % 3) {
+                case 0:
+                    basket.add(name);
+                    break;
+                case 1:
+                    basket.add(name.toLowerCase(Locale.ROOT));
+                    break;
+                default:
+                    basket.add(" " + name.replace(" ", "  ") + "\t");
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package dev.vacant.pricebasket;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Simulator of the impact of changing the special offers on historical
+ * baskets, e.g. before publishing a new offers data file.
+ * <p>
+ * The baskets are kept in a columnar store: the ordinals (see {@link
+ * CatalogOrdinals}) and amounts of all of their lines in two columns, and where
+ * the lines of each basket start in a third one. On top of it, a posting index
+ * lists the baskets containing each item, in ascending order. The columns of
+ * the lines and of the posting index are split into fixed-size segments
+ * addressed by {@code long} offsets, so the amount of lines is only bounded by
+ * the heap.
+ * <p>
+ * Only the baskets whose price can change are repriced. A simulation compares
+ * the rules of the baseline and candidate packages. When only item-level
+ * offers were added or removed, the affected baskets are the ones with the
+ * items of those offers, found through the posting index. A {@link
+ * BundleOffer} needs both of its items in a basket, so only the baskets of its
+ * rarest item are affected. Changes to basket-level offers, or to offers of
+ * other types, affect every basket. The affected baskets are repriced in
+ * parallel with both packages, indexing their offers by item as well so that
+ * only the offers involving the items of each basket are evaluated.
+ * <p>
+ * Baskets are added first, from a single thread, and simulations then run
+ * against them (possibly from several threads). Just under {@link
+ * Integer#MAX_VALUE} baskets can be stored in total.
+ */
+public class PromotionSimulator {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Catalog catalog;
+    private int basketCount;
+    private long[] basketStarts;
+    private final IntColumn lineOrdinals;
+    private final IntColumn lineAmounts;
+    private volatile PostingIndex postings;
+
+    /**
+     * Creates a new empty simulator for baskets of the catalog supplied.
+     *
+     * @param catalog The item catalog of the baskets.
+     */
+    public PromotionSimulator(Catalog catalog) {
+        this.catalog = requireNonNull(catalog, "catalog is required");
+        this.basketStarts = new long[1024 + 1];
+        this.lineOrdinals = new IntColumn();
+        this.lineAmounts = new IntColumn();
+    }
+
+    /**
+     * Adds a historical basket.
+     *
+     * @param basket The basket to add.
+     * @throws IllegalArgumentException If the basket has items that are not
+     *                                  part of the catalog.
+     */
+    public void addBasket(Basket basket) {
+        requireNonNull(basket, "basket is required");
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        Map<ItemId, Integer> items = basket.getItems();
+        int[] basketOrdinals = new int[items.size()];
+        int count = 0;
+        for (ItemId itemId : items.keySet()) {
+            int ordinal = ordinals.ordinalOf(itemId);
+            if (ordinal < 0)
+                throw new IllegalArgumentException(itemId + " doesn't exist in the catalog");
+            basketOrdinals[count++] = ordinal;
+        }
+
+        // Lines are kept in ascending order of ordinal, like encoded baskets
+        Arrays.sort(basketOrdinals);
+        for (int ordinal : basketOrdinals) {
+            addLine(ordinal, items.get(ordinals.itemAt(ordinal)));
+        }
+        endBasket();
+    }
+
+    /**
+     * Adds the historical baskets encoded (in the binary form) one after the
+     * other in a buffer, without decoding them into {@link Basket}s.
+     *
+     * @param buffer The buffer holding the encoded baskets, read from its
+     *               position up to its limit.
+     * @param codec  The codec the baskets were encoded with, for the same
+     *               catalog as this simulator.
+     * @return The amount of baskets added.
+     * @throws IllegalArgumentException If the codec is for a different
+     *                                  catalog, or any of the baskets is
+     *                                  malformed or was encoded with a
+     *                                  different catalog.
+     */
+    public int addEncodedBaskets(ByteBuffer buffer, BasketCodec codec) {
+        requireNonNull(buffer, "buffer is required");
+        requireNonNull(codec, "codec is required");
+        if (codec.getCatalogStamp() != catalog.getOrdinals().getStamp())
+            throw new IllegalArgumentException("Codec must be for the catalog of the simulator");
+        int added = 0;
+        while (buffer.hasRemaining()) {
+            long start = lineOrdinals.size();
+            try {
+                codec.decodeLines(buffer, this::addLine);
+            } catch (IllegalArgumentException cause) {
+                lineOrdinals.truncate(start);
+                lineAmounts.truncate(start);
+                throw cause;
+            }
+            endBasket();
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Retrieves the amount of historical baskets added.
+     *
+     * @return The amount of baskets.
+     */
+    public int size() {
+        return basketCount;
+    }
+
+    /**
+     * Simulates replacing the baseline package of special offers by a
+     * candidate one, repricing the baskets affected by the change.
+     *
+     * @param baseline  The package of special offers the baskets were priced
+     *                  with.
+     * @param candidate The package of special offers to simulate.
+     * @return The impact of the change on the historical baskets.
+     * @throws IllegalArgumentException If either package is not for the
+     *                                  catalog of this simulator.
+     */
+    public Impact simulate(OfferPackage baseline, OfferPackage candidate) {
+        requireNonNull(baseline, "baseline is required");
+        requireNonNull(candidate, "candidate is required");
+        if (baseline.getCatalog() != catalog || candidate.getCatalog() != catalog)
+            throw new IllegalArgumentException("Offer packages must be for the catalog of the simulator");
+
+        BitSet affected = findAffectedBaskets(baseline, candidate);
+        int affectedCount = affected.cardinality();
+
+        // Chunks of basket IDs are priced independently and summed in order
+        IndexedOffers baselineOffers = new IndexedOffers(baseline);
+        IndexedOffers candidateOffers = new IndexedOffers(candidate);
+        int chunks = (basketCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long[][] totals = new long[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> totals[chunk] = priceChunk(
+                affected, chunk * CHUNK_SIZE, Math.min(basketCount, (chunk + 1) * CHUNK_SIZE),
+                baselineOffers, candidateOffers));
+
+        long baselineDiscount = 0;
+        long candidateDiscount = 0;
+        int changedCount = 0;
+        for (long[] chunkTotals : totals) {
+            baselineDiscount += chunkTotals[0];
+            candidateDiscount += chunkTotals[1];
+            changedCount += (int) chunkTotals[2];
+        }
+        return new Impact(basketCount, affectedCount, changedCount, baselineDiscount, candidateDiscount);
+    }
+
+    private BitSet findAffectedBaskets(OfferPackage baseline, OfferPackage candidate) {
+        BitSet affected = new BitSet(basketCount);
+        List<OfferRule> changed = new ArrayList<>();
+        if (!getBasketRules(baseline).equals(getBasketRules(candidate))) {
+            affected.set(0, basketCount);
+            return affected;
+        }
+        collectChanged(baseline, candidate, changed);
+        collectChanged(candidate, baseline, changed);
+
+        PostingIndex index = getPostings();
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        for (OfferRule offer : changed) {
+            int ordinal;
+            if (offer instanceof DiscountOffer) {
+                ordinal = ordinals.ordinalOf(((DiscountOffer) offer).getItemId());
+            } else if (offer instanceof BundleOffer) {
+                int required = ordinals.ordinalOf(((BundleOffer) offer).getRequiredItemId());
+                int discounted = ordinals.ordinalOf(((BundleOffer) offer).getDiscountedItemId());
+                ordinal = index.countOf(required) <= index.countOf(discounted) ? required : discounted;
+            } else {
+                affected.set(0, basketCount);
+                return affected;
+            }
+            index.markBasketsWith(ordinal, affected);
+        }
+        return affected;
+    }
+
+    /**
+     * Collects the item-level offers of a package whose rules are not in the
+     * other package (as many times).
+     */
+    private static void collectChanged(OfferPackage offerPackage, OfferPackage other, List<OfferRule> changed) {
+        Map<String, Integer> otherRules = new HashMap<>();
+        for (String rule : other.getRules()) {
+            otherRules.merge(rule, 1, Integer::sum);
+        }
+        List<OfferRule> offers = offerPackage.getAvailableOffers();
+        List<String> rules = offerPackage.getRules();
+        for (int i = 0; i < offers.size(); i++) {
+            if (offers.get(i) instanceof BasketOfferRule)
+                continue;
+            Integer remaining = otherRules.get(rules.get(i));
+            if (remaining == null || remaining == 0) {
+                changed.add(offers.get(i));
+            } else {
+                otherRules.put(rules.get(i), remaining - 1);
+            }
+        }
+    }
+
+    private static List<String> getBasketRules(OfferPackage offerPackage) {
+        List<String> basketRules = new ArrayList<>();
+        List<OfferRule> offers = offerPackage.getAvailableOffers();
+        for (int i = 0; i < offers.size(); i++) {
+            if (offers.get(i) instanceof BasketOfferRule)
+                basketRules.add(offerPackage.getRules().get(i));
+        }
+        return basketRules;
+    }
+
+    /**
+     * Prices the affected baskets of a range with both packages.
+     *
+     * @return The baseline discount, the candidate discount and the amount of
+     * baskets whose total changed.
+     */
+    private long[] priceChunk(BitSet affected, int from, int to, IndexedOffers baseline, IndexedOffers candidate) {
+        CatalogOrdinals ordinals = catalog.getOrdinals();
+        Basket basket = new Basket(catalog, baseline.offerPackage);
+        BasketTotals totals = new BasketTotals();
+        long[] chunkTotals = new long[3];
+        for (int id = affected.nextSetBit(from); id >= 0 && id < to; id = affected.nextSetBit(id + 1)) {
+            long start = basketStarts[id];
+            long end = basketStarts[id + 1];
+            basket.clearItems();
+            long subtotal = 0;
+            for (long line = start; line < end; line++) {
+                int ordinal = lineOrdinals.get(line);
+                int amount = lineAmounts.get(line);
+                basket.addItems(ordinals.itemAt(ordinal), amount);
+                subtotal += catalog.getPriceInPenceAt(ordinal) * amount;
+            }
+
+            long baselineTotal = baseline.price(basket, start, end, subtotal, totals);
+            long candidateTotal = candidate.price(basket, start, end, subtotal, totals);
+            chunkTotals[0] += subtotal - baselineTotal;
+            chunkTotals[1] += subtotal - candidateTotal;
+            if (candidateTotal != baselineTotal)
+                chunkTotals[2]++;
+        }
+        return chunkTotals;
+    }
+
+    private PostingIndex getPostings() {
+        PostingIndex index = postings;
+        if (index == null || index.basketCount != basketCount) {
+            synchronized (this) {
+                index = postings;
+                if (index == null || index.basketCount != basketCount) {
+                    index = new PostingIndex(catalog.getOrdinals().size());
+                    postings = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private void addLine(int ordinal, int amount) {
+        lineOrdinals.add(ordinal);
+        lineAmounts.add(amount);
+    }
+
+    private void endBasket() {
+        if (basketCount + 1 == basketStarts.length) {
+            if (basketStarts.length >= Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many baskets for a single simulator");
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, basketStarts.length * 2L);
+            basketStarts = Arrays.copyOf(basketStarts, capacity);
+        }
+        basketStarts[++basketCount] = lineOrdinals.size();
+    }
+
+    /**
+     * Index from every item to the (ascending) IDs of the baskets containing
+     * it, stored like the lines of the baskets: the IDs of all items in one
+     * column, and where those of each item start in an array.
+     */
+    private class PostingIndex {
+        private final int basketCount;
+        private final long[] starts;
+        private final IntColumn basketIds;
+
+        PostingIndex(int itemCount) {
+            this.basketCount = PromotionSimulator.this.basketCount;
+            this.starts = new long[itemCount + 1];
+            long lineCount = basketStarts[basketCount];
+            for (long line = 0; line < lineCount; line++) {
+                starts[lineOrdinals.get(line) + 1]++;
+            }
+            for (int i = 0; i < itemCount; i++) {
+                starts[i + 1] += starts[i];
+            }
+
+            this.basketIds = new IntColumn(lineCount);
+            long[] next = Arrays.copyOf(starts, itemCount);
+            for (int basket = 0; basket < basketCount; basket++) {
+                for (long line = basketStarts[basket]; line < basketStarts[basket + 1]; line++) {
+                    basketIds.set(next[lineOrdinals.get(line)]++, basket);
+                }
+            }
+        }
+
+        long countOf(int ordinal) {
+            return starts[ordinal + 1] - starts[ordinal];
+        }
+
+        void markBasketsWith(int ordinal, BitSet baskets) {
+            for (long i = starts[ordinal]; i < starts[ordinal + 1]; i++) {
+                baskets.set(basketIds.get(i));
+            }
+        }
+    }
+
+    /**
+     * Growable column of {@code int}s addressed by {@code long} offsets, split
+     * into fixed-size segments so that it is neither limited by the maximum
+     * length of an array nor copied in full when it grows.
+     */
+    private static class IntColumn {
+        private static final int SEGMENT_BITS = 16;
+        private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+        private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+        private int[][] segments = new int[0][];
+        private int segmentCount;
+        private long size;
+
+        IntColumn() {
+        }
+
+        IntColumn(long size) {
+            ensureCapacity(size);
+            this.size = size;
+        }
+
+        long size() {
+            return size;
+        }
+
+        int get(long index) {
+            return segments[(int) (index >>> SEGMENT_BITS)][(int) index & SEGMENT_MASK];
+        }
+
+        void set(long index, int value) {
+            segments[(int) (index >>> SEGMENT_BITS)][(int) index & SEGMENT_MASK] = value;
+        }
+
+        void add(int value) {
+            ensureCapacity(size + 1);
+            set(size++, value);
+        }
+
+        /**
+         * Drops the values from an offset onwards, keeping their segments for
+         * the values added next.
+         */
+        void truncate(long size) {
+            this.size = size;
+        }
+
+        private void ensureCapacity(long capacity) {
+            long needed = (capacity + SEGMENT_MASK) >>> SEGMENT_BITS;
+            if (needed > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many values for a single column");
+            while (segmentCount < needed) {
+                if (segmentCount == segments.length)
+                    segments = Arrays.copyOf(segments, Math.max(16, segmentCount * 2));
+                segments[segmentCount++] = new int[SEGMENT_SIZE];
+            }
+        }
+    }
+
+    /**
+     * Offers of a package indexed by the items they involve, so that pricing
+     * a basket only evaluates the offers that can apply to it. Item-level
+     * discounts don't depend on each other, so the total is the same as with
+     * {@link PricingContext}, which evaluates every offer.
+     */
+    private class IndexedOffers {
+        private final OfferPackage offerPackage;
+        private final OfferRule[][] byOrdinal;
+        private final List<OfferRule> others;
+        private final List<BasketOfferRule> basketOffers;
+
+        IndexedOffers(OfferPackage offerPackage) {
+            this.offerPackage = offerPackage;
+            this.byOrdinal = new OfferRule[catalog.getOrdinals().size()][];
+            this.others = new ArrayList<>();
+            this.basketOffers = offerPackage.getBasketOffers();
+
+            // Bundles need both of their items, so indexing either is enough
+            CatalogOrdinals ordinals = catalog.getOrdinals();
+            for (OfferRule offer : offerPackage.getAvailableOffers()) {
+                int ordinal = -1;
+                if (offer instanceof DiscountOffer) {
+                    ordinal = ordinals.ordinalOf(((DiscountOffer) offer).getItemId());
+                } else if (offer instanceof BundleOffer) {
+                    ordinal = ordinals.ordinalOf(((BundleOffer) offer).getRequiredItemId());
+                } else if (!(offer instanceof BasketOfferRule)) {
+                    others.add(offer);
+                }
+                if (ordinal >= 0) {
+                    OfferRule[] indexed = byOrdinal[ordinal];
+                    indexed = indexed == null ? new OfferRule[1] : Arrays.copyOf(indexed, indexed.length + 1);
+                    indexed[indexed.length - 1] = offer;
+                    byOrdinal[ordinal] = indexed;
+                }
+            }
+        }
+
+        /**
+         * Prices a basket held in the lines of the store.
+         *
+         * @return The total of the basket, in pence.
+         */
+        long price(Basket basket, long start, long end, long subtotal, BasketTotals totals) {
+            totals.reset(subtotal, basket.getUnitCount());
+            for (long line = start; line < end; line++) {
+                OfferRule[] offers = byOrdinal[lineOrdinals.get(line)];
+                if (offers == null)
+                    continue;
+                for (OfferRule offer : offers) {
+                    if (offer.isApplicable(basket))
+                        totals.deduct(offer.calculateDiscountInPence(basket));
+                }
+            }
+            for (int i = 0; i < others.size(); i++) {
+                OfferRule offer = others.get(i);
+                if (offer.isApplicable(basket))
+                    totals.deduct(offer.calculateDiscountInPence(basket));
+            }
+            for (int i = 0; i < basketOffers.size(); i++) {
+                BasketOfferRule offer = basketOffers.get(i);
+                if (offer.isApplicable(totals))
+                    totals.deduct(offer.calculateDiscountInPence(totals));
+            }
+            return Math.max(totals.getRunningTotalInPence(), 0);
+        }
+    }
+
+    /**
+     * Impact of a change of special offers on the historical baskets.
+     */
+    public static class Impact {
+        private final int basketCount;
+        private final int affectedCount;
+        private final int changedCount;
+        private final long baselineDiscount;
+        private final long candidateDiscount;
+
+        private Impact(int basketCount,
+                       int affectedCount,
+                       int changedCount,
+                       long baselineDiscount,
+                       long candidateDiscount
+        ) {
+            this.basketCount = basketCount;
+            this.affectedCount = affectedCount;
+            this.changedCount = changedCount;
+            this.baselineDiscount = baselineDiscount;
+            this.candidateDiscount = candidateDiscount;
+        }
+
+        /**
+         * Retrieves the amount of historical baskets simulated.
+         *
+         * @return The amount of baskets.
+         */
+        public int getBasketCount() {
+            return basketCount;
+        }
+
+        /**
+         * Retrieves the amount of baskets repriced, as their price could
+         * change.
+         *
+         * @return The amount of affected baskets.
+         */
+        public int getAffectedCount() {
+            return affectedCount;
+        }
+
+        /**
+         * Retrieves the amount of baskets whose total actually changed.
+         *
+         * @return The amount of changed baskets.
+         */
+        public int getChangedCount() {
+            return changedCount;
+        }
+
+        /**
+         * Retrieves the total discount of the affected baskets with the
+         * baseline package.
+         *
+         * @return The baseline discount, in GBP.
+         */
+        public BigDecimal getBaselineDiscount() {
+            return BigDecimal.valueOf(baselineDiscount, 2);
+        }
+
+        /**
+         * Retrieves the total discount of the affected baskets with the
+         * candidate package.
+         *
+         * @return The candidate discount, in GBP.
+         */
+        public BigDecimal getCandidateDiscount() {
+            return BigDecimal.valueOf(candidateDiscount, 2);
+        }
+
+        /**
+         * Retrieves how much more is discounted with the candidate package,
+         * across all of the baskets (the ones not affected being discounted
+         * the same with both packages).
+         *
+         * @return The discount delta, in GBP, negative if the candidate
+         * package discounts less.
+         */
+        public BigDecimal getDiscountDelta() {
+            return BigDecimal.valueOf(candidateDiscount - baselineDiscount, 2);
+        }
+
+        @Override
+        public String toString() {
+            return "Repriced " + affectedCount + " of " + basketCount + " baskets, " + changedCount
+                    + " changed, discount delta " + FormattingUtil.formatMoney(getDiscountDelta());
+        }
+    }
+}
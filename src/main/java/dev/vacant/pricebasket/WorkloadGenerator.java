@@ -0,0 +1,216 @@
+package dev.vacant.pricebasket;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generator of synthetic data files and item baskets for load testing.
+ * <p>
+ * The generated catalog has the requested amount of items (named {@code
+ * "Item N"}) with random prices. Each item has a configurable chance of being
+ * discounted by a {@link DiscountOffer} and of being part of a {@link
+ * BundleOffer}. Baskets draw their items from a Zipf distribution, so that a
+ * few items are very popular (item {@code 1} being the most popular) while most
+ * of them are rarely bought, and their sizes follow a geometric distribution.
+ * <p>
+ * Generation is deterministic for a given seed. Instances are not thread-safe;
+ * concurrent users should each create their own generator with a different
+ * seed.
+ */
+public class WorkloadGenerator {
+    private final int itemCount;
+    private final double discountRatio;
+    private final double bundleRatio;
+    private final double meanBasketSize;
+    private final long seed;
+
+    private final Random random;
+    private final ZipfSampler sampler;
+
+    /**
+     * Creates a new workload generator.
+     *
+     * @param itemCount      The amount of items in the catalog.
+     * @param discountRatio  The ratio of items with a discount offer.
+     * @param bundleRatio    The ratio of items with a bundle offer.
+     * @param zipfExponent   The exponent of the item popularity distribution
+     *                       (higher values skew baskets towards popular items).
+     * @param meanBasketSize The average amount of units in a basket.
+     * @param seed           The seed for the random generation.
+     */
+    public WorkloadGenerator(int itemCount,
+                             double discountRatio,
+                             double bundleRatio,
+                             double zipfExponent,
+                             double meanBasketSize,
+                             long seed
+    ) {
+        if (itemCount < 1)
+            throw new IllegalArgumentException("itemCount must be positive");
+        if (discountRatio < 0 || discountRatio > 1 || bundleRatio < 0 || bundleRatio > 1)
+            throw new IllegalArgumentException("offer ratios must be between 0 and 1");
+        if (zipfExponent <= 0)
+            throw new IllegalArgumentException("zipfExponent must be positive");
+        if (meanBasketSize < 1)
+            throw new IllegalArgumentException("meanBasketSize must be at least 1");
+
+        this.itemCount = itemCount;
+        this.discountRatio = discountRatio;
+        this.bundleRatio = bundleRatio;
+        this.meanBasketSize = meanBasketSize;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.sampler = new ZipfSampler(itemCount, zipfExponent);
+    }
+
+    /**
+     * Writes the catalog and offers data files into a directory, so that they
+     * can be read through {@link DataReader#DataReader(Path)}.
+     * <p>
+     * The data files only depend on the seed of the generator, not on any
+     * baskets generated so far.
+     *
+     * @param directory The directory in which to write the data files.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeDataFiles(Path directory) throws IOException {
+        requireNonNull(directory, "directory is required");
+        Random random = new Random(seed);
+        int[] prices = new int[itemCount];
+
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("catalog.list"), UTF_8)) {
+            writer.write("# Generated catalog with " + itemCount + " items");
+            writer.newLine();
+            for (int i = 0; i < itemCount; i++) {
+                prices[i] = 10 + random.nextInt(1991);
+                writer.write(getItemName(i + 1) + " " + formatPence(prices[i]));
+                writer.newLine();
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("offers.list"), UTF_8)) {
+            writer.write("# Generated offers");
+            writer.newLine();
+            for (int i = 0; i < itemCount; i++) {
+                if (random.nextDouble() < discountRatio) {
+                    if (random.nextBoolean()) {
+                        writer.write(getItemName(i + 1) + " " + (5 + 5 * random.nextInt(10)) + "%");
+                    } else {
+                        writer.write(getItemName(i + 1) + " " + formatPence(1 + random.nextInt(prices[i] / 2)));
+                    }
+                    writer.newLine();
+                }
+                if (random.nextDouble() < bundleRatio) {
+                    int required = 1 + random.nextInt(itemCount);
+                    writer.write(getItemName(i + 1) + " " + formatPence(1 + random.nextInt(prices[i]))
+                            + " per " + (1 + random.nextInt(3)) + " " + getItemName(required));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the names of the units in a new random basket.
+     *
+     * @return The name of every unit in the basket (repeated for multiple units
+     * of the same item).
+     */
+    public List<String> nextBasket() {
+        // Geometric distribution starting at 1 with the requested mean
+        double p = 1 / meanBasketSize;
+        int size = 1;
+        if (p < 1)
+            size += (int) Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+
+        List<String> basket = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            basket.add(getItemName(sampler.sample(random)));
+        }
+        return basket;
+    }
+
+    /**
+     * Retrieves the name of a generated item.
+     *
+     * @param rank The popularity rank of the item, starting at {@code 1}.
+     * @return The name of the item.
+     */
+    public static String getItemName(int rank) {
+        return "Item " + rank;
+    }
+
+    private static String formatPence(int pence) {
+        return String.format(Locale.ROOT, "%d.%02d", pence / 100, pence % 100);
+    }
+
+    /**
+     * Zipf distributed sampler of ranks in {@code [1, n]}, using the
+     * rejection-inversion method so that no per-rank table is needed.
+     *
+     * @see <a href="https://doi.org/10.1145/235025.235029">Hörmann and Derflinger,
+     * Rejection-inversion to generate variates from monotone discrete
+     * distributions</a>
+     */
+    private static class ZipfSampler {
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(Random random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) (x + 0.5);
+                k = Math.max(1, Math.min(n, k));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k))
+                    return k;
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return expm1OverX((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(log1pOverX(t) * x);
+        }
+
+        private static double log1pOverX(double x) {
+            if (Math.abs(x) > 1e-8)
+                return Math.log1p(x) / x;
+            return 1 - x * (0.5 - x * (1.0 / 3 - x * 0.25));
+        }
+
+        private static double expm1OverX(double x) {
+            if (Math.abs(x) > 1e-8)
+                return Math.expm1(x) / x;
+            return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + x * 0.25));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AsyncPricer Unit Tests")
+class AsyncPricerTest {
+
+    @Test
+    @DisplayName("Single basket pricing")
+    void testBasketPricing(@TempDir Path directory) throws Exception {
+        try (AsyncPricer pricer = createPricer(directory)) {
+            final Basket.Price price = pricer.price(Arrays.asList("Apples", "Soup", "Soup", "Bread"))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertAll(
+                    () -> assertEquals(new BigDecimal("3.10"), price.getSubtotal()),
+                    () -> assertEquals(new BigDecimal("2.60"), price.getTotal())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Single basket pricing with unknown items")
+    void testBasketPricingWithUnknownItems(@TempDir Path directory) throws Exception {
+        try (AsyncPricer pricer = createPricer(directory)) {
+            final CompletableFuture<Basket.Price> price = pricer.price(Collections.singletonList("Pears"));
+
+            final ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> price.get(10, TimeUnit.SECONDS));
+            assertTrue(failure.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    @DisplayName("Stream pricing honours demand and order")
+    void testStreamPricing(@TempDir Path directory) throws Exception {
+        try (AsyncPricer pricer = createPricer(directory)) {
+            final List<Basket> baskets = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                final Basket basket = pricer.newBasket();
+                for (int j = 0; j < i; j++) {
+                    basket.addItem("Milk");
+                }
+                baskets.add(basket);
+            }
+
+            final CollectingSubscriber subscriber = new CollectingSubscriber(1);
+            pricer.priceAll(baskets).subscribe(subscriber);
+            assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+
+            assertAll(
+                    () -> assertNull(subscriber.failure),
+                    () -> assertEquals(50, subscriber.prices.size()),
+                    () -> {
+                        for (int i = 0; i < 50; i++) {
+                            assertEquals(new BigDecimal("1.30").multiply(BigDecimal.valueOf(i + 1)),
+                                    subscriber.prices.get(i).getTotal());
+                        }
+                    }
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Stream pricing stalls instead of failing when the queue is full")
+    void testStreamPricingWithFullQueue(@TempDir Path directory) throws Exception {
+        try (AsyncPricer pricer = createPricer(directory)) {
+            final List<Basket> baskets = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final Basket basket = pricer.newBasket();
+                basket.addItem("Apples");
+                baskets.add(basket);
+            }
+
+            final List<CollectingSubscriber> subscribers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final CollectingSubscriber subscriber = new CollectingSubscriber(16);
+                subscribers.add(subscriber);
+                pricer.priceAll(baskets).subscribe(subscriber);
+            }
+            for (int i = 0; i < 200; i++) {
+                pricer.price(baskets.get(i));
+            }
+
+            for (CollectingSubscriber subscriber : subscribers) {
+                assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+                assertAll(
+                        () -> assertNull(subscriber.failure),
+                        () -> assertEquals(200, subscriber.prices.size())
+                );
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Stream pricing with invalid demand")
+    void testStreamPricingWithInvalidDemand(@TempDir Path directory) throws Exception {
+        try (AsyncPricer pricer = createPricer(directory)) {
+            final CollectingSubscriber subscriber = new CollectingSubscriber(0);
+            pricer.priceAll(Collections.singletonList(pricer.newBasket())).subscribe(subscriber);
+            assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+
+            assertAll(
+                    () -> assertTrue(subscriber.failure instanceof IllegalArgumentException),
+                    () -> assertTrue(subscriber.prices.isEmpty())
+            );
+        }
+    }
+
+    private AsyncPricer createPricer(Path directory) throws IOException {
+        Files.write(directory.resolve("catalog.list"),
+                Arrays.asList("Soup 0.65", "Bread 0.80", "Milk 1.30", "Apples 1.00"), UTF_8);
+        Files.write(directory.resolve("offers.list"),
+                Arrays.asList("Apples 10%", "Bread 0.40 per 2 Soup"), UTF_8);
+
+        final DataReader reader = new DataReader(directory);
+        final Catalog catalog = new Catalog(reader);
+        final OfferPackage offerPackage = new OfferPackage(catalog, reader, ServiceLoader.load(OfferParser.class));
+        return new AsyncPricer(catalog, offerPackage, 2, 4);
+    }
+
+    /**
+     * Subscriber requesting one price at a time, after each one received.
+     */
+    private static class CollectingSubscriber implements AsyncPricer.Subscriber<Basket.Price> {
+        private final List<Basket.Price> prices = new CopyOnWriteArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final long initialDemand;
+        private volatile AsyncPricer.Subscription subscription;
+        private volatile Throwable failure;
+
+        CollectingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(AsyncPricer.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(Basket.Price item) {
+            prices.add(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BasketCodec Unit Tests")
+class BasketCodecTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65\nSugar \"Cane\" 2.50";
+
+    private Catalog catalog;
+    private OfferPackage offerPackage;
+
+    @Test
+    @DisplayName("Baskets survive a round-trip through the binary form")
+    void testBinaryRoundTrip() throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        final Basket basket = createBasket("Soup", "Apples", "soup", "Sugar \"Cane\"", "Soup");
+
+        final byte[] encoded = codec.encode(basket);
+        final Basket decoded = codec.decode(encoded);
+
+        assertAll(
+                () -> assertEquals(basket.getItems(), decoded.getItems()),
+                () -> assertEquals(basket.price().getTotal(), decoded.price().getTotal()),
+                // Header, count and three (ordinal delta, amount) pairs
+                () -> assertEquals(4 + 8 + 1 + 3 * 2, encoded.length)
+        );
+    }
+
+    @Test
+    @DisplayName("Consecutive baskets are decoded from the same buffer")
+    void testBufferDecoding() throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        final byte[] first = codec.encode(createBasket("Milk"));
+        final byte[] second = codec.encode(createBasket("Bread", "Bread"));
+
+        final ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+        buffer.put(first).put(second).flip();
+
+        assertAll(
+                () -> assertEquals(1, codec.decode(buffer).getAmountOf(new ItemId("Milk"))),
+                () -> assertEquals(2, codec.decode(buffer).getAmountOf(new ItemId("Bread"))),
+                () -> assertFalse(buffer.hasRemaining())
+        );
+    }
+
+    @Test
+    @DisplayName("Baskets from a different catalog are rejected")
+    void testDifferentCatalog() throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        final byte[] encoded = codec.encode(createBasket("Milk"));
+        final BasketCodec otherCodec = createCodec(CATALOG + "\nPears 0.75");
+
+        assertThrows(IllegalArgumentException.class, () -> otherCodec.decode(encoded));
+    }
+
+    @Test
+    @DisplayName("Truncated baskets are rejected")
+    void testTruncatedBasket() throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        final byte[] encoded = codec.encode(createBasket("Milk", "Soup"));
+
+        for (int length = 0; length < encoded.length; length++) {
+            final byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated));
+        }
+    }
+
+    @Test
+    @DisplayName("Baskets survive a round-trip through the JSON form")
+    void testJsonRoundTrip() throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        final Basket basket = createBasket("Soup", "Apples", "Soup", "Sugar \"Cane\"");
+
+        final String json = codec.toJson(basket);
+        final Basket decoded = codec.fromJson(json);
+
+        assertAll(
+                () -> assertTrue(json.endsWith("\"items\":{\"APPLES\":1,\"SOUP\":2,\"SUGAR \\\"CANE\\\"\":1}}"), json),
+                () -> assertEquals(basket.getItems(), decoded.getItems())
+        );
+    }
+
+    @ParameterizedTest(name = "{index}. Malformed JSON")
+    @ValueSource(strings = {
+            "",
+            "{",
+            "{\"items\":{\"MILK\":0}}",
+            "{\"items\":{\"MILK\":-1}}",
+            "{\"items\":{\"PEARS\":1}}",
+            "{\"items\":{\"MILK\":1}",
+            "{\"items\":{\"MILK\":1}} {}",
+            "{\"items\":[\"MILK\"]}",
+    })
+    void testMalformedJson(String json) throws IOException {
+        final BasketCodec codec = createCodec(CATALOG);
+        assertThrows(IllegalArgumentException.class, () -> codec.fromJson(json));
+    }
+
+    private BasketCodec createCodec(String catalogContents) throws IOException {
+        final DataReader dataReader = dataReader(catalogContents, "");
+        catalog = new Catalog(dataReader);
+        offerPackage = offerPackage(catalog, dataReader);
+        return new BasketCodec(catalog, offerPackage);
+    }
+
+    /**
+     * Creates a basket for the catalog of the last codec created.
+     */
+    private Basket createBasket(String... items) {
+        final Basket basket = new Basket(catalog, offerPackage);
+        for (String item : items) {
+            basket.addItem(item);
+        }
+        return basket;
+    }
+}
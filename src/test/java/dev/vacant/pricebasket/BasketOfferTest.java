@@ -0,0 +1,101 @@
+package dev.vacant.pricebasket;
+
+import dev.vacant.pricebasket.BasketOffer.Parser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.NavigableMap;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("BasketOffer Unit Tests")
+class BasketOfferTest {
+    @ParameterizedTest(name = "{index}. Invalid Rule")
+    @ValueSource(strings = {
+            "", " ", "# This is a comment",
+            "basket",                       // missing discount and threshold
+            "basket 5.00",                  // missing threshold
+            "basket 5.00 from",             // missing threshold
+            "basket 5.00 over 50.00",       // unknown keyword
+            "basket -5.00 from 50.00",      // negative discount
+            "basket 5.00 from 1.00",        // discount above the minimum spend
+            "basket 101% from 50.00",       // percentage above the total
+            "basket 10% from 0.00",         // no minimum spend
+            "basket 10% from 0 items",      // no minimum amount of units
+            "basket 10% from 2.5 items",    // fractional amount of units
+            "basket 5.005 from 50.00",      // unsupported precision
+            "baskets 5.00 from 50.00",      // misspelled keyword
+    })
+    void testInvalidRule(String rule) {
+        final Catalog catalog = mock(Catalog.class);
+        assertNull(new Parser().parseRule(catalog, rule));
+    }
+
+    @ParameterizedTest(name = "{0} with a running total of {1} and {2} units")
+    @CsvSource({
+            "basket 5.00 from 50.00,   4999, 100, false, 0",
+            "basket 5.00 from 50.00,   5000, 1,   true,  500",
+            "BASKET 20% FROM 30 ITEMS, 1000, 29,  false, 0",
+            "basket 20% from 30 items, 1003, 30,  true,  201",
+            "basket 25% from 1 items,  -100, 1,   true,  0",
+    })
+    void testValidRule(String rule, long runningTotal, int units, boolean isApplicable, long discount) {
+        final BasketOffer offer = new Parser().parseRule(mock(Catalog.class), rule);
+        final BasketTotals totals = new BasketTotals();
+        totals.reset(runningTotal, units);
+
+        assertAll(
+                () -> assertEquals(isApplicable, offer.isApplicable(totals)),
+                () -> assertEquals(discount, isApplicable ? offer.calculateDiscountInPence(totals) : 0),
+                () -> assertFalse(offer.isApplicable(mock(Basket.class)))
+        );
+    }
+
+    @ParameterizedTest(name = "Description of {0}")
+    @CsvSource({
+            "basket 5.00 from 50.00,   £5.00 off baskets from £50.00",
+            "basket 0.50 from 10 items, 50p off baskets from 10 items",
+            "basket 20% from 30 items, 20% off baskets from 30 items",
+    })
+    void testDescription(String rule, String description) {
+        assertEquals(description, new Parser().parseRule(mock(Catalog.class), rule).getDescription());
+    }
+
+    @Test
+    @DisplayName("Basket offers apply after item offers, in file order")
+    void testOrdering() throws IOException {
+        final DataReader dataReader = dataReader(
+                "Apples 10.00\nBread 0.80",
+                "basket 10% from 40.00\nbasket 5.00 from 50.00\nApples 10%"
+        );
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final Basket basket = new Basket(catalog, offerPackage);
+        for (int i = 0; i < 6; i++)
+            basket.addItem("Apples");
+
+        final Basket.Price price = basket.price();
+        final NavigableMap<String, BigDecimal> offers = price.getOffers();
+        final PricingContext context = new PricingContext();
+        context.price(basket);
+
+        assertAll(
+                // 60.00 - 6.00 (apples) = 54.00, 10% off is 5.40, leaving 48.60
+                // which no longer reaches the 50.00 minimum spend
+                () -> assertEquals(new BigDecimal("48.60"), price.getTotal()),
+                () -> assertEquals(2, offers.size()),
+                () -> assertEquals(new BigDecimal("5.40"), offers.get("10% off baskets from £40.00")),
+                () -> assertEquals(4860, context.getTotalInPence()),
+                () -> assertEquals(2, context.getOfferCount()),
+                () -> assertTrue(context.getOffer(1) instanceof BasketOffer)
+        );
+    }
+}
@@ -0,0 +1,175 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BasketSessionStore Unit Tests")
+class BasketSessionStoreTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65";
+
+    private Catalog catalog;
+    private OfferPackage offerPackage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, "");
+        catalog = new Catalog(dataReader);
+        offerPackage = offerPackage(catalog, dataReader);
+    }
+
+    @Test
+    @DisplayName("Open sessions are recovered after a restart")
+    void testRecovery(@TempDir Path directory) throws IOException {
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage)) {
+            assertAll(
+                    () -> assertEquals(Basket.AddResult.ADDED, store.addItem(1, "apples")),
+                    () -> assertEquals(Basket.AddResult.ADDED, store.addItem(1, "Apples")),
+                    () -> assertEquals(Basket.AddResult.ADDED, store.addItem(2, "milk")),
+                    () -> assertEquals(Basket.AddResult.ADDED, store.addItem(3, "soup")),
+                    () -> assertEquals(Basket.AddResult.UNKNOWN_ITEM, store.addItem(3, "pears")),
+                    () -> assertEquals(Basket.AddResult.BLANK_NAME, store.addItem(4, " ")),
+                    () -> assertTrue(store.closeSession(3)),
+                    () -> assertFalse(store.closeSession(4))
+            );
+            store.sync();
+        }
+
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage)) {
+            assertAll(
+                    () -> assertEquals(2, store.size()),
+                    () -> assertEquals(2, store.getBasket(1).getAmountOf(new ItemId("Apples"))),
+                    () -> assertEquals(1, store.getBasket(2).getAmountOf(new ItemId("Milk"))),
+                    () -> assertNull(store.getBasket(3)),
+                    () -> assertNull(store.getBasket(4))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Sessions survive the compaction of a full journal")
+    void testCompaction(@TempDir Path directory) throws IOException {
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage, 4)) {
+            for (int i = 0; i < 25; i++) {
+                store.addItem(i % 3, i % 2 == 0 ? "Bread" : "Soup");
+            }
+            store.closeSession(2);
+            store.addItem(7, "Milk");
+        }
+
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage, 4)) {
+            assertAll(
+                    () -> assertEquals(3, store.size()),
+                    () -> assertEquals(5, store.getBasket(0).getAmountOf(new ItemId("Bread"))),
+                    () -> assertEquals(4, store.getBasket(0).getAmountOf(new ItemId("Soup"))),
+                    () -> assertEquals(4, store.getBasket(1).getAmountOf(new ItemId("Bread"))),
+                    () -> assertEquals(4, store.getBasket(1).getAmountOf(new ItemId("Soup"))),
+                    () -> assertEquals(new ItemId("Milk"), store.getBasket(7).getItems().keySet().iterator().next())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Replay stops at a torn record")
+    void testTornRecord(@TempDir Path directory) throws IOException {
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage)) {
+            store.addItem(1, "Apples");
+            store.addItem(1, "Bread");
+        }
+        try (RandomAccessFile journal = new RandomAccessFile(directory.resolve("sessions.journal").toFile(), "rw")) {
+            // Second byte of the ordinal of the fourth record, the first three
+            // naming Apples, adding Apples and naming Bread
+            journal.seek(32 + 3 * 24 + 9);
+            journal.write(0x7f);
+        }
+
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage)) {
+            final Basket basket = store.getBasket(1);
+            assertAll(
+                    () -> assertEquals(1, basket.getAmountOf(new ItemId("Apples"))),
+                    () -> assertEquals(0, basket.getAmountOf(new ItemId("Bread")))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Sessions are mapped by item name when the catalog changes")
+    void testDifferentCatalog(@TempDir Path directory) throws IOException {
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage, 4)) {
+            for (int i = 0; i < 5; i++) {
+                store.addItem(1, "Apples");
+            }
+            store.addItem(1, "Soup");
+            store.addItem(2, "Bread");
+            store.addItem(2, "Milk");
+        }
+
+        // Aubergines come first and Bread is gone, so every ordinal changes
+        final DataReader dataReader = dataReader("Aubergines 0.90\nApples 1.00\nMilk 1.30\nSoup 0.65", "");
+        final Catalog otherCatalog = new Catalog(dataReader);
+        final OfferPackage otherOffers = offerPackage(otherCatalog, dataReader);
+        try (BasketSessionStore store = new BasketSessionStore(directory, otherCatalog, otherOffers, 4)) {
+            assertAll(
+                    () -> assertEquals(2, store.size()),
+                    () -> assertEquals(5, store.getBasket(1).getAmountOf(new ItemId("Apples"))),
+                    () -> assertEquals(1, store.getBasket(1).getAmountOf(new ItemId("Soup"))),
+                    () -> assertEquals(1, store.getBasket(2).getItems().size()),
+                    () -> assertEquals(1, store.getBasket(2).getAmountOf(new ItemId("Milk")))
+            );
+            store.addItem(2, "Aubergines");
+        }
+
+        try (BasketSessionStore store = new BasketSessionStore(directory, catalog, offerPackage)) {
+            assertAll(
+                    () -> assertEquals(5, store.getBasket(1).getAmountOf(new ItemId("Apples"))),
+                    () -> assertEquals(1, store.getBasket(2).getItems().size()),
+                    () -> assertEquals(1, store.getBasket(2).getAmountOf(new ItemId("Milk")))
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Items named in the journal are mapped by name when the catalog changes")
+    void testDifferentCatalogJournal(@TempDir Path directory) throws IOException {
+        // Names longer than 8 bytes take several journal records
+        final DataReader dataReader = dataReader(CATALOG + "\nExtra Virgin Olive Oil 4.50\nSparkling Mineral Water 0.95", "");
+        final Catalog longNames = new Catalog(dataReader);
+        final OfferPackage longNamesOffers = offerPackage(longNames, dataReader);
+        try (BasketSessionStore store = new BasketSessionStore(directory, longNames, longNamesOffers)) {
+            store.addItem(1, "Extra Virgin Olive Oil");
+            store.addItem(1, "Soup");
+            store.addItem(1, "Extra Virgin Olive Oil");
+            store.addItem(2, "Bread");
+            store.sync();
+        }
+        try (BasketSessionStore store = new BasketSessionStore(directory, longNames, longNamesOffers)) {
+            assertEquals(2, store.getBasket(1).getAmountOf(new ItemId("Extra Virgin Olive Oil")));
+            store.addItem(1, "Extra Virgin Olive Oil");
+            store.addItem(2, "Sparkling Mineral Water");
+        }
+
+        // Items named in the snapshot and in the journal are both mapped
+        final DataReader otherReader = dataReader(
+                "Aubergines 0.90\nExtra Virgin Olive Oil 4.50\nSoup 0.65\nSparkling Mineral Water 0.95", "");
+        final Catalog otherCatalog = new Catalog(otherReader);
+        final OfferPackage otherOffers = offerPackage(otherCatalog, otherReader);
+        try (BasketSessionStore store = new BasketSessionStore(directory, otherCatalog, otherOffers)) {
+            assertAll(
+                    () -> assertEquals(2, store.size()),
+                    () -> assertEquals(3, store.getBasket(1).getAmountOf(new ItemId("Extra Virgin Olive Oil"))),
+                    () -> assertEquals(1, store.getBasket(1).getAmountOf(new ItemId("Soup"))),
+                    () -> assertEquals(1, store.getBasket(2).getItems().size()),
+                    () -> assertEquals(1, store.getBasket(2).getAmountOf(new ItemId("Sparkling Mineral Water")))
+            );
+        }
+    }
+}
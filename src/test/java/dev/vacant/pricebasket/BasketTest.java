@@ -1,6 +1,7 @@
 package dev.vacant.pricebasket;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -28,6 +29,27 @@ public class BasketTest {
         assertThrows(IllegalArgumentException.class, () -> basket.addItem(item));
     }
 
+    @ParameterizedTest(name = "Trying to add ''{0}'' to basket yields {1}")
+    @CsvSource({
+            "'apples',       ADDED",
+            "' Bananas\t',  ADDED",
+            "'PEARS',        UNKNOWN_ITEM",
+            "'apples pie',   UNKNOWN_ITEM",
+            "'',             BLANK_NAME",
+            "' \t ',        BLANK_NAME",
+    })
+    void testTryAddItem(String item, Basket.AddResult expectedResult) {
+        final Catalog catalog = buildMockCatalog();
+        final OfferPackage offerPackage = buildMockOfferPackage();
+        final Basket basket = new Basket(catalog, offerPackage);
+
+        final Basket.AddResult result = basket.tryAddItem(item);
+        assertAll(
+                () -> assertEquals(expectedResult, result),
+                () -> assertEquals(result == Basket.AddResult.ADDED ? 1 : 0, basket.getUnitCount())
+        );
+    }
+
     @ParameterizedTest(name = "Pricing for {0} (no special offers)")
     @CsvSource({
             "'',                         0.00, 0.00",
@@ -80,6 +102,24 @@ public class BasketTest {
         );
     }
 
+    @Test
+    @DisplayName("Offers sharing a description are merged")
+    void testBasketPricingWithCollidingOffers() {
+        final Catalog catalog = buildMockCatalog();
+        final OfferPackage offerPackage = buildMockOfferPackage(new ApplicableOffer(), new ApplicableOffer());
+        final Basket basket = new Basket(catalog, offerPackage);
+        basket.addItem("apples");
+        basket.addItem("bananas");
+
+        final Basket.Price price = basket.price();
+        assertAll(
+                () -> assertEquals(new BigDecimal("1.80"), price.getSubtotal()),
+                () -> assertEquals(new BigDecimal("0.80"), price.getTotal()),
+                () -> assertEquals(1, price.getOffers().size()),
+                () -> assertEquals(new BigDecimal("1.00"), price.getOffers().get("Always applicable"))
+        );
+    }
+
     private Catalog buildMockCatalog() {
         Map<ItemId, BigDecimal> data = new HashMap<>();
         data.put(new ItemId("apples"), new BigDecimal("1.00"));
@@ -49,6 +49,8 @@ class BundleOfferTest {
             "Apples 0.10 per 0 Bananas",   // zero min amount
             "Apples 0.10 per -1 Bananas",  // negative min amount
             "Apples 0.10 for 2 Bananas",   // wrong keyword
+            "Apples 0.10 per 2 Bananas max 0",  // zero limit
+            "Apples 0.10 per 2 Bananas max -1", // negative limit
     })
     void testInvalidRule(String rule) {
         final Catalog catalog = buildMockCatalog();
@@ -92,6 +94,31 @@ class BundleOfferTest {
         );
     }
 
+    @ParameterizedTest(name = "Limited discount for {0} apples and {1} bananas")
+    @CsvSource({
+            "1, 2, true,  0.10",
+            "2, 4, true,  0.10",
+            "5, 10, true, 0.10",
+    })
+    void testValidRuleWithLimit(int discountedAmount,
+                                int requiredAmount,
+                                boolean isApplicable,
+                                String expectedDiscount
+    ) {
+        final ItemId apples = new ItemId("apples");
+        final ItemId bananas = new ItemId("bananas");
+        final Catalog catalog = buildMockCatalog();
+        final Basket basket = buildMockBasket(apples, discountedAmount, bananas, requiredAmount);
+        final Parser parser = new Parser();
+        final BundleOffer rule = parser.parseRule(catalog, "Apples 0.10 per 2 Bananas max 1");
+
+        assertAll(
+                () -> assertEquals(isApplicable, rule.isApplicable(basket)),
+                () -> assertEquals(new BigDecimal(expectedDiscount), rule.calculateDiscount(basket)),
+                () -> assertEquals("Apples and Bananas bundle (max 1)", rule.getDescription())
+        );
+    }
+
     private Catalog buildMockCatalog() {
         Map<ItemId, BigDecimal> data = new HashMap<>();
         data.put(new ItemId("apples"), new BigDecimal("1.00"));
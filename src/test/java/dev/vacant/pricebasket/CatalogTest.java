@@ -1,6 +1,8 @@
 package dev.vacant.pricebasket;
 
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -9,7 +11,16 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -107,6 +118,147 @@ class CatalogTest {
         assertEquals(2, catalog.getPriceFor(new ItemId("Apples")).scale());
     }
 
+    @Test
+    @DisplayName("Catalog survives a round-trip through a price table")
+    void testPriceTableRoundTrip(@TempDir Path directory) throws IOException {
+        final DataReader dataReader = buildMockDataReader(
+                "Apples 1.00\nBananas 0.50\nSugar Cane 2.50"
+        );
+        final Catalog catalog = new Catalog(dataReader);
+        final Path tableFile = directory.resolve("catalog.table");
+        catalog.writeTable(tableFile);
+
+        final Catalog mapped = new Catalog(tableFile);
+        assertAll(
+                () -> assertEquals(catalog.getAllItems(), mapped.getAllItems()),
+                () -> assertEquals(new BigDecimal("2.50"), mapped.getPriceFor(new ItemId("sugar cane"))),
+                () -> assertNull(mapped.getPriceFor(new ItemId("sugar")))
+        );
+    }
+
+    @Test
+    @DisplayName("Reloading only parses changed data files")
+    void testReload(@TempDir Path directory) throws IOException {
+        final Path dataFile = directory.resolve("catalog.list");
+        Files.write(dataFile, "Apples 1.00".getBytes(UTF_8));
+        final DataReader dataReader = new DataReader(directory);
+        final Catalog catalog = new Catalog(dataReader);
+
+        final Catalog unchanged = catalog.reload(dataReader);
+        Files.write(dataFile, "Apples 1.10".getBytes(UTF_8));
+        final Catalog changed = catalog.reload(dataReader);
+
+        assertAll(
+                () -> assertSame(catalog, unchanged),
+                () -> assertNotSame(catalog, changed),
+                () -> assertEquals(new BigDecimal("1.10"), changed.getPriceFor(new ItemId("Apples")))
+        );
+    }
+
+    @Test
+    @DisplayName("Applying a delta creates a new version of the catalog")
+    void testDelta() throws IOException {
+        final DataReader dataReader = dataReader(
+                "Apples 1.00\nBananas 0.50\nSugar Cane 2.50",
+                "",
+                "delta.list",
+                "# Hourly changes\n+ Pears 0.75\n~ apples 1.10\n- BANANAS"
+        );
+        final Catalog catalog = new Catalog(dataReader);
+        final Catalog changed = catalog.applyDelta(dataReader, "delta.list");
+
+        assertAll(
+                () -> assertEquals(new BigDecimal("1.10"), changed.getPriceFor(new ItemId("Apples"))),
+                () -> assertNull(changed.getPriceFor(new ItemId("Bananas"))),
+                () -> assertEquals(new BigDecimal("0.75"), changed.getPriceFor(new ItemId("Pears"))),
+                () -> assertEquals(new BigDecimal("2.50"), changed.getPriceFor(new ItemId("Sugar Cane"))),
+                () -> assertEquals(3, changed.getAllItems().size()),
+                () -> assertEquals(new BigDecimal("1.00"), catalog.getPriceFor(new ItemId("Apples"))),
+                () -> assertEquals(new BigDecimal("0.50"), catalog.getPriceFor(new ItemId("Bananas"))),
+                () -> assertNull(catalog.getPriceFor(new ItemId("Pears")))
+        );
+    }
+
+    @ParameterizedTest(name = "{index}. Corrupt Delta")
+    @ValueSource(strings = {
+            "+ Apples 2.00",    // duplicate entry
+            "+ Pears",          // missing price
+            "+ Pears 1.005",    // unsupported precision
+            "~ Pears 1.00",     // missing entry
+            "- Pears",          // missing entry
+            "-",                // missing item name
+            "* Apples 2.00",    // unknown change
+            "- Apples\n- apples", // already removed
+    })
+    void testCorruptDelta(String deltaContents) throws IOException {
+        final DataReader dataReader = dataReader("Apples 1.00", "", "delta.list", deltaContents);
+        final Catalog catalog = new Catalog(dataReader);
+        assertThrows(CorruptDataFileException.class, () -> catalog.applyDelta(dataReader, "delta.list"));
+    }
+
+    @Test
+    @DisplayName("Items are looked up by their barcodes")
+    void testBarcodes() throws IOException {
+        final DataReader dataReader = dataReader(
+                "Apples 1.00\nBananas 0.50\nSugar Cane 2.50",
+                "",
+                "barcodes.list",
+                "# GTIN ITEM\n5012345678900 Apples\n96385074 sugar  cane\n036000291452 Bananas"
+        );
+        final Catalog catalog = new Catalog(dataReader).withBarcodes(dataReader);
+        final Basket basket = new Basket(catalog, offerPackage(catalog, dataReader));
+        basket.addItem(5012345678900L);
+        basket.addItem(5012345678900L);
+        basket.addItem(96385074L);
+
+        assertAll(
+                () -> assertEquals(new ItemId("Apples"), catalog.getItemByBarcode(5012345678900L)),
+                // GTIN-12 and GTIN-14 forms of the same barcode
+                () -> assertEquals(new ItemId("Bananas"), catalog.getItemByBarcode(36000291452L)),
+                () -> assertNull(catalog.getItemByBarcode(5012345678901L)),
+                () -> assertEquals(2, basket.getAmountOf(new ItemId("Apples"))),
+                () -> assertEquals(new BigDecimal("4.50"), basket.price().getTotal()),
+                () -> assertThrows(IllegalArgumentException.class, () -> basket.addItem(4006381333931L))
+        );
+    }
+
+    @ParameterizedTest(name = "{index}. Corrupt Barcodes")
+    @ValueSource(strings = {
+            "5012345678900",                            // missing item name
+            "5012345678901 Apples",                     // wrong check digit
+            "50123456789 Apples",                       // invalid length
+            "50123456789O0 Apples",                     // not a number
+            "5012345678900 Pears",                      // missing entry
+            "5012345678900 Apples\n05012345678900 Apples", // duplicate barcode
+    })
+    void testCorruptBarcodes(String barcodesContents) throws IOException {
+        final DataReader dataReader = dataReader("Apples 1.00", "", "barcodes.list", barcodesContents);
+        final Catalog catalog = new Catalog(dataReader);
+        assertThrows(CorruptDataFileException.class, () -> catalog.withBarcodes(dataReader));
+    }
+
+    @ParameterizedTest(name = "Searching for ''{0}'' yields [{2}]")
+    @CsvSource({
+            "'app',         10, 'APPLE PIE|APPLES'",
+            "'a',            1, 'APPLE PIE'",
+            "'apple p',     10, 'APPLE PIE|APPLES'",
+            "'banans',      10, 'BANANAS'",
+            "'sugar cnae',  10, 'SUGAR CANE'",
+            "'br',          10, 'BREAD'",
+            "'bx',          10, ''",
+            "'  ',          10, ''",
+    })
+    void testSearch(String query, int maxResults, String expectedItems) throws IOException {
+        final DataReader dataReader = dataReader(
+                "Apples 1.00\nApple Pie 2.00\nBananas 0.50\nBread 0.80\nSugar Cane 2.50", ""
+        );
+        final Catalog catalog = new Catalog(dataReader);
+        final List<ItemId> expected = expectedItems.isEmpty()
+                ? Collections.emptyList()
+                : Arrays.stream(expectedItems.split("\\|")).map(ItemId::new).collect(Collectors.toList());
+        assertEquals(expected, catalog.search(query, maxResults));
+    }
+
     private DataReader buildMockDataReader(String dataContents) throws IOException {
         DataReader dataReader = mock(DataReader.class);
         LineNumberReader reader = new LineNumberReader(new StringReader(dataContents));
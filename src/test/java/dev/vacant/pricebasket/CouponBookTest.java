@@ -0,0 +1,166 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CouponBook Unit Tests")
+class CouponBookTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65";
+    private static final String CODES = "# Spring campaign\nSPRING01\nspring02\n0SPRING01\nABCDEFGHIJKL";
+
+    @Test
+    @DisplayName("Coupons are looked up regardless of case and applied to baskets")
+    void testCouponPricing() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, "", "coupons.list", CODES);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final CouponBook itemCoupons = new CouponBook(
+                new DiscountOffer.Parser().parseRule(catalog, "Milk 50%"), dataReader, "coupons.list");
+        final CouponBook basketCoupons = new CouponBook(
+                new BasketOffer.Parser().parseRule(catalog, "basket 1.00 from 1.50"), dataReader, "coupons.list");
+
+        final Basket basket = new Basket(catalog, offerPackage);
+        basket.addItem("Milk");
+        basket.addItem("Apples");
+        final CouponBook.Coupon coupon = itemCoupons.lookup("spring01");
+        basket.addCoupon(coupon);
+        basket.addCoupon(basketCoupons.lookup(" SPRING01 "));
+
+        final PricingContext context = new PricingContext(1);
+        context.price(basket);
+        final Basket.Price price = basket.price();
+        assertAll(
+                () -> assertEquals("SPRING01", coupon.getCode()),
+                () -> assertEquals(new BigDecimal("2.30"), price.getSubtotal()),
+                () -> assertEquals(new BigDecimal("0.65"), price.getOffers().get("Milk 50% off")),
+                () -> assertEquals(new BigDecimal("0.65"), price.getTotal()),
+                () -> assertEquals(65, context.getTotalInPence()),
+                () -> assertEquals(2, context.getOfferCount()),
+                () -> assertThrows(IllegalArgumentException.class, () -> basket.addCoupon(itemCoupons.lookup("SPRING01")))
+        );
+    }
+
+    @ParameterizedTest(name = "{index}. Unknown Code")
+    @ValueSource(strings = {"", "SPRING03", "SPRING1", "SPRING-01", "ABCDEFGHIJKLM", "00SPRING01"})
+    void testUnknownCode(String code) throws IOException {
+        final CouponBook book = buildBook(CODES);
+        assertNull(book.lookup(code));
+    }
+
+    @ParameterizedTest(name = "{index}. Corrupt Codes")
+    @ValueSource(strings = {"SPRING-01", "ABCDEFGHIJKLM", "SPRING01\nspring01"})
+    void testCorruptCodes(String codes) {
+        assertThrows(CorruptDataFileException.class, () -> buildBook(codes));
+    }
+
+    @Test
+    @DisplayName("Codes are redeemed only once across threads")
+    void testConcurrentRedemption() throws Exception {
+        final CouponBook book = buildBook(CODES);
+        final CouponBook.Coupon coupon = book.lookup("SPRING02");
+        final AtomicInteger redemptions = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (book.redeem(coupon))
+                        redemptions.incrementAndGet();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertAll(
+                () -> assertEquals(1, redemptions.get()),
+                () -> assertEquals(1, book.getRedeemedCount()),
+                () -> assertNull(book.lookup("SPRING02")),
+                () -> assertNotNull(book.lookup("SPRING01"))
+        );
+    }
+
+    @Test
+    @DisplayName("Redemptions survive a restart through the redemption log")
+    void testRedemptionLog(@TempDir Path directory) throws IOException {
+        final Path logFile = directory.resolve("spring.redeemed");
+        try (CouponBook book = buildBook(CODES, logFile)) {
+            assertTrue(book.redeem(book.lookup("spring01")));
+            assertTrue(book.redeem(book.lookup("ABCDEFGHIJKL")));
+        }
+
+        try (CouponBook book = buildBook(CODES, logFile)) {
+            assertAll(
+                    () -> assertEquals(2, book.getRedeemedCount()),
+                    () -> assertNull(book.lookup("SPRING01")),
+                    () -> assertNull(book.lookup("abcdefghijkl")),
+                    () -> assertNotNull(book.lookup("0SPRING01"))
+            );
+        }
+        assertThrows(IOException.class, () -> buildBook(CODES + "\nSUMMER01", logFile));
+    }
+
+    @Test
+    @DisplayName("Holes and duplicates left behind by a crash are compacted away")
+    void testRedemptionLogCompaction(@TempDir Path directory) throws IOException {
+        final Path logFile = directory.resolve("spring.redeemed");
+        try (CouponBook book = buildBook(CODES, logFile)) {
+            assertTrue(book.redeem(book.lookup("spring01")));
+            assertTrue(book.redeem(book.lookup("ABCDEFGHIJKL")));
+        }
+
+        // A hole in the first slot, plus a copy left by an interrupted move
+        final ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        final int first = log.getInt(16);
+        final int second = log.getInt(20);
+        log.putInt(16, 0).putInt(20, second).putInt(24, first).putInt(28, second);
+        Files.write(logFile, log.array());
+
+        try (CouponBook book = buildBook(CODES, logFile)) {
+            assertEquals(2, book.getRedeemedCount());
+        }
+        final ByteBuffer compacted = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        assertAll(
+                () -> assertEquals(second, compacted.getInt(16)),
+                () -> assertEquals(first, compacted.getInt(20)),
+                () -> assertEquals(0, compacted.getInt(24)),
+                () -> assertEquals(0, compacted.getInt(28))
+        );
+    }
+
+    private CouponBook buildBook(String codes) throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, "", "coupons.list", codes);
+        final Catalog catalog = new Catalog(dataReader);
+        return new CouponBook(new BasketOffer.Parser().parseRule(catalog, "basket 10% from 1 items"), dataReader, "coupons.list");
+    }
+
+    private CouponBook buildBook(String codes, Path logFile) throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, "", "coupons.list", codes);
+        final Catalog catalog = new Catalog(dataReader);
+        return new CouponBook(new BasketOffer.Parser().parseRule(catalog, "basket 10% from 1 items"), dataReader, "coupons.list", logFile);
+    }
+}
@@ -8,8 +8,10 @@ import org.junit.jupiter.api.Test;
 import java.io.*;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.zip.GZIPOutputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
@@ -57,23 +59,63 @@ class DataReaderTest {
     }
 
     @Test
-    @DisplayName("When path doesn't exist create it with default contents")
+    @DisplayName("When path doesn't exist read default contents")
     void testNonExistingPath() throws IOException {
-        final ByteArrayOutputStream out = new ByteArrayOutputStream();
-        when(provider.newOutputStream(path)).thenReturn(out);
-        when(provider.newInputStream(path))
-                .thenAnswer(invocation -> new ByteArrayInputStream(out.toByteArray()));
-
-        doThrow(IOException.class).when(provider).readAttributes(eq(path), any(Class.class));
-        doThrow(IOException.class).when(provider).readAttributes(eq(path), anyString());
-        doThrow(IOException.class).when(provider).checkAccess(path);
-
-        assertFalse(Files.exists(path), "Failed to setup non-existing path");
+        when(provider.newInputStream(path)).thenThrow(new NoSuchFileException("testfiles/datafile"));
 
         final DataReader dataReader = new DataReader(fileSystem);
         reader = dataReader.newLineNumberReader("testfiles/datafile");
 
         assertEquals("Data File Contents", reader.readLine());
-        assertEquals("Data File Contents", new String(out.toByteArray(), UTF_8).trim());
+        verify(provider, never()).newOutputStream(eq(path), any());
+    }
+
+    @Test
+    @DisplayName("Sources are looked up in order of precedence")
+    void testSourcePrecedence() throws IOException {
+        final DataSource missing = filePath -> null;
+        final DataSource first = filePath -> new ByteArrayInputStream("First".getBytes(UTF_8));
+        final DataSource second = filePath -> new ByteArrayInputStream("Second".getBytes(UTF_8));
+
+        final DataReader dataReader = new DataReader(missing, first, second);
+        reader = dataReader.newLineNumberReader("testfiles/datafile");
+
+        assertEquals("First", reader.readLine());
+        assertThrows(NoSuchFileException.class,
+                () -> new DataReader(missing).newLineNumberReader("testfiles/datafile"));
+    }
+
+    @Test
+    @DisplayName("Gzip compressed data files are decompressed transparently")
+    void testCompressedDataFile() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write("Compressed\nContents".getBytes(UTF_8));
+        }
+
+        final DataReader compressed = new DataReader(filePath -> new ByteArrayInputStream(bytes.toByteArray()));
+        final DataReader plain = new DataReader(
+                filePath -> new ByteArrayInputStream("Compressed\nContents".getBytes(UTF_8)));
+        reader = compressed.newLineNumberReader("testfiles/datafile");
+
+        assertAll(
+                () -> assertEquals("Compressed", reader.readLine()),
+                () -> assertEquals("Contents", reader.readLine()),
+                () -> assertNull(reader.readLine()),
+                () -> assertEquals(plain.checksum("testfiles/datafile"), DataReader.checksumOf(reader)),
+                () -> assertEquals(19, ((DataReader.DataFileReader) reader).getByteCount())
+        );
+    }
+
+    @Test
+    @DisplayName("Checksum changes with the contents")
+    void testChecksum() throws IOException {
+        final DataReader first = new DataReader(filePath -> new ByteArrayInputStream("Apples 1.00".getBytes(UTF_8)));
+        final DataReader second = new DataReader(filePath -> new ByteArrayInputStream("Apples 1.10".getBytes(UTF_8)));
+
+        assertAll(
+                () -> assertEquals(first.checksum("catalog.list"), first.checksum("catalog.list")),
+                () -> assertNotEquals(first.checksum("catalog.list"), second.checksum("catalog.list"))
+        );
     }
 }
@@ -0,0 +1,158 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.ServiceLoader;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Randomized tests checking that every alternative pricing engine produces
+ * exactly the same results as {@link Basket#price()}.
+ * <p>
+ * The amount of baskets priced per engine and the random seed can be set
+ * through the {@value #BASKETS_PROPERTY} and {@value #SEED_PROPERTY} system
+ * properties. The seed is fixed by default, so that regular test runs are
+ * reproducible. Failing scenarios are shrunk before being reported.
+ */
+@DisplayName("Differential Pricing Tests")
+class DifferentialPricingTest {
+    private static final String BASKETS_PROPERTY = "pricebasket.differential.baskets";
+    private static final String SEED_PROPERTY = "pricebasket.differential.seed";
+    private static final int BASKETS_PER_SCENARIO = 100;
+
+    private static final int BASKETS = Integer.getInteger(BASKETS_PROPERTY, 5_000);
+    private static final long SEED = Long.getLong(SEED_PROPERTY, 20200815L);
+
+    @Test
+    @DisplayName("Mapped catalog agrees with the reference")
+    void testMappedCatalog(@TempDir Path directory) throws IOException {
+        assertAgreesWithReference(PricingEngine.mappedCatalog(directory));
+    }
+
+    @Test
+    @DisplayName("Traced pricing agrees with the reference")
+    void testTracedPricing() throws IOException {
+        assertAgreesWithReference(PricingEngine.TRACED);
+    }
+
+    @Test
+    @DisplayName("Pricing context agrees with the reference")
+    void testPricingContext() throws IOException {
+        assertAgreesWithReference(PricingEngine.CONTEXT);
+    }
+
+    @Test
+    @DisplayName("Parallel pricing agrees with the reference")
+    void testParallelPricing() throws IOException {
+        assertAgreesWithReference(PricingEngine.PARALLEL);
+    }
+
+    private void assertAgreesWithReference(PricingEngine engine) throws IOException {
+        int priced = 0;
+        for (long scenarioSeed = SEED; priced < BASKETS; scenarioSeed++) {
+            int basketCount = Math.min(BASKETS_PER_SCENARIO, BASKETS - priced);
+            PricingScenario scenario = PricingScenario.generate(new Random(scenarioSeed), basketCount);
+            if (findMismatch(engine, scenario) == null) {
+                priced += basketCount;
+                continue;
+            }
+
+            // Only narrowed down to the failing basket once there is a mismatch
+            for (List<String> basket : scenario.getBaskets()) {
+                PricingScenario failing = scenario.withBasket(basket);
+                if (findMismatch(engine, failing) != null) {
+                    PricingScenario minimal = shrink(engine, failing);
+                    fail("Mismatch (" + SEED_PROPERTY + "=" + scenarioSeed + "): "
+                            + findMismatch(engine, minimal) + "\n" + minimal);
+                }
+            }
+            fail("Mismatch (" + SEED_PROPERTY + "=" + scenarioSeed + "): "
+                    + findMismatch(engine, scenario) + "\n" + scenario);
+        }
+    }
+
+    private PricingScenario shrink(PricingEngine engine, PricingScenario scenario) throws IOException {
+        PricingScenario current = scenario;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (PricingScenario candidate : current.shrink()) {
+                if (findMismatch(engine, candidate) != null) {
+                    current = candidate;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Prices all of the baskets in a scenario with both the reference and the
+     * engine under test, looking for the first difference.
+     *
+     * @return The description of the first difference found, or {@code null}
+     * if the engine agrees with the reference (or the scenario is invalid).
+     */
+    private String findMismatch(PricingEngine engine, PricingScenario scenario) throws IOException {
+        DataReader reader = scenario.newDataReader();
+
+        Catalog referenceCatalog;
+        OfferPackage referenceOffers;
+        try {
+            referenceCatalog = PricingEngine.REFERENCE.loadCatalog(reader);
+            referenceOffers = new OfferPackage(referenceCatalog, reader, ServiceLoader.load(OfferParser.class));
+        } catch (CorruptDataFileException ignored) {
+            // Shrinking can drop catalog entries that offers rely on
+            return null;
+        }
+
+        Catalog catalog = engine.loadCatalog(reader);
+        try {
+            return findMismatch(engine, scenario, referenceCatalog, referenceOffers, catalog,
+                    new OfferPackage(catalog, reader, ServiceLoader.load(OfferParser.class)));
+        } finally {
+            engine.unloadCatalog(catalog);
+        }
+    }
+
+    private String findMismatch(PricingEngine engine,
+                                PricingScenario scenario,
+                                Catalog referenceCatalog,
+                                OfferPackage referenceOffers,
+                                Catalog catalog,
+                                OfferPackage offerPackage
+    ) {
+        for (List<String> items : scenario.getBaskets()) {
+            Basket.Price expected;
+            try {
+                expected = PricingEngine.REFERENCE.price(referenceCatalog, referenceOffers, items);
+            } catch (IllegalArgumentException ignored) {
+                // Shrinking can drop catalog entries that baskets rely on
+                continue;
+            }
+
+            Basket.Price actual;
+            try {
+                actual = engine.price(catalog, offerPackage, items);
+            } catch (RuntimeException failure) {
+                return items + " failed with " + failure;
+            }
+
+            if (!expected.getSubtotal().equals(actual.getSubtotal()))
+                return items + " subtotal " + actual.getSubtotal() + " != " + expected.getSubtotal();
+            if (!expected.getTotal().equals(actual.getTotal()))
+                return items + " total " + actual.getTotal() + " != " + expected.getTotal();
+            if (!expected.getOffers().equals(actual.getOffers()))
+                return items + " offers " + actual.getOffers() + " != " + expected.getOffers();
+        }
+        return null;
+    }
+}
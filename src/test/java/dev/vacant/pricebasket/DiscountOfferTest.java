@@ -37,6 +37,10 @@ class DiscountOfferTest {
             "Apples 10.1%",             // non-integer percentage
             "Apples -10%",              // negative percentage
             "Apples io%",               // percentage is not a number
+            "Apples 10% max",           // missing limit
+            "Apples 10% max 0",         // zero limit
+            "Apples 10% max -1",        // negative limit
+            "Apples 10% max 1.5",       // non-integer limit
     })
     void testInvalidRule(String rule) {
         final Catalog catalog = buildMockCatalog();
@@ -84,6 +88,27 @@ class DiscountOfferTest {
         );
     }
 
+    @ParameterizedTest(name = "Limited discount for {0} apples")
+    @CsvSource({
+            "0, false,  0.00",
+            "1, true,   0.10",
+            "2, true,   0.20",
+            "5, true,   0.20",
+    })
+    void testValidRuleWithLimit(int amount, boolean isApplicable, String expectedDiscount) {
+        final ItemId apples = new ItemId("apples");
+        final Catalog catalog = buildMockCatalog();
+        final Basket basket = buildMockBasket(apples, amount);
+        final Parser parser = new Parser();
+        final DiscountOffer rule = parser.parseRule(catalog, "apples 10% MAX 2");
+
+        assertAll(
+                () -> assertEquals(isApplicable, rule.isApplicable(basket)),
+                () -> assertEquals(new BigDecimal(expectedDiscount), rule.calculateDiscount(basket)),
+                () -> assertEquals("Apples 10% off (max 2)", rule.getDescription())
+        );
+    }
+
     private Catalog buildMockCatalog() {
         Map<ItemId, BigDecimal> data = new HashMap<>();
         data.put(new ItemId("apples"), new BigDecimal("1.00"));
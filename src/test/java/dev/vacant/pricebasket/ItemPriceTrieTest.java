@@ -0,0 +1,94 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ItemPriceTrie Unit Tests")
+class ItemPriceTrieTest {
+
+    @Test
+    @DisplayName("Empty trie")
+    void testEmptyTrie() {
+        final ItemPriceTrie trie = ItemPriceTrie.EMPTY.toBuilder().build();
+        assertAll(
+                () -> assertTrue(trie.isEmpty()),
+                () -> assertNull(trie.get(new ItemId("Apples"))),
+                () -> assertFalse(trie.entrySet().iterator().hasNext())
+        );
+    }
+
+    @Test
+    @DisplayName("Previous versions are left unchanged")
+    void testPersistence() {
+        final ItemPriceTrie.Builder builder = ItemPriceTrie.EMPTY.toBuilder();
+        builder.put(new ItemId("Apples"), new BigDecimal("1.00"));
+        builder.put(new ItemId("Bananas"), new BigDecimal("0.50"));
+        final ItemPriceTrie first = builder.build();
+
+        final ItemPriceTrie.Builder changes = first.toBuilder();
+        changes.put(new ItemId("Apples"), new BigDecimal("1.10"));
+        changes.remove(new ItemId("Bananas"));
+        final ItemPriceTrie second = changes.build();
+
+        assertAll(
+                () -> assertEquals(2, first.size()),
+                () -> assertEquals(new BigDecimal("1.00"), first.get(new ItemId("Apples"))),
+                () -> assertEquals(new BigDecimal("0.50"), first.get(new ItemId("Bananas"))),
+                () -> assertEquals(1, second.size()),
+                () -> assertEquals(new BigDecimal("1.10"), second.get(new ItemId("Apples"))),
+                () -> assertNull(second.get(new ItemId("Bananas"))),
+                () -> assertEquals(100, first.getInPence(new ItemId("Apples"))),
+                () -> assertEquals(110, second.getInPence(new ItemId("Apples"))),
+                () -> assertEquals(-1, second.getInPence(new ItemId("Bananas"))),
+                () -> assertThrows(IllegalStateException.class, () -> changes.remove(new ItemId("Apples")))
+        );
+    }
+
+    @ParameterizedTest(name = "Random changes with seed {0}")
+    @ValueSource(longs = {1, 2, 3, 4, 5})
+    void testRandomChanges(long seed) {
+        final Random random = new Random(seed);
+        final Map<ItemId, BigDecimal> expected = new HashMap<>();
+        ItemPriceTrie trie = ItemPriceTrie.EMPTY;
+
+        for (int version = 0; version < 20; version++) {
+            final ItemPriceTrie.Builder builder = trie.toBuilder();
+            for (int i = 0; i < 500; i++) {
+                final ItemId itemId = randomItemId(random);
+                if (random.nextInt(3) == 0) {
+                    builder.remove(itemId);
+                    expected.remove(itemId);
+                } else {
+                    final BigDecimal price = BigDecimal.valueOf(random.nextInt(1000), 2);
+                    builder.put(itemId, price);
+                    expected.put(itemId, price);
+                }
+            }
+            trie = builder.build();
+            assertEquals(expected, trie);
+            assertEquals(expected.size(), trie.entrySet().stream().count());
+        }
+    }
+
+    /**
+     * Draws item IDs either from a small pool or from names whose hashes all
+     * collide ("A_" and "B@" have the same hash code).
+     */
+    private ItemId randomItemId(Random random) {
+        if (random.nextBoolean())
+            return new ItemId("Item " + random.nextInt(2000));
+
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            name.append(random.nextBoolean() ? "A_" : "B@");
+        }
+        return new ItemId(name.toString());
+    }
+}
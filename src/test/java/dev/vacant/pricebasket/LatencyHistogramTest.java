@@ -0,0 +1,79 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LatencyHistogram Unit Tests")
+class LatencyHistogramTest {
+
+    @ParameterizedTest(name = "Percentile {0} of 1..100000 is about {1}")
+    @CsvSource({
+            "0,     1",
+            "50,    50000",
+            "99,    99000",
+            "99.9,  99900",
+            "100,   100000",
+    })
+    void testPercentiles(double percentile, long expected) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++)
+            histogram.record(i);
+
+        final long actual = histogram.getValueAtPercentile(percentile);
+        assertTrue(Math.abs(actual - expected) <= expected * 0.04,
+                () -> "Expected about " + expected + " but was " + actual);
+    }
+
+    @ParameterizedTest(name = "Small value {0} is recorded exactly")
+    @ValueSource(longs = {0, 1, 17, 63})
+    void testSmallValues(long value) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        assertAll(
+                () -> assertEquals(value, histogram.getValueAtPercentile(50)),
+                () -> assertEquals(value, histogram.getMax())
+        );
+    }
+
+    @Test
+    @DisplayName("Very large values are recorded")
+    void testLargeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Adding histograms merges their values")
+    void testAdd() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        first.record(20);
+        second.record(30);
+
+        first.add(second);
+        assertAll(
+                () -> assertEquals(3, first.getCount()),
+                () -> assertEquals(30, first.getMax()),
+                () -> assertEquals(20.0, first.getMean(), 0.001),
+                () -> assertEquals(20, first.getValueAtPercentile(50))
+        );
+    }
+
+    @Test
+    @DisplayName("Empty histogram reports zeros")
+    void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertAll(
+                () -> assertEquals(0, histogram.getCount()),
+                () -> assertEquals(0, histogram.getValueAtPercentile(99)),
+                () -> assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101))
+        );
+    }
+}
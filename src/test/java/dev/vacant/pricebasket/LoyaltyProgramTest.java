@@ -0,0 +1,83 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LoyaltyProgram Unit Tests")
+class LoyaltyProgramTest {
+
+    @ParameterizedTest(name = "Member {0} pays {1}")
+    @CsvSource({
+            "1, 3.25",      // not a member
+            "100, 2.89",    // tier 1: cheaper apples, regular offers
+            "200, 2.09",    // tier 2: tier 1 prices and an extra offer
+            "300, 3.25",    // tier 3: nothing configured
+    })
+    void testMemberPricing(long memberId, String total) throws IOException {
+        final Map<String, String> files = new HashMap<>();
+        files.put("catalog.list", "Apples 1.00\nBread 0.80\nSoup 0.65");
+        files.put("offers.list", "Apples 10%");
+        files.put("tier1/catalog.delta", "~ Apples 0.80");
+        files.put("tier2/catalog.delta", "~ Apples 0.80");
+        files.put("tier2/offers.delta", "+ Bread 0.80 per 1 Soup");
+        final LoyaltyProgram program = buildProgram(files);
+
+        final Basket basket = program.newBasket();
+        basket.addItem("Apples");
+        basket.addItem("Apples");
+        basket.addItem("Bread");
+        basket.addItem("Soup");
+        basket.setMemberId(memberId);
+
+        final PricingContext context = new PricingContext();
+        context.price(basket);
+        assertAll(
+                () -> assertEquals(new BigDecimal(total), basket.price().getTotal()),
+                () -> assertEquals(new BigDecimal(total), context.toPrice().getTotal())
+        );
+    }
+
+    @Test
+    @DisplayName("Tiers cannot add or remove items")
+    void testTierChangingItems() {
+        final Map<String, String> files = new HashMap<>();
+        files.put("catalog.list", "Apples 1.00");
+        files.put("offers.list", "");
+        files.put("tier1/catalog.delta", "+ Pears 0.80");
+        assertThrows(IOException.class, () -> buildProgram(files));
+    }
+
+    @Test
+    @DisplayName("Members can only be set on loyalty baskets")
+    void testRegularBasket() throws IOException {
+        final Map<String, String> files = new HashMap<>();
+        files.put("catalog.list", "Apples 1.00");
+        files.put("offers.list", "");
+        final DataReader dataReader = dataReader(files);
+        final Catalog catalog = new Catalog(dataReader);
+        final Basket basket = new Basket(catalog, offerPackage(catalog, dataReader));
+        assertThrows(IllegalStateException.class, () -> basket.setMemberId(100));
+    }
+
+    private LoyaltyProgram buildProgram(Map<String, String> files) throws IOException {
+        final DataReader dataReader = dataReader(files);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final MemberTierIndex members = MemberTierIndex.build(
+                new long[]{100, 200, 300},
+                new byte[]{1, 2, 3}
+        );
+        return new LoyaltyProgram(catalog, offerPackage, dataReader, members);
+    }
+}
@@ -0,0 +1,82 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MemberTierIndex Unit Tests")
+class MemberTierIndexTest {
+
+    @Test
+    @DisplayName("Members are resolved to their tiers")
+    void testLookup() {
+        final long[] memberIds = new long[10_000];
+        final byte[] tiers = new byte[memberIds.length];
+        for (int i = 0; i < memberIds.length; i++) {
+            memberIds[i] = 1_000_000L + i * 3;
+            tiers[i] = (byte) (1 + i % 3);
+        }
+        final MemberTierIndex index = MemberTierIndex.build(memberIds, tiers);
+
+        assertAll(
+                () -> assertEquals(memberIds.length, index.size()),
+                () -> assertEquals(3, index.getMaxTier()),
+                () -> {
+                    for (int i = 0; i < memberIds.length; i++) {
+                        assertEquals(tiers[i], index.getTierOf(memberIds[i]));
+                        assertEquals(0, index.getTierOf(memberIds[i] + 1));
+                    }
+                },
+                () -> assertEquals(0, index.getTierOf(-1))
+        );
+    }
+
+    @Test
+    @DisplayName("Invalid members are rejected")
+    void testInvalidMembers() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> MemberTierIndex.build(new long[]{1, 2}, new byte[]{1})),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> MemberTierIndex.build(new long[]{-5}, new byte[]{1})),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> MemberTierIndex.build(new long[]{5}, new byte[]{0})),
+                () -> assertThrows(IllegalArgumentException.class,
+                        () -> MemberTierIndex.build(new long[]{5, 5}, new byte[]{1, 2}))
+        );
+    }
+
+    @Test
+    @DisplayName("Index survives a round-trip through a mapped file")
+    void testMappedRoundTrip(@TempDir Path directory) throws IOException {
+        final Random random = new Random(42);
+        final long[] memberIds = random.longs(1000, 0, Long.MAX_VALUE).distinct().toArray();
+        final byte[] tiers = new byte[memberIds.length];
+        for (int i = 0; i < tiers.length; i++) {
+            tiers[i] = (byte) (1 + random.nextInt(MemberTierIndex.MAX_TIER));
+        }
+        final Path indexFile = directory.resolve("members.index");
+        MemberTierIndex.build(memberIds, tiers).writeTo(indexFile);
+
+        final MemberTierIndex index = MemberTierIndex.map(indexFile);
+        for (int i = 0; i < memberIds.length; i++) {
+            assertEquals(tiers[i], index.getTierOf(memberIds[i]));
+        }
+    }
+
+    @Test
+    @DisplayName("Mapping a file that is not an index fails")
+    void testMappingCorruptFile(@TempDir Path directory) throws IOException {
+        final Path indexFile = directory.resolve("members.list");
+        Files.write(indexFile, "1234 1\n5678 2\n9012 1\n".getBytes(UTF_8));
+        assertThrows(IOException.class, () -> MemberTierIndex.map(indexFile));
+    }
+}
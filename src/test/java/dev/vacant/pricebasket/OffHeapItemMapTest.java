@@ -0,0 +1,110 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OffHeapItemMap Unit Tests")
+class OffHeapItemMapTest {
+
+    @ParameterizedTest(name = "Pricing {0} yields {1}")
+    @CsvSource({
+            "apples,     1.00",
+            "APPLES,     1.00",
+            "bananas,    0.80",
+            "sugar cane, 2.50",
+            "Crème Brûlée, 3.15",
+            "Green Tea 🍵, 1.20",
+    })
+    void testPricingExistingItem(String name, String price) {
+        final OffHeapItemMap table = OffHeapItemMap.build(buildData());
+        assertAll(
+                () -> assertEquals(new BigDecimal(price), table.get(new ItemId(name))),
+                () -> assertEquals(new BigDecimal(price).movePointRight(2).longValueExact(),
+                        table.getInPence(new ItemId(name)))
+        );
+    }
+
+    @ParameterizedTest(name = "Pricing Non-Existing {0}")
+    @ValueSource(strings = {"Red Apples", "Aples", "Sugar", "Cane", "Creme Brulee", "Green Tea 🍶"})
+    void testPricingNonExistingItem(String name) {
+        final OffHeapItemMap table = OffHeapItemMap.build(buildData());
+        assertAll(
+                () -> assertNull(table.get(new ItemId(name))),
+                () -> assertFalse(table.containsKey(new ItemId(name))),
+                () -> assertEquals(-1, table.getInPence(new ItemId(name)))
+        );
+    }
+
+    @Test
+    @DisplayName("Iteration yields all of the entries")
+    void testIteration() {
+        final Map<ItemId, BigDecimal> data = buildData();
+        final OffHeapItemMap table = OffHeapItemMap.build(data);
+        assertAll(
+                () -> assertEquals(data.size(), table.size()),
+                () -> assertEquals(data, new HashMap<>(table)),
+                () -> assertEquals(data.keySet(), table.keySet())
+        );
+    }
+
+    @Test
+    @DisplayName("Empty table has no entries")
+    void testEmptyTable() {
+        final OffHeapItemMap table = OffHeapItemMap.build(new HashMap<>());
+        assertAll(
+                () -> assertTrue(table.isEmpty()),
+                () -> assertNull(table.get(new ItemId("apples")))
+        );
+    }
+
+    @Test
+    @DisplayName("Price out of range is rejected")
+    void testPriceOutOfRange() {
+        final Map<ItemId, BigDecimal> data = new HashMap<>();
+        data.put(new ItemId("apples"), new BigDecimal("1e20"));
+        assertThrows(IllegalArgumentException.class, () -> OffHeapItemMap.build(data));
+    }
+
+    @Test
+    @DisplayName("Table survives a round-trip through a mapped file")
+    void testMappedRoundTrip(@TempDir Path directory) throws IOException {
+        final Map<ItemId, BigDecimal> data = buildData();
+        final Path tableFile = directory.resolve("catalog.table");
+        OffHeapItemMap.build(data).writeTo(tableFile);
+
+        final OffHeapItemMap table = OffHeapItemMap.map(tableFile);
+        assertEquals(data, new HashMap<>(table));
+    }
+
+    @Test
+    @DisplayName("Mapping a file that is not a table fails")
+    void testMappingCorruptFile(@TempDir Path directory) throws IOException {
+        final Path tableFile = directory.resolve("catalog.list");
+        Files.write(tableFile, "Apples 1.00\nBananas 0.80\nSugar Cane 2.50\n".getBytes(UTF_8));
+        assertThrows(IOException.class, () -> OffHeapItemMap.map(tableFile));
+    }
+
+    private Map<ItemId, BigDecimal> buildData() {
+        Map<ItemId, BigDecimal> data = new HashMap<>();
+        data.put(new ItemId("apples"), new BigDecimal("1.00"));
+        data.put(new ItemId("bananas"), new BigDecimal("0.80"));
+        data.put(new ItemId("sugar cane"), new BigDecimal("2.50"));
+        data.put(new ItemId("crème brûlée"), new BigDecimal("3.15"));
+        data.put(new ItemId("green tea 🍵"), new BigDecimal("1.20"));
+        return data;
+    }
+}
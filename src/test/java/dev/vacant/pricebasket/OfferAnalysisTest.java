@@ -0,0 +1,96 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OfferAnalysis Unit Tests")
+class OfferAnalysisTest {
+
+    @Test
+    @DisplayName("Redundant and conflicting offers are reported")
+    void testFindings() throws IOException {
+        final OfferPackage offerPackage = buildOfferPackage(
+                "Apples 10%\nApples 0.10\nBread 0.20 per 2 Soup\nBread 0.30\nSoup 0%\nApples 20%\nBread 0.40 per 2 Soup"
+        );
+        final List<OfferAnalysis.Finding> findings = offerPackage.analyze().getFindings();
+
+        assertAll(
+                () -> assertEquals(4, findings.size()),
+                () -> assertEquals(OfferAnalysis.Kind.DUPLICATE, findings.get(0).getKind()),
+                () -> assertEquals(2, findings.get(0).getLineNumber()),
+                () -> assertEquals(1, findings.get(0).getCauseLineNumber()),
+                () -> assertEquals(OfferAnalysis.Kind.DOMINATED, findings.get(1).getKind()),
+                () -> assertEquals(3, findings.get(1).getLineNumber()),
+                () -> assertEquals(4, findings.get(1).getCauseLineNumber()),
+                () -> assertEquals(OfferAnalysis.Kind.INEFFECTIVE, findings.get(2).getKind()),
+                () -> assertEquals(5, findings.get(2).getLineNumber()),
+                () -> assertEquals(OfferAnalysis.Kind.CONFLICT, findings.get(3).getKind()),
+                () -> assertEquals("Line 6 (Apples 20% off) conflicts with line 1", findings.get(3).toString())
+        );
+    }
+
+    @Test
+    @DisplayName("Pruning only removes ineffective offers and keeps line numbers")
+    void testPrune() throws IOException {
+        final OfferPackage offerPackage = buildOfferPackage(
+                "Apples 10%\nApples 0.10\nBread 0.20 per 2 Soup\nBread 0.30\nSoup 0%\nApples 20%"
+        );
+        final OfferPackage pruned = offerPackage.analyze().prune();
+        final List<OfferRule> offers = pruned.getAvailableOffers();
+
+        assertAll(
+                () -> assertEquals(6, offerPackage.getAvailableOffers().size()),
+                () -> assertEquals(5, offers.size()),
+                () -> assertEquals(4, pruned.getLineNumberOf(offers.get(3))),
+                () -> assertEquals(6, pruned.getLineNumberOf(offers.get(4))),
+                () -> assertEquals(3, pruned.analyze().getFindings().size())
+        );
+    }
+
+    @Test
+    @DisplayName("Pruning leaves the price of baskets unchanged")
+    void testPrunePrices() throws IOException {
+        final OfferPackage offerPackage = buildOfferPackage(
+                "Apples 10%\nApples 0.10\nBread 0.20 per 2 Soup\nBread 0.30\nSoup 0%\nApples 20%"
+        );
+        final OfferPackage pruned = offerPackage.analyze().prune();
+
+        final Basket.Price before = newBasket(offerPackage).price();
+        final Basket.Price after = newBasket(pruned).price();
+        assertAll(
+                () -> assertEquals(before.getSubtotal(), after.getSubtotal()),
+                () -> assertEquals(before.getTotal(), after.getTotal()),
+                () -> assertEquals(before.getOffers().size() - 1, after.getOffers().size())
+        );
+    }
+
+    @Test
+    @DisplayName("Packages without findings are not pruned")
+    void testNothingToPrune() throws IOException {
+        final OfferPackage offerPackage = buildOfferPackage("Apples 10%\nBread 0.40 per 2 Soup\nSoup 0.10");
+        final OfferAnalysis analysis = offerPackage.analyze();
+
+        assertAll(
+                () -> assertTrue(analysis.getFindings().isEmpty()),
+                () -> assertSame(offerPackage, analysis.prune())
+        );
+    }
+
+    private static Basket newBasket(OfferPackage offerPackage) {
+        final Basket basket = new Basket(offerPackage.getCatalog(), offerPackage);
+        for (String item : new String[]{"Apples", "Apples", "Bread", "Soup", "Soup", "Soup"})
+            basket.addItem(item);
+        return basket;
+    }
+
+    private OfferPackage buildOfferPackage(String offersContents) throws IOException {
+        return offerPackage(dataReader("Apples 1.00\nBread 0.80\nSoup 0.65", offersContents));
+    }
+}
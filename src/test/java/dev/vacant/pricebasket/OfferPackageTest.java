@@ -8,8 +8,13 @@ import org.junit.jupiter.params.provider.ValueSource;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
@@ -124,6 +129,79 @@ class OfferPackageTest {
         assertEquals(ApplicableOffer.class, offers.get(0).getClass());
     }
 
+    @Test
+    @DisplayName("Default parsers are resolved once")
+    void testDefaultParsers() {
+        final List<OfferParser> parsers = OfferPackage.getDefaultParsers();
+
+        assertAll(
+                () -> assertSame(parsers, OfferPackage.getDefaultParsers()),
+                () -> assertTrue(parsers.stream().anyMatch(it -> it instanceof DiscountOffer.Parser)),
+                () -> assertTrue(parsers.stream().anyMatch(it -> it instanceof BundleOffer.Parser))
+        );
+    }
+
+    @Test
+    @DisplayName("Applying a delta creates a new version of the package")
+    void testDelta() throws IOException {
+        final DataReader dataReader = buildDataReader(
+                "Apples 10%\nBread 0.40 per 2 Soup",
+                "- Apples 10%\n+ Apples 0.20\n+ Soup 5%"
+        );
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final OfferPackage changed = offerPackage.applyDelta(catalog, dataReader, "delta.list");
+
+        final List<OfferRule> offers = changed.getAvailableOffers();
+        assertAll(
+                () -> assertEquals(2, offerPackage.getAvailableOffers().size()),
+                () -> assertEquals(3, offers.size()),
+                () -> assertSame(offerPackage.getAvailableOffers().get(1), offers.get(0)),
+                () -> assertEquals(2, changed.getLineNumberOf(offers.get(0))),
+                () -> assertEquals("Apples 20p off", offers.get(1).getDescription()),
+                () -> assertEquals(3, changed.getLineNumberOf(offers.get(1))),
+                () -> assertEquals(4, changed.getLineNumberOf(offers.get(2)))
+        );
+    }
+
+    @Test
+    @DisplayName("Applying a delta after a catalog change parses the rules again")
+    void testDeltaWithChangedCatalog() throws IOException {
+        final DataReader dataReader = buildDataReader("Apples 10%", "~ Apples 2.00");
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+
+        final Catalog changedCatalog = catalog.applyDelta(dataReader, "delta.list");
+        final OfferPackage changed = offerPackage.applyDelta(changedCatalog, dataReader, "empty.list");
+
+        final Basket basket = new Basket(changedCatalog, changed);
+        basket.addItem("Apples");
+        assertEquals(new BigDecimal("1.80"), basket.price().getTotal());
+    }
+
+    @ParameterizedTest(name = "{index}. Corrupt Delta")
+    @ValueSource(strings = {
+            "- Apples 20%",     // missing offer
+            "+ Pears 10%",      // unsupported rule
+            "* Apples 10%",     // unknown change
+    })
+    void testCorruptDelta(String deltaContents) throws IOException {
+        final DataReader dataReader = buildDataReader("Apples 10%", deltaContents);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        assertThrows(CorruptDataFileException.class,
+                () -> offerPackage.applyDelta(catalog, dataReader, "delta.list"));
+    }
+
+    private DataReader buildDataReader(String offersContents, String deltaContents) {
+        final Map<String, String> files = new HashMap<>();
+        files.put("catalog.list", "Apples 1.00\nBread 0.80\nSoup 0.65");
+        files.put("offers.list", offersContents);
+        files.put("delta.list", deltaContents);
+        files.put("empty.list", "");
+        return dataReader(files);
+    }
+
     private DataReader buildMockDataReader(String dataContents) throws IOException {
         DataReader dataReader = mock(DataReader.class);
         LineNumberReader reader = new LineNumberReader(new StringReader(dataContents));
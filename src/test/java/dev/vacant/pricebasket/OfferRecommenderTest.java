@@ -0,0 +1,91 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OfferRecommender Unit Tests")
+class OfferRecommenderTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65\nTea 2.00";
+    private static final String OFFERS = "Apples 10% max 2\nBread 0.40 per 2 Soup\nTea 1.00 per 2 Tea max 1\nbasket 5.00 from 50.00";
+
+    @ParameterizedTest(name = "{index}. Recommendation for {0}")
+    @CsvSource({
+            "'Soup,Bread',                 'Add 1 Soup for Bread and Soup bundle (save 40p)'",
+            "'Bread',                      'Add 2 Soup for Bread and Soup bundle (save 40p)'",
+            "'Soup,Soup',                  'Add 1 Bread for Bread and Soup bundle (save 40p)'",
+            "'Apples',                     'Add 1 Apples for Apples 10% off (max 2) (save 10p)'",
+            "'Tea',                        'Add 1 Tea for Tea and Tea bundle (max 1) (save £1.00)'",
+            "'Apples,Apples,Tea,Tea,Milk', ''"
+    })
+    void testBestRecommendation(String items, String expected) throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final Basket basket = new Basket(catalog, offerPackage);
+        for (String item : items.split(","))
+            basket.addItem(item);
+
+        final List<OfferRecommender.Recommendation> recommendations =
+                new OfferRecommender(offerPackage).recommend(basket, 1);
+        assertEquals(expected, recommendations.isEmpty() ? "" : recommendations.get(0).toString());
+    }
+
+    @Test
+    @DisplayName("Recommendations are ranked by saving per pound and match the actual discounts")
+    void testRanking() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final Basket basket = new Basket(catalog, offerPackage);
+        basket.addItem("Apples");
+        basket.addItem("Bread");
+        basket.addItem("Tea");
+
+        final OfferRecommender recommender = new OfferRecommender(offerPackage);
+        final List<OfferRecommender.Recommendation> recommendations = recommender.recommend(basket, 10);
+        assertAll(
+                () -> assertEquals(3, recommendations.size()),
+                () -> assertEquals("Tea and Tea bundle (max 1)", recommendations.get(0).getOffer().getDescription()),
+                () -> assertEquals("Bread and Soup bundle", recommendations.get(1).getOffer().getDescription()),
+                () -> assertEquals(new BigDecimal("1.30"), recommendations.get(1).getCost()),
+                () -> assertEquals("Apples 10% off (max 2)", recommendations.get(2).getOffer().getDescription()),
+                () -> assertEquals(2, recommender.recommend(basket, 2).size()),
+                () -> assertThrows(IllegalArgumentException.class, () -> recommender.recommend(basket, -1))
+        );
+
+        for (OfferRecommender.Recommendation recommendation : recommendations) {
+            final Basket improved = new Basket(catalog, offerPackage);
+            basket.getItems().forEach(improved::addItems);
+            for (Map.Entry<ItemId, Integer> addition : recommendation.getAdditions().entrySet())
+                improved.addItems(addition.getKey(), addition.getValue());
+
+            final String description = recommendation.getOffer().getDescription();
+            final BigDecimal before = basket.price().getOffers().getOrDefault(description, BigDecimal.ZERO);
+            final BigDecimal after = improved.price().getOffers().getOrDefault(description, BigDecimal.ZERO);
+            assertEquals(0, recommendation.getSaving().compareTo(after.subtract(before)), description);
+        }
+    }
+
+    @Test
+    @DisplayName("Baskets priced with other packages are rejected")
+    void testOtherPackage() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final OfferPackage otherPackage = offerPackage(catalog, dataReader);
+
+        final OfferRecommender recommender = new OfferRecommender(offerPackage);
+        assertThrows(IllegalArgumentException.class, () -> recommender.recommend(new Basket(catalog, otherPackage), 1));
+    }
+}
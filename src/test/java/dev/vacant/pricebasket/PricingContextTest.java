@@ -0,0 +1,89 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PricingContext Unit Tests")
+class PricingContextTest {
+
+    @Test
+    @DisplayName("Context agrees with the basket's own pricing")
+    void testPricing() throws IOException {
+        final DataReader dataReader = dataReader("Apples 1.05\nBread 0.80\nSoup 0.65",
+                "Apples 15%\nBread 0.40 per 2 Soup");
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final Basket basket = new Basket(catalog, offerPackage);
+        for (String item : asList("Apples", "Apples", "Apples", "Bread", "Soup", "Soup"))
+            basket.addItem(item);
+
+        final PricingContext context = new PricingContext(1);
+        context.price(basket);
+        final Basket.Price price = context.toPrice();
+        final Basket.Price expected = basket.price();
+
+        assertAll(
+                () -> assertEquals(525, context.getSubtotalInPence()),
+                // 15% of 3.15 is 0.4725, rounded to 0.47
+                () -> assertEquals(47, context.getDiscountInPence(0)),
+                () -> assertEquals(40, context.getDiscountInPence(1)),
+                () -> assertEquals(438, context.getTotalInPence()),
+                () -> assertEquals(expected.getSubtotal(), price.getSubtotal()),
+                () -> assertEquals(expected.getTotal(), price.getTotal()),
+                () -> assertEquals(expected.getOffers(), price.getOffers())
+        );
+    }
+
+    @Test
+    @DisplayName("Context is reset between baskets")
+    void testReuse() throws IOException {
+        final DataReader dataReader = dataReader("Apples 1.00\nBread 0.80", "Apples 0.20\napplicable");
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = new OfferPackage(catalog, dataReader,
+                asList(new DiscountOffer.Parser(), new ApplicableOffer.Parser()));
+
+        final Basket first = new Basket(catalog, offerPackage);
+        first.addItem("Apples");
+        final Basket second = new Basket(catalog, offerPackage);
+        second.addItem("Bread");
+
+        final PricingContext context = new PricingContext();
+        context.price(first);
+        context.price(second);
+
+        assertAll(
+                () -> assertEquals(80, context.getSubtotalInPence()),
+                () -> assertEquals(30, context.getTotalInPence()),
+                () -> assertEquals(1, context.getOfferCount()),
+                // Offers overriding only calculateDiscount are converted
+                () -> assertEquals(ApplicableOffer.class, context.getOffer(0).getClass()),
+                () -> assertEquals(50, context.getDiscountInPence(0)),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> context.getOffer(1)),
+                () -> assertEquals(new BigDecimal("0.30"), context.toPrice().getTotal())
+        );
+    }
+
+    @ParameterizedTest(name = "{0} / {1} = {2}")
+    @CsvSource({
+            "0, 100, 0",
+            "149, 100, 1",
+            "150, 100, 2",
+            "250, 100, 2",
+            "251, 100, 3",
+            "4725, 100, 47",
+            "4750, 100, 48",
+    })
+    void testDivideHalfEven(long dividend, long divisor, long quotient) {
+        assertEquals(quotient, PricingContext.divideHalfEven(dividend, divisor));
+    }
+}
@@ -0,0 +1,133 @@
+package dev.vacant.pricebasket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A way of pricing item baskets, checked against {@link Basket#price()} by the
+ * differential pricing tests.
+ */
+interface PricingEngine {
+    /**
+     * Engine that prices baskets through {@link Basket#price()}, acting as the
+     * reference implementation all other engines must agree with.
+     */
+    PricingEngine REFERENCE = (catalog, offerPackage, items) -> newBasket(catalog, offerPackage, items).price();
+
+    /**
+     * Engine that prices baskets while recording a pricing trace.
+     */
+    PricingEngine TRACED = new PricingEngine() {
+        private final PricingTrace trace = new PricingTrace();
+
+        @Override
+        public Basket.Price price(Catalog catalog, OfferPackage offerPackage, List<String> items) {
+            return newBasket(catalog, offerPackage, items).price(trace);
+        }
+    };
+
+    /**
+     * Engine that prices baskets in pence through a reused pricing context.
+     */
+    PricingEngine CONTEXT = new PricingEngine() {
+        private final PricingContext context = new PricingContext(1);
+
+        @Override
+        public Basket.Price price(Catalog catalog, OfferPackage offerPackage, List<String> items) {
+            context.price(newBasket(catalog, offerPackage, items));
+            return context.toPrice();
+        }
+    };
+
+    /**
+     * Engine that prices every basket in parallel, however small.
+     */
+    PricingEngine PARALLEL = (catalog, offerPackage, items) -> {
+        Basket basket = newBasket(catalog, offerPackage, items);
+        basket.setParallelThreshold(1);
+        return basket.price();
+    };
+
+    /**
+     * Creates an engine that prices baskets against a catalog memory-mapped
+     * from a price table. Each loaded catalog gets its own price table, which
+     * is deleted once the catalog is unloaded.
+     *
+     * @param directory The directory in which to write the price tables.
+     * @return The engine using mapped catalogs.
+     */
+    static PricingEngine mappedCatalog(Path directory) {
+        return new PricingEngine() {
+            private final Map<Catalog, Path> tableFiles = new IdentityHashMap<>();
+
+            @Override
+            public Catalog loadCatalog(DataReader reader) throws IOException {
+                Path tableFile = Files.createTempFile(directory, "catalog", ".table");
+                try {
+                    new Catalog(reader).writeTable(tableFile);
+                    Catalog catalog = new Catalog(tableFile);
+                    tableFiles.put(catalog, tableFile);
+                    return catalog;
+                } catch (IOException | RuntimeException failure) {
+                    Files.deleteIfExists(tableFile);
+                    throw failure;
+                }
+            }
+
+            @Override
+            public void unloadCatalog(Catalog catalog) throws IOException {
+                // The mapping itself is released once the catalog is collected
+                Path tableFile = tableFiles.remove(catalog);
+                if (tableFile != null)
+                    Files.deleteIfExists(tableFile);
+            }
+
+            @Override
+            public Basket.Price price(Catalog catalog, OfferPackage offerPackage, List<String> items) {
+                return newBasket(catalog, offerPackage, items).price();
+            }
+        };
+    }
+
+    /**
+     * Loads the catalog the engine prices baskets against.
+     *
+     * @param reader The data reader serving the catalog data file.
+     * @return The loaded catalog.
+     * @throws IOException If an I/O error occurs.
+     */
+    default Catalog loadCatalog(DataReader reader) throws IOException {
+        return new Catalog(reader);
+    }
+
+    /**
+     * Releases the resources held by a catalog loaded by this engine, once no
+     * more baskets will be priced against it.
+     *
+     * @param catalog The catalog loaded by this engine.
+     * @throws IOException If an I/O error occurs.
+     */
+    default void unloadCatalog(Catalog catalog) throws IOException {
+    }
+
+    /**
+     * Prices a basket of items.
+     *
+     * @param catalog      The catalog loaded by this engine.
+     * @param offerPackage The offer package for the catalog.
+     * @param items        The names of the items in the basket.
+     * @return The price of the basket.
+     */
+    Basket.Price price(Catalog catalog, OfferPackage offerPackage, List<String> items);
+
+    static Basket newBasket(Catalog catalog, OfferPackage offerPackage, List<String> items) {
+        Basket basket = new Basket(catalog, offerPackage);
+        for (String item : items)
+            basket.addItem(item);
+        return basket;
+    }
+}
@@ -0,0 +1,93 @@
+package dev.vacant.pricebasket;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PricingEvents Unit Tests")
+class PricingEventsTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65";
+    private static final String OFFERS = "Apples 10%\nBread 0.40 per 2 Soup";
+
+    @Test
+    @DisplayName("Events are not created unless enabled")
+    void testDisabledByDefault() {
+        try (Recording recording = new Recording()) {
+            recording.start();
+            assertAll(
+                    () -> assertNull(PricingEvents.beginPricing()),
+                    () -> assertNull(PricingEvents.beginLoad()),
+                    () -> assertNull(PricingEvents.beginParsing())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Loading and pricing emit events once enabled")
+    void testRecordedEvents(@TempDir Path tempDir) throws IOException {
+        final Path recordingFile = tempDir.resolve("pricing.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("dev.vacant.pricebasket.BasketPricing");
+            recording.enable("dev.vacant.pricebasket.DataFileLoad");
+            recording.enable("dev.vacant.pricebasket.OfferParsing");
+            recording.start();
+
+            final DataReader dataReader = dataReader(CATALOG, OFFERS);
+            final Catalog catalog = new Catalog(dataReader);
+            final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+            final Basket basket = new Basket(catalog, offerPackage);
+            basket.addItem("Apples");
+            basket.addItem("Soup");
+            basket.addItem("Soup");
+            basket.addItem("Bread");
+            basket.price();
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        final RecordedEvent pricing = single(events, "dev.vacant.pricebasket.BasketPricing");
+        final List<RecordedEvent> loads = ofType(events, "dev.vacant.pricebasket.DataFileLoad");
+        final List<RecordedEvent> parsing = ofType(events, "dev.vacant.pricebasket.OfferParsing");
+        assertAll(
+                () -> assertEquals(4, pricing.getInt("units")),
+                () -> assertEquals(3, pricing.getInt("items")),
+                () -> assertEquals(2, pricing.getInt("offers")),
+                () -> assertEquals(2, loads.size()),
+                () -> assertEquals("catalog.list", loads.get(0).getString("dataFile")),
+                () -> assertEquals(4, loads.get(0).getInt("entries")),
+                () -> assertEquals(CATALOG.length(), loads.get(0).getLong("bytes")),
+                () -> assertEquals("offers.list", loads.get(1).getString("dataFile")),
+                () -> assertEquals(2, loads.get(1).getInt("entries")),
+                () -> assertEquals(OfferPackage.getDefaultParsers().size(), parsing.size()),
+                () -> assertEquals(2, parsing.stream().mapToInt(event -> event.getInt("matches")).sum()),
+                () -> assertTrue(parsing.stream().allMatch(event -> event.getInt("rules") == 2))
+        );
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        final List<RecordedEvent> matching = ofType(events, name);
+        assertEquals(1, matching.size(), name);
+        return matching.get(0);
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
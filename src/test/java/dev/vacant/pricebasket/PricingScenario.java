@@ -0,0 +1,203 @@
+package dev.vacant.pricebasket;
+
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.*;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Randomly generated pricing scenario: a catalog data file, an offers data file
+ * and a number of baskets to price against them.
+ * <p>
+ * Scenarios are immutable and can be shrunk into smaller scenarios, so that a
+ * failing case can be reduced to a minimal reproduction.
+ */
+class PricingScenario {
+    private static final String[] WORDS = {
+            "apples", "bread", "milk", "soup", "sugar", "cane", "olive", "oil",
+            "green", "tea", "rice", "pears", "crème", "brûlée", "jam", "eggs"
+    };
+
+    private final List<String> catalogLines;
+    private final List<String> offerLines;
+    private final List<List<String>> baskets;
+
+    PricingScenario(List<String> catalogLines, List<String> offerLines, List<List<String>> baskets) {
+        this.catalogLines = unmodifiableList(new ArrayList<>(catalogLines));
+        this.offerLines = unmodifiableList(new ArrayList<>(offerLines));
+        this.baskets = unmodifiableList(new ArrayList<>(baskets));
+    }
+
+    /**
+     * Generates a new random scenario.
+     *
+     * @param random      The source of randomness.
+     * @param basketCount The amount of baskets to generate.
+     * @return The generated scenario.
+     */
+    static PricingScenario generate(Random random, int basketCount) {
+        int itemCount = 1 + random.nextInt(12);
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> prices = new HashMap<>();
+        List<String> catalogLines = new ArrayList<>();
+        while (names.size() < itemCount) {
+            String name = randomName(random);
+            if (prices.containsKey(name))
+                continue;
+
+            int price = 1 + random.nextInt(2000);
+            names.add(name);
+            prices.put(name, price);
+            catalogLines.add(randomCase(random, name) + randomSpace(random) + formatPrice(random, price));
+        }
+
+        int offerCount = random.nextInt(7);
+        List<String> offerLines = new ArrayList<>();
+        for (int i = 0; i < offerCount; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            int price = prices.get(name);
+            switch (random.nextInt(4)) {
+                case 0:
+                    offerLines.add(randomCase(random, name) + " " + random.nextInt(101) + "%" + randomLimit(random));
+                    break;
+                case 1:
+                    offerLines.add(randomCase(random, name) + " " + formatPence(random.nextInt(price + 1))
+                            + randomLimit(random));
+                    break;
+                case 2:
+                    int spend = 1 + random.nextInt(5000);
+                    String discount = random.nextBoolean()
+                            ? random.nextInt(101) + "%"
+                            : formatPence(random.nextInt(Math.min(spend, 500) + 1));
+                    String threshold = random.nextBoolean()
+                            ? formatPence(spend)
+                            : (1 + random.nextInt(10)) + " items";
+                    offerLines.add("basket " + discount + " from " + threshold);
+                    break;
+                default:
+                    String required = names.get(random.nextInt(names.size()));
+                    offerLines.add(randomCase(random, name) + " " + formatPence(random.nextInt(price + 1))
+                            + " per " + (1 + random.nextInt(4)) + " " + randomCase(random, required)
+                            + randomLimit(random));
+                    break;
+            }
+        }
+
+        List<List<String>> baskets = new ArrayList<>();
+        for (int i = 0; i < basketCount; i++) {
+            int size = random.nextInt(16);
+            List<String> basket = new ArrayList<>();
+            for (int j = 0; j < size; j++) {
+                basket.add(randomCase(random, names.get(random.nextInt(names.size()))));
+            }
+            baskets.add(basket);
+        }
+
+        return new PricingScenario(catalogLines, offerLines, baskets);
+    }
+
+    /**
+     * Creates a data reader that serves the data files of this scenario.
+     *
+     * @return The data reader for this scenario.
+     */
+    DataReader newDataReader() {
+        return new DataReader() {
+            @Override
+            public LineNumberReader newLineNumberReader(String filePath) {
+                List<String> lines = filePath.equals("catalog.list") ? catalogLines : offerLines;
+                return new LineNumberReader(new StringReader(String.join("\n", lines)));
+            }
+        };
+    }
+
+    List<List<String>> getBaskets() {
+        return baskets;
+    }
+
+    /**
+     * Creates a scenario with the same data files as this one, but only the
+     * basket supplied.
+     *
+     * @param basket The only basket of the new scenario.
+     * @return The single basket scenario.
+     */
+    PricingScenario withBasket(List<String> basket) {
+        return new PricingScenario(catalogLines, offerLines, Collections.singletonList(basket));
+    }
+
+    /**
+     * Lists all of the scenarios that are one step smaller than this one, by
+     * dropping one basket item, one offer or one catalog entry.
+     *
+     * @return The shrunk scenarios, smallest changes last.
+     */
+    List<PricingScenario> shrink() {
+        List<PricingScenario> candidates = new ArrayList<>();
+        for (int i = 0; i < catalogLines.size(); i++) {
+            candidates.add(new PricingScenario(without(catalogLines, i), offerLines, baskets));
+        }
+        for (int i = 0; i < offerLines.size(); i++) {
+            candidates.add(new PricingScenario(catalogLines, without(offerLines, i), baskets));
+        }
+        for (int b = 0; b < baskets.size(); b++) {
+            for (int i = 0; i < baskets.get(b).size(); i++) {
+                List<List<String>> shrunk = new ArrayList<>(baskets);
+                shrunk.set(b, without(baskets.get(b), i));
+                candidates.add(new PricingScenario(catalogLines, offerLines, shrunk));
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public String toString() {
+        return "catalog.list:\n  " + String.join("\n  ", catalogLines)
+                + "\noffers.list:\n  " + String.join("\n  ", offerLines)
+                + "\nbaskets:\n  " + baskets;
+    }
+
+    private static <T> List<T> without(List<T> list, int index) {
+        List<T> copy = new ArrayList<>(list);
+        copy.remove(index);
+        return copy;
+    }
+
+    private static String randomName(Random random) {
+        String name = WORDS[random.nextInt(WORDS.length)];
+        if (random.nextBoolean())
+            name += " " + WORDS[random.nextInt(WORDS.length)];
+        if (random.nextInt(4) == 0)
+            name += " " + random.nextInt(100);
+        return name;
+    }
+
+    private static String randomCase(Random random, String name) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : name.split(" ")) {
+            if (builder.length() > 0)
+                builder.append(randomSpace(random));
+            builder.append(random.nextBoolean() ? word.toUpperCase() : word);
+        }
+        return builder.toString();
+    }
+
+    private static String randomSpace(Random random) {
+        return random.nextInt(4) == 0 ? " \t " : " ";
+    }
+
+    private static String formatPrice(Random random, int pence) {
+        if (pence % 100 == 0 && random.nextBoolean())
+            return Integer.toString(pence / 100);
+        return formatPence(pence);
+    }
+
+    private static String randomLimit(Random random) {
+        return random.nextInt(3) == 0 ? " max " + (1 + random.nextInt(3)) : "";
+    }
+
+    private static String formatPence(int pence) {
+        return String.format(Locale.ROOT, "%d.%02d", pence / 100, pence % 100);
+    }
+}
@@ -0,0 +1,158 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("PricingTrace Unit Tests")
+class PricingTraceTest {
+
+    @Test
+    @DisplayName("Trace records lines, offers and allocations")
+    void testTraceContents() throws IOException {
+        final Catalog catalog = buildMockCatalog();
+        final OfferPackage offerPackage = buildOfferPackage(catalog,
+                "# Offers\nApples 10%\n\nBananas 0.40 per 2 Soup"
+        );
+        final Basket basket = new Basket(catalog, offerPackage);
+        basket.addItem("apples");
+        basket.addItem("bananas");
+        basket.addItem("soup");
+        basket.addItem("soup");
+        basket.addItem("soup");
+
+        final PricingTrace trace = new PricingTrace(1);
+        final Basket.Price price = basket.price(trace);
+
+        assertAll(
+                () -> assertEquals(3, trace.getLineCount()),
+                () -> assertEquals(price.getSubtotal(), trace.getSubtotal()),
+                () -> assertEquals(price.getTotal(), trace.getTotal()),
+                () -> assertEquals(2, trace.getOfferCount()),
+                () -> assertEquals(2, trace.getOfferRuleLine(0)),
+                () -> assertEquals(new BigDecimal("0.10"), trace.getOfferDiscount(0)),
+                () -> assertEquals(4, trace.getOfferRuleLine(1)),
+                () -> assertEquals("Bananas and Soup bundle", trace.getOfferDescription(1)),
+                () -> assertEquals(3, trace.getAllocationCount()),
+                () -> assertEquals(0, trace.getAllocationOffer(0)),
+                () -> assertEquals(new ItemId("apples"), trace.getAllocationItem(0)),
+                () -> assertEquals(1, trace.getAllocationUnits(0)),
+                () -> assertEquals(1, trace.getAllocationOffer(1)),
+                () -> assertEquals(new ItemId("soup"), trace.getAllocationItem(1)),
+                () -> assertEquals(2, trace.getAllocationUnits(1)),
+                () -> assertEquals(new ItemId("bananas"), trace.getAllocationItem(2)),
+                () -> assertEquals(1, trace.getAllocationUnits(2))
+        );
+    }
+
+    @Test
+    @DisplayName("Bundles of a single item allocate every unit once")
+    void testSingleItemBundle() throws IOException {
+        final DataReader dataReader = dataReader("Soup 0.65", "Soup 0.10 per 2 Soup");
+        final Catalog catalog = new Catalog(dataReader);
+        final Basket basket = new Basket(catalog, offerPackage(catalog, dataReader));
+        for (int i = 0; i < 5; i++)
+            basket.addItem("soup");
+
+        final PricingTrace trace = new PricingTrace();
+        basket.price(trace);
+
+        assertAll(
+                () -> assertEquals(new BigDecimal("0.20"), trace.getOfferDiscount(0)),
+                () -> assertEquals(1, trace.getAllocationCount()),
+                () -> assertEquals(new ItemId("soup"), trace.getAllocationItem(0)),
+                () -> assertEquals(4, trace.getAllocationUnits(0))
+        );
+    }
+
+    @Test
+    @DisplayName("Offers sharing a description are traced separately")
+    void testCollidingDescriptions() throws IOException {
+        final Catalog catalog = buildMockCatalog();
+        final OfferPackage offerPackage = buildOfferPackage(catalog, "Apples 10%\nApples 10%");
+        final Basket basket = new Basket(catalog, offerPackage);
+        basket.addItem("apples");
+
+        final PricingTrace trace = new PricingTrace();
+        basket.price(trace);
+
+        assertAll(
+                () -> assertEquals(2, trace.getOfferCount()),
+                () -> assertEquals(1, trace.getOfferRuleLine(0)),
+                () -> assertEquals(2, trace.getOfferRuleLine(1)),
+                () -> assertEquals(trace.getOfferDescription(0), trace.getOfferDescription(1))
+        );
+    }
+
+    @Test
+    @DisplayName("Trace is reset when reused")
+    void testTraceReuse() throws IOException {
+        final Catalog catalog = buildMockCatalog();
+        final OfferPackage offerPackage = buildOfferPackage(catalog, "Apples 10%");
+        final PricingTrace trace = new PricingTrace();
+
+        final Basket first = new Basket(catalog, offerPackage);
+        first.addItem("apples");
+        first.addItem("soup");
+        first.price(trace);
+
+        final Basket second = new Basket(catalog, offerPackage);
+        second.addItem("soup");
+        second.price(trace);
+
+        assertAll(
+                () -> assertEquals(1, trace.getLineCount()),
+                () -> assertEquals(new ItemId("soup"), trace.getLineItem(0)),
+                () -> assertEquals(0, trace.getOfferCount()),
+                () -> assertEquals(0, trace.getAllocationCount()),
+                () -> assertThrows(IndexOutOfBoundsException.class, () -> trace.getLineItem(1))
+        );
+    }
+
+    @Test
+    @DisplayName("Allocating outside of an offer is rejected")
+    void testAllocationWithoutOffer() {
+        final PricingTrace trace = new PricingTrace();
+        assertThrows(IllegalStateException.class, () -> trace.allocate(new ItemId("apples"), 1));
+    }
+
+    private OfferPackage buildOfferPackage(Catalog catalog, String dataContents) throws IOException {
+        DataReader dataReader = mock(DataReader.class);
+        LineNumberReader reader = new LineNumberReader(new StringReader(dataContents));
+        when(dataReader.newLineNumberReader(anyString())).thenReturn(reader);
+        return new OfferPackage(catalog, dataReader, asList(
+                new DiscountOffer.Parser(),
+                new BundleOffer.Parser()
+        ));
+    }
+
+    private Catalog buildMockCatalog() {
+        Map<ItemId, BigDecimal> data = new HashMap<>();
+        data.put(new ItemId("apples"), new BigDecimal("1.00"));
+        data.put(new ItemId("bananas"), new BigDecimal("0.80"));
+        data.put(new ItemId("soup"), new BigDecimal("0.65"));
+
+        Catalog catalog = mock(Catalog.class);
+        when(catalog.getAllItems()).thenReturn(data.keySet());
+        when(catalog.getPriceFor(any())).thenAnswer(invocation -> {
+            ItemId itemId = invocation.getArgument(0);
+            return data.get(itemId);
+        });
+        return catalog;
+    }
+}
@@ -0,0 +1,70 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PricingWarmup Unit Tests")
+class PricingWarmupTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65\nSugar Cane 2.50";
+    private static final String OFFERS = "Apples 10% max 1\nBread 0.40 per 2 Soup\nbasket 5.00 from 50.00\nbasket 10% from 6 items";
+
+    @Test
+    @DisplayName("Synthesised baskets make every offer applicable")
+    void testBasketsCoverOffers() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final PricingWarmup warmup = new PricingWarmup(catalog, offerPackage);
+
+        final Set<String> appliedOffers = new HashSet<>();
+        for (List<String> names : warmup.getBaskets()) {
+            final Basket basket = new Basket(catalog, offerPackage);
+            names.forEach(basket::addItem);
+            appliedOffers.addAll(basket.price().getOffers().keySet());
+        }
+        assertEquals(offerPackage.getAvailableOffers().size(), appliedOffers.size(), appliedOffers.toString());
+    }
+
+    @Test
+    @DisplayName("The warm-up honours its time budget and reports readiness")
+    void testBudget() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final PricingWarmup warmup = new PricingWarmup(catalog, offerPackage(catalog, dataReader));
+
+        assertFalse(warmup.isReady());
+        final long start = System.nanoTime();
+        warmup.run(200, TimeUnit.MILLISECONDS);
+        final long elapsed = System.nanoTime() - start;
+        assertAll(
+                () -> assertTrue(warmup.isReady()),
+                () -> assertTrue(warmup.getPricedCount() > 0),
+                () -> assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2), () -> elapsed + "ns")
+        );
+    }
+
+    @Test
+    @DisplayName("A zero budget prices nothing")
+    void testZeroBudget() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final PricingWarmup warmup = new PricingWarmup(catalog, offerPackage(catalog, dataReader));
+
+        assertAll(
+                () -> assertFalse(warmup.run(0, TimeUnit.SECONDS)),
+                () -> assertTrue(warmup.isReady()),
+                () -> assertEquals(0, warmup.getPricedCount()),
+                () -> assertThrows(IllegalArgumentException.class, () -> warmup.run(-1, TimeUnit.SECONDS))
+        );
+    }
+}
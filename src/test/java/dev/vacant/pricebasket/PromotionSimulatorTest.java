@@ -0,0 +1,167 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static dev.vacant.pricebasket.TestFixtures.dataReader;
+import static dev.vacant.pricebasket.TestFixtures.offerPackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PromotionSimulator Unit Tests")
+class PromotionSimulatorTest {
+    private static final String CATALOG = "Apples 1.00\nBread 0.80\nMilk 1.30\nSoup 0.65";
+    private static final String OFFERS = "Apples 10%\nBread 0.40 per 2 Soup";
+    private static final String[][] BASKETS = {
+            {"Apples"},
+            {"Apples", "Milk"},
+            {"Soup", "Soup", "Bread"},
+            {"Soup", "Soup", "Soup", "Soup", "Milk"},
+            {"Milk"},
+            {"Bread", "Apples", "Apples"}
+    };
+
+    @ParameterizedTest(name = "{index}. Candidate {0}")
+    @CsvSource({
+            "'Apples 20%\\nBread 0.40 per 2 Soup',                       3, 3",
+            "'Bread 0.40 per 2 Soup\\nApples 10%',                       0, 0",
+            "'Apples 10%\\nBread 0.50 per 2 Soup',                       2, 1",
+            "'Apples 10%\\nBread 0.40 per 2 Soup\\nMilk 0.30',           3, 3",
+            "'Apples 10%',                                               2, 1",
+            "'Apples 10%\\nBread 0.40 per 2 Soup\\nbasket 10% from 2.00', 6, 3"
+    })
+    void testSimulation(String candidateOffers, int affected, int changed) throws IOException {
+        final Catalog catalog = new Catalog(dataReader(CATALOG, OFFERS));
+        final OfferPackage baseline = offerPackage(catalog, dataReader(CATALOG, OFFERS));
+        final OfferPackage candidate = offerPackage(catalog, dataReader(CATALOG, candidateOffers.replace("\\n", "\n")));
+
+        final PromotionSimulator simulator = new PromotionSimulator(catalog);
+        BigDecimal expectedDelta = BigDecimal.ZERO;
+        for (String[] items : BASKETS) {
+            final Basket baselineBasket = newBasket(catalog, baseline, items);
+            final Basket candidateBasket = newBasket(catalog, candidate, items);
+            simulator.addBasket(baselineBasket);
+            expectedDelta = expectedDelta
+                    .add(discountOf(candidateBasket.price()))
+                    .subtract(discountOf(baselineBasket.price()));
+        }
+
+        final PromotionSimulator.Impact impact = simulator.simulate(baseline, candidate);
+        final BigDecimal delta = expectedDelta;
+        assertAll(
+                () -> assertEquals(BASKETS.length, impact.getBasketCount()),
+                () -> assertEquals(affected, impact.getAffectedCount()),
+                () -> assertEquals(changed, impact.getChangedCount()),
+                () -> assertEquals(delta, impact.getDiscountDelta()),
+                () -> assertEquals(delta, impact.getCandidateDiscount().subtract(impact.getBaselineDiscount()))
+        );
+    }
+
+    @Test
+    @DisplayName("Encoded baskets are added without decoding them into baskets")
+    void testEncodedBaskets() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final OfferPackage baseline = offerPackage(catalog, dataReader);
+        final OfferPackage candidate = offerPackage(catalog, dataReader(CATALOG, "Apples 50%"));
+        final BasketCodec codec = new BasketCodec(catalog, baseline);
+
+        final List<byte[]> encoded = new ArrayList<>();
+        int length = 0;
+        for (String[] items : BASKETS) {
+            encoded.add(codec.encode(newBasket(catalog, baseline, items)));
+            length += encoded.get(encoded.size() - 1).length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        encoded.forEach(buffer::put);
+        buffer.flip();
+
+        final PromotionSimulator simulator = new PromotionSimulator(catalog);
+        final ByteBuffer truncated = ByteBuffer.wrap(encoded.get(1), 0, encoded.get(1).length - 1);
+        assertAll(
+                () -> assertEquals(BASKETS.length, simulator.addEncodedBaskets(buffer, codec)),
+                () -> assertThrows(IllegalArgumentException.class, () -> simulator.addEncodedBaskets(truncated, codec)),
+                () -> assertEquals(BASKETS.length, simulator.size()),
+                () -> assertEquals(new BigDecimal("1.20"), simulator.simulate(baseline, candidate).getDiscountDelta())
+        );
+    }
+
+    @Test
+    @DisplayName("Packages for other catalogs are rejected")
+    void testOtherCatalog() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final Catalog otherCatalog = new Catalog(dataReader);
+        final OfferPackage offerPackage = offerPackage(catalog, dataReader);
+        final OfferPackage otherPackage = offerPackage(otherCatalog, dataReader);
+
+        final PromotionSimulator simulator = new PromotionSimulator(catalog);
+        assertThrows(IllegalArgumentException.class, () -> simulator.simulate(offerPackage, otherPackage));
+    }
+
+    @Test
+    @DisplayName("Codecs for other catalogs are rejected")
+    void testOtherCodec() throws IOException {
+        final DataReader dataReader = dataReader(CATALOG, OFFERS);
+        final Catalog catalog = new Catalog(dataReader);
+        final DataReader otherReader = dataReader(CATALOG + "\nTea 2.00", OFFERS);
+        final Catalog otherCatalog = new Catalog(otherReader);
+        final OfferPackage otherPackage = offerPackage(otherCatalog, otherReader);
+        final BasketCodec otherCodec = new BasketCodec(otherCatalog, otherPackage);
+        final ByteBuffer buffer = ByteBuffer.wrap(otherCodec.encode(newBasket(otherCatalog, otherPackage, BASKETS[2])));
+
+        final PromotionSimulator simulator = new PromotionSimulator(catalog);
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> simulator.addEncodedBaskets(buffer, otherCodec)),
+                () -> assertEquals(0, simulator.size())
+        );
+    }
+
+    @Test
+    @DisplayName("Lines spanning several column segments")
+    void testManyLines() throws IOException {
+        final int rounds = 20_000;
+        final Catalog catalog = new Catalog(dataReader(CATALOG, OFFERS));
+        final OfferPackage baseline = offerPackage(catalog, dataReader(CATALOG, OFFERS));
+        final OfferPackage candidate = offerPackage(catalog, dataReader(CATALOG, "Apples 20%\nBread 0.40 per 2 Soup"));
+
+        final PromotionSimulator simulator = new PromotionSimulator(catalog);
+        BigDecimal roundDelta = BigDecimal.ZERO;
+        for (String[] items : BASKETS) {
+            roundDelta = roundDelta
+                    .add(discountOf(newBasket(catalog, candidate, items).price()))
+                    .subtract(discountOf(newBasket(catalog, baseline, items).price()));
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (String[] items : BASKETS)
+                simulator.addBasket(newBasket(catalog, baseline, items));
+        }
+
+        final PromotionSimulator.Impact impact = simulator.simulate(baseline, candidate);
+        final BigDecimal delta = roundDelta.multiply(BigDecimal.valueOf(rounds));
+        assertAll(
+                () -> assertEquals(BASKETS.length * rounds, impact.getBasketCount()),
+                () -> assertEquals(3 * rounds, impact.getAffectedCount()),
+                () -> assertEquals(3 * rounds, impact.getChangedCount()),
+                () -> assertEquals(delta, impact.getDiscountDelta())
+        );
+    }
+
+    private static Basket newBasket(Catalog catalog, OfferPackage offerPackage, String[] items) {
+        final Basket basket = new Basket(catalog, offerPackage);
+        for (String item : items)
+            basket.addItem(item);
+        return basket;
+    }
+
+    private static BigDecimal discountOf(Basket.Price price) {
+        return price.getSubtotal().subtract(price.getTotal());
+    }
+}
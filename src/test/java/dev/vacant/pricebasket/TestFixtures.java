@@ -0,0 +1,88 @@
+package dev.vacant.pricebasket;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Fixtures shared by the unit tests: in-memory data files, and the catalogs
+ * and packages of special offers loaded from them.
+ */
+class TestFixtures {
+
+    private TestFixtures() {
+        // Utility class
+    }
+
+    /**
+     * Creates a data reader serving the catalog and offers data files. Any
+     * other data file is served as empty.
+     *
+     * @param catalog The contents of the catalog data file.
+     * @param offers  The contents of the offers data file.
+     * @return The data reader serving the data files.
+     */
+    static DataReader dataReader(String catalog, String offers) {
+        return dataReader(catalog, offers, null, null);
+    }
+
+    /**
+     * Creates a data reader serving the catalog and offers data files, along
+     * with another data file. Any other data file is served as empty.
+     *
+     * @param catalog       The contents of the catalog data file.
+     * @param offers        The contents of the offers data file.
+     * @param otherFile     The relative path to the other data file.
+     * @param otherContents The contents of the other data file.
+     * @return The data reader serving the data files.
+     */
+    static DataReader dataReader(String catalog, String offers, String otherFile, String otherContents) {
+        return new DataReader(filePath -> new ByteArrayInputStream((
+                filePath.equals(otherFile) ? otherContents
+                        : filePath.equals("catalog.list") ? catalog
+                        : filePath.equals("offers.list") ? offers
+                        : ""
+        ).getBytes(UTF_8)));
+    }
+
+    /**
+     * Creates a data reader serving the given data files. Any other data file
+     * is not found.
+     *
+     * @param files The contents of the data files, by relative path.
+     * @return The data reader serving the data files.
+     */
+    static DataReader dataReader(Map<String, String> files) {
+        return new DataReader(filePath -> files.containsKey(filePath)
+                ? new ByteArrayInputStream(files.get(filePath).getBytes(UTF_8))
+                : null);
+    }
+
+    /**
+     * Loads the package of special offers served by a data reader, parsed with
+     * the default parsers.
+     *
+     * @param catalog The item catalog the offers refer to.
+     * @param reader  The data reader serving the offers data file.
+     * @return The loaded package of special offers.
+     * @throws IOException If an I/O error occurs.
+     */
+    static OfferPackage offerPackage(Catalog catalog, DataReader reader) throws IOException {
+        return new OfferPackage(catalog, reader, OfferPackage.getDefaultParsers());
+    }
+
+    /**
+     * Loads both the catalog and the package of special offers served by a
+     * data reader.
+     *
+     * @param reader The data reader serving the data files.
+     * @return The loaded package of special offers, whose catalog is
+     * available through {@link OfferPackage#getCatalog()}.
+     * @throws IOException If an I/O error occurs.
+     */
+    static OfferPackage offerPackage(DataReader reader) throws IOException {
+        return offerPackage(new Catalog(reader), reader);
+    }
+}
@@ -0,0 +1,75 @@
+package dev.vacant.pricebasket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WorkloadGenerator Unit Tests")
+class WorkloadGeneratorTest {
+
+    @Test
+    @DisplayName("Generated data files can be loaded")
+    void testGeneratedDataFiles(@TempDir Path directory) throws IOException {
+        final WorkloadGenerator generator = new WorkloadGenerator(1000, 0.1, 0.05, 1.0, 5, 42);
+        generator.writeDataFiles(directory);
+
+        final DataReader reader = new DataReader(directory);
+        final Catalog catalog = new Catalog(reader);
+        final OfferPackage offerPackage = new OfferPackage(catalog, reader, ServiceLoader.load(OfferParser.class));
+
+        final int offers = offerPackage.getAvailableOffers().size();
+        assertAll(
+                () -> assertEquals(1000, catalog.getAllItems().size()),
+                () -> assertTrue(offers > 100 && offers < 200, () -> offers + " offers generated")
+        );
+    }
+
+    @Test
+    @DisplayName("Generated baskets can be priced")
+    void testGeneratedBaskets(@TempDir Path directory) throws IOException {
+        final WorkloadGenerator generator = new WorkloadGenerator(100, 0.5, 0.5, 1.0, 5, 42);
+        generator.writeDataFiles(directory);
+
+        final DataReader reader = new DataReader(directory);
+        final Catalog catalog = new Catalog(reader);
+        final OfferPackage offerPackage = new OfferPackage(catalog, reader, ServiceLoader.load(OfferParser.class));
+
+        for (int i = 0; i < 1000; i++) {
+            final Basket basket = new Basket(catalog, offerPackage);
+            generator.nextBasket().forEach(basket::addItem);
+            assertTrue(basket.price().getTotal().signum() >= 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Basket composition is skewed towards popular items")
+    void testZipfDistribution() {
+        final WorkloadGenerator generator = new WorkloadGenerator(10_000, 0, 0, 1.0, 10, 42);
+        final Map<String, Integer> counts = new HashMap<>();
+        long units = 0;
+        for (int i = 0; i < 10_000; i++) {
+            List<String> basket = generator.nextBasket();
+            units += basket.size();
+            basket.forEach(item -> counts.merge(item, 1, Integer::sum));
+        }
+
+        final int first = counts.getOrDefault(WorkloadGenerator.getItemName(1), 0);
+        final int second = counts.getOrDefault(WorkloadGenerator.getItemName(2), 0);
+        final int hundredth = counts.getOrDefault(WorkloadGenerator.getItemName(100), 0);
+        final double meanBasketSize = (double) units / 10_000;
+        assertAll(
+                () -> assertEquals(2.0, (double) first / second, 0.3),
+                () -> assertEquals(100.0, (double) first / hundredth, 40),
+                () -> assertEquals(10.0, meanBasketSize, 0.5)
+        );
+    }
+}